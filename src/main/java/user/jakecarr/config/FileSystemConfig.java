@@ -1,13 +1,26 @@
 package user.jakecarr.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import user.jakecarr.FileSystemServer;
 import user.jakecarr.resources.DirectoryListingResource;
 import user.jakecarr.resources.FileContentResource;
 import user.jakecarr.resources.FileMetadataResource;
+import user.jakecarr.resources.ResourceSubscriptions;
+import user.jakecarr.util.ChangeJournal;
+import user.jakecarr.util.ContentCache;
+import user.jakecarr.util.FileContentReader;
 import user.jakecarr.util.FileSystemUtils;
+import user.jakecarr.util.LineIndexCache;
+import user.jakecarr.util.MetadataIndexer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Spring configuration class for file system related dependencies.
@@ -15,25 +28,109 @@ import user.jakecarr.util.FileSystemUtils;
 @Configuration
 public class FileSystemConfig {
     
+    /**
+     * Provides a MetadataIndexer instance.
+     *
+     * @param roots The comma-separated directories to index, empty to disable indexing
+     * @param indexDirectory The directory holding the index files
+     * @return The MetadataIndexer instance
+     */
+    @Bean
+    public MetadataIndexer metadataIndexer(@Value("${filesystem.index.roots:}") String roots,
+                                           @Value("${filesystem.index.directory:${user.home}/.prototype-mcp/index}") String indexDirectory) {
+        List<Path> rootPaths = new ArrayList<>();
+        for (String root : roots.split(",")) {
+            if (!root.isBlank()) {
+                rootPaths.add(Paths.get(root.trim()));
+            }
+        }
+        return new MetadataIndexer(rootPaths, Paths.get(indexDirectory));
+    }
+    
+    /**
+     * Provides a ChangeJournal instance.
+     *
+     * @param maxTrees The maximum number of directories tracked for changes
+     * @param maxEntries The maximum number of entries below a tracked directory
+     * @param maxRecords The maximum number of changes kept per tracked directory
+     * @return The ChangeJournal instance
+     */
+    @Bean
+    public ChangeJournal changeJournal(@Value("${filesystem.changes.maxDirectories:8}") int maxTrees,
+                                       @Value("${filesystem.changes.maxEntries:200000}") int maxEntries,
+                                       @Value("${filesystem.changes.maxRecords:100000}") int maxRecords) {
+        return new ChangeJournal(maxTrees, maxEntries, maxRecords);
+    }
+    
+    /**
+     * Provides a LineIndexCache instance.
+     *
+     * @param maxLines The maximum number of line offsets held across all cached files
+     * @return The LineIndexCache instance
+     */
+    @Bean
+    public LineIndexCache lineIndexCache(@Value("${filesystem.cache.lines.maxLines:4000000}") long maxLines) {
+        return new LineIndexCache(maxLines);
+    }
+    
+    /**
+     * Provides a ContentCache instance.
+     *
+     * @param maxBytes The maximum number of bytes of file content held, 0 to disable it
+     * @return The ContentCache instance
+     */
+    @Bean
+    public ContentCache contentCache(@Value("${filesystem.cache.content.maxBytes:67108864}") long maxBytes) {
+        return new ContentCache(maxBytes);
+    }
+    
+    /**
+     * Provides a FileContentReader instance.
+     *
+     * @param mapThreshold The size from which files and ranges are memory-mapped, 0 to never map them
+     * @param maxResponseSize The maximum number of bytes of a file returned by one content read, 0 for no limit
+     * @param lineIndexCache The LineIndexCache dependency
+     * @param contentCache The ContentCache dependency
+     * @return The FileContentReader instance
+     */
+    @Bean
+    public FileContentReader fileContentReader(@Value("${filesystem.content.mapThreshold:8388608}") long mapThreshold,
+                                               @Value("${filesystem.content.maxResponseSize:16777216}") long maxResponseSize,
+                                               LineIndexCache lineIndexCache,
+                                               ContentCache contentCache) {
+        return new FileContentReader(mapThreshold, maxResponseSize, lineIndexCache, contentCache);
+    }
+    
     /**
      * Provides a FileSystemUtils instance.
      *
+     * @param walkParallelism The number of directory walk workers, 0 for one per available processor
+     * @param cacheMaxEntries The maximum number of directory entries held by the listing cache, 0 to disable it
+     * @param cacheMaxDirectories The maximum number of directories the listing cache watches
+     * @param metadataIndexer The MetadataIndexer dependency
+     * @param fileContentReader The FileContentReader dependency
      * @return The FileSystemUtils instance
      */
     @Bean
-    public FileSystemUtils fileSystemUtils() {
-        return new FileSystemUtils();
+    public FileSystemUtils fileSystemUtils(@Value("${filesystem.walk.parallelism:0}") int walkParallelism,
+                                           @Value("${filesystem.cache.listing.maxEntries:200000}") long cacheMaxEntries,
+                                           @Value("${filesystem.cache.listing.maxDirectories:4096}") int cacheMaxDirectories,
+                                           MetadataIndexer metadataIndexer,
+                                           FileContentReader fileContentReader) {
+        return new FileSystemUtils(walkParallelism, cacheMaxEntries, cacheMaxDirectories, metadataIndexer,
+                fileContentReader);
     }
     
     /**
      * Provides a FileContentResource instance.
      *
      * @param fileSystemUtils The FileSystemUtils dependency
+     * @param objectMapper The ObjectMapper dependency
      * @return The FileContentResource instance
      */
     @Bean
-    public FileContentResource fileContentResource(FileSystemUtils fileSystemUtils) {
-        return new FileContentResource(fileSystemUtils);
+    public FileContentResource fileContentResource(FileSystemUtils fileSystemUtils, ObjectMapper objectMapper) {
+        return new FileContentResource(fileSystemUtils, objectMapper);
     }
     
     /**
@@ -60,6 +157,21 @@ public class FileSystemConfig {
         return new DirectoryListingResource(fileSystemUtils, objectMapper);
     }
     
+    /**
+     * Provides a ResourceSubscriptions instance.
+     *
+     * @param fileSystemUtils The FileSystemUtils dependency
+     * @param debounceMs The time a subscribed resource must be quiet before an update is sent
+     * @return The ResourceSubscriptions instance
+     * @throws IOException If the watch service cannot be created
+     */
+    @Bean
+    public ResourceSubscriptions resourceSubscriptions(FileSystemUtils fileSystemUtils,
+                                                       @Value("${filesystem.resources.debounceMs:250}") long debounceMs)
+            throws IOException {
+        return new ResourceSubscriptions(fileSystemUtils, debounceMs);
+    }
+    
     /**
      * Provides a FileSystemServer instance.
      *
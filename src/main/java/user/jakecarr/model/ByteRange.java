@@ -0,0 +1,120 @@
+package user.jakecarr.model;
+
+/**
+ * A range of bytes of a file, resolved against the file size when the file is read.
+ * A range is either an offset with an optional length, or a suffix of the last bytes of the file;
+ * parts of a range beyond the end of the file are ignored.
+ */
+public final class ByteRange {
+    private final long offset;
+    private final long length;
+    private final boolean suffix;
+
+    private ByteRange(long offset, long length, boolean suffix) {
+        this.offset = offset;
+        this.length = length;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Create a range starting at an offset.
+     *
+     * @param offset The offset of the first byte
+     * @param length The number of bytes, or -1 for everything up to the end of the file
+     * @return The range
+     * @throws IllegalArgumentException If the offset or the length is negative
+     */
+    public static ByteRange of(long offset, long length) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        if (length < -1) {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+        return new ByteRange(offset, length, false);
+    }
+
+    /**
+     * Create a range of the last bytes of a file.
+     *
+     * @param length The number of bytes
+     * @return The range
+     * @throws IllegalArgumentException If the length is negative
+     */
+    public static ByteRange last(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+        return new ByteRange(0, length, true);
+    }
+
+    /**
+     * Parse a range in the form of an HTTP byte range: {@code first-last} with an inclusive last byte,
+     * {@code first-} up to the end of the file, or {@code -count} for the last bytes of the file.
+     *
+     * @param value The range, optionally prefixed by {@code bytes=}
+     * @return The range
+     * @throws IllegalArgumentException If the range is malformed
+     */
+    public static ByteRange parse(String value) {
+        String range = value.trim();
+        if (range.startsWith("bytes=")) {
+            range = range.substring("bytes=".length());
+        }
+        int dash = range.indexOf('-');
+        if (dash < 0 || range.equals("-")) {
+            throw new IllegalArgumentException("Invalid byte range: " + value);
+        }
+        try {
+            if (dash == 0) {
+                return last(Long.parseLong(range.substring(1)));
+            }
+            long first = Long.parseLong(range.substring(0, dash));
+            if (dash == range.length() - 1) {
+                return of(first, -1);
+            }
+            long last = Long.parseLong(range.substring(dash + 1));
+            if (last < first) {
+                throw new IllegalArgumentException("Invalid byte range: " + value);
+            }
+            return of(first, last - first + 1);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid byte range: " + value, e);
+        }
+    }
+
+    /**
+     * Get the offset of the first byte in a file.
+     *
+     * @param size The size of the file
+     * @return The offset, at most the size
+     */
+    public long getStart(long size) {
+        if (suffix) {
+            return Math.max(0, size - length);
+        }
+        return Math.min(offset, size);
+    }
+
+    /**
+     * Get the offset after the last byte in a file.
+     *
+     * @param size The size of the file
+     * @return The exclusive end offset, at most the size
+     */
+    public long getEnd(long size) {
+        if (suffix || length < 0) {
+            return size;
+        }
+        long start = getStart(size);
+        return length > size - start ? size : start + length;
+    }
+
+    @Override
+    public String toString() {
+        if (suffix) {
+            return "-" + length;
+        }
+        return offset + "-" + (length < 0 ? "" : String.valueOf(offset + length - 1));
+    }
+}
@@ -0,0 +1,87 @@
+package user.jakecarr.model;
+
+import java.util.List;
+
+/**
+ * Model class representing the changes below a tracked directory since a change token.
+ */
+public class ChangeSet {
+    private List<FileChange> changes;
+    private String token;
+    private boolean reset;
+
+    /**
+     * Default constructor.
+     */
+    public ChangeSet() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param changes The changed entries, at most one per path
+     * @param token The token to pass to the next call
+     * @param reset Whether the changes since the given token are no longer known
+     */
+    public ChangeSet(List<FileChange> changes, String token, boolean reset) {
+        this.changes = changes;
+        this.token = token;
+        this.reset = reset;
+    }
+
+    /**
+     * Get the changed entries, at most one per path.
+     *
+     * @return The changes
+     */
+    public List<FileChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Set the changed entries.
+     *
+     * @param changes The changes
+     */
+    public void setChanges(List<FileChange> changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * Get the token to pass to the next call to receive the changes after this set.
+     *
+     * @return The change token
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Set the token to pass to the next call.
+     *
+     * @param token The change token
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Check if the changes since the given token are no longer known, because the token was issued
+     * before the server started tracking the directory again or before the oldest retained change.
+     * The caller must list the directory again; the returned token is valid from now on.
+     *
+     * @return True if the caller must resynchronize, false otherwise
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Set whether the changes since the given token are no longer known.
+     *
+     * @param reset True if the caller must resynchronize, false otherwise
+     */
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+}
@@ -0,0 +1,35 @@
+package user.jakecarr.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * Enumeration of the kinds of change reported for an entry by the change journal.
+ */
+public enum ChangeType {
+    /**
+     * The entry was created.
+     */
+    ADDED,
+
+    /**
+     * The size or modification time of the file changed.
+     */
+    MODIFIED,
+
+    /**
+     * The entry was removed.
+     */
+    DELETED;
+
+    /**
+     * Get the name of the change type as it appears in responses.
+     *
+     * @return The lower-case name
+     */
+    @JsonValue
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,172 @@
+package user.jakecarr.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class representing the disk usage of a directory and, down to the requested depth, of its subdirectories.
+ */
+public class DiskUsage {
+    private String path;
+    private long apparentSize;
+    private long allocatedSize;
+    private long fileCount;
+    private long directoryCount;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<DiskUsage> children = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     */
+    public DiskUsage() {
+    }
+
+    /**
+     * Constructor for an empty rollup.
+     *
+     * @param path The path of the directory
+     */
+    public DiskUsage(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Count one entry of the directory tree.
+     *
+     * @param apparentSize The size of the entry in bytes
+     * @param allocatedSize The space the entry occupies on disk in bytes
+     * @param directory Whether the entry is a directory
+     */
+    public void addEntry(long apparentSize, long allocatedSize, boolean directory) {
+        this.apparentSize += apparentSize;
+        this.allocatedSize += allocatedSize;
+        if (directory) {
+            directoryCount++;
+        } else {
+            fileCount++;
+        }
+    }
+
+    /**
+     * Add a completed subdirectory rollup to this one.
+     *
+     * @param child The rollup of a subdirectory
+     */
+    public void addChild(DiskUsage child) {
+        apparentSize += child.apparentSize;
+        allocatedSize += child.allocatedSize;
+        fileCount += child.fileCount;
+        directoryCount += child.directoryCount;
+        children.add(child);
+    }
+
+    /**
+     * Get the path of the directory.
+     *
+     * @return The path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Set the path of the directory.
+     *
+     * @param path The path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Get the total size of the entries in bytes, as reported by the file system.
+     *
+     * @return The apparent size
+     */
+    public long getApparentSize() {
+        return apparentSize;
+    }
+
+    /**
+     * Set the total size of the entries in bytes, as reported by the file system.
+     *
+     * @param apparentSize The apparent size
+     */
+    public void setApparentSize(long apparentSize) {
+        this.apparentSize = apparentSize;
+    }
+
+    /**
+     * Get the total space the entries occupy on disk in bytes.
+     *
+     * @return The allocated size
+     */
+    public long getAllocatedSize() {
+        return allocatedSize;
+    }
+
+    /**
+     * Set the total space the entries occupy on disk in bytes.
+     *
+     * @param allocatedSize The allocated size
+     */
+    public void setAllocatedSize(long allocatedSize) {
+        this.allocatedSize = allocatedSize;
+    }
+
+    /**
+     * Get the number of files and other non-directory entries.
+     *
+     * @return The file count
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Set the number of files and other non-directory entries.
+     *
+     * @param fileCount The file count
+     */
+    public void setFileCount(long fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    /**
+     * Get the number of directories, including the directory itself.
+     *
+     * @return The directory count
+     */
+    public long getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * Set the number of directories, including the directory itself.
+     *
+     * @param directoryCount The directory count
+     */
+    public void setDirectoryCount(long directoryCount) {
+        this.directoryCount = directoryCount;
+    }
+
+    /**
+     * Get the rollups of the subdirectories, in name order.
+     *
+     * @return The subdirectory rollups, empty below the requested depth
+     */
+    public List<DiskUsage> getChildren() {
+        return children;
+    }
+
+    /**
+     * Set the rollups of the subdirectories.
+     *
+     * @param children The subdirectory rollups
+     */
+    public void setChildren(List<DiskUsage> children) {
+        this.children = children;
+    }
+}
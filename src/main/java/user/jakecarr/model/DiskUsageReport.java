@@ -0,0 +1,84 @@
+package user.jakecarr.model;
+
+/**
+ * Model class representing the result of a disk usage request.
+ */
+public class DiskUsageReport {
+    private DiskUsage usage;
+    private long blockSize;
+    private boolean truncated;
+
+    /**
+     * Default constructor.
+     */
+    public DiskUsageReport() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param usage The rollup of the requested directory
+     * @param blockSize The block size allocated sizes are rounded to
+     * @param truncated Whether the walk was cut short by the entry or time budget of the call
+     */
+    public DiskUsageReport(DiskUsage usage, long blockSize, boolean truncated) {
+        this.usage = usage;
+        this.blockSize = blockSize;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the rollup of the requested directory.
+     *
+     * @return The rollup
+     */
+    public DiskUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * Set the rollup of the requested directory.
+     *
+     * @param usage The rollup
+     */
+    public void setUsage(DiskUsage usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * Get the block size allocated sizes are rounded to.
+     *
+     * @return The block size in bytes
+     */
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Set the block size allocated sizes are rounded to.
+     *
+     * @param blockSize The block size in bytes
+     */
+    public void setBlockSize(long blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Check if the walk was cut short by the entry or time budget of the call.
+     * The sizes and counts of a truncated report cover the visited entries only.
+     *
+     * @return True if the report was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Set whether the walk was cut short by the entry or time budget of the call.
+     *
+     * @param truncated True if the report was truncated, false otherwise
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
@@ -0,0 +1,45 @@
+package user.jakecarr.model;
+
+import java.util.Locale;
+
+/**
+ * Enumeration of the entry types a directory listing can be restricted to.
+ */
+public enum EntryType {
+    /**
+     * Regular files.
+     */
+    FILE,
+
+    /**
+     * Directories.
+     */
+    DIRECTORY,
+
+    /**
+     * Symbolic links.
+     */
+    SYMLINK;
+
+    /**
+     * Parse an entry type from its name.
+     *
+     * @param value The name, one of file, dir, directory or symlink, in any case
+     * @return The entry type
+     * @throws IllegalArgumentException If the name is not a known entry type
+     */
+    public static EntryType fromString(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "file":
+                return FILE;
+            case "dir":
+            case "directory":
+                return DIRECTORY;
+            case "symlink":
+            case "link":
+                return SYMLINK;
+            default:
+                throw new IllegalArgumentException("Unknown entry type: " + value + " (expected file, dir or symlink)");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package user.jakecarr.model;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+
+/**
+ * Model class representing a change of one entry below a tracked directory.
+ * Deleted entries carry the size and modification time they had when last seen.
+ */
+@JsonPropertyOrder({"path", "type", "directory", "size", "lastModified"})
+public class FileChange {
+    private String path;
+    private ChangeType type;
+    private boolean directory;
+    private long size;
+    private Instant lastModified;
+
+    /**
+     * Default constructor.
+     */
+    public FileChange() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param path The path of the entry
+     * @param type The kind of change
+     * @param directory Whether the entry is a directory
+     * @param size The size of the entry in bytes
+     * @param lastModified The modification time of the entry
+     */
+    public FileChange(String path, ChangeType type, boolean directory, long size, Instant lastModified) {
+        this.path = path;
+        this.type = type;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Get the path of the entry.
+     *
+     * @return The path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Set the path of the entry.
+     *
+     * @param path The path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Get the kind of change.
+     *
+     * @return The change type
+     */
+    public ChangeType getType() {
+        return type;
+    }
+
+    /**
+     * Set the kind of change.
+     *
+     * @param type The change type
+     */
+    public void setType(ChangeType type) {
+        this.type = type;
+    }
+
+    /**
+     * Check if the entry is a directory.
+     *
+     * @return True if the entry is a directory, false otherwise
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set whether the entry is a directory.
+     *
+     * @param directory True if the entry is a directory, false otherwise
+     */
+    public void setDirectory(boolean directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the size of the entry.
+     *
+     * @return The size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Set the size of the entry.
+     *
+     * @param size The size in bytes
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Get the modification time of the entry.
+     *
+     * @return The modification time
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Set the modification time of the entry.
+     *
+     * @param lastModified The modification time
+     */
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+}
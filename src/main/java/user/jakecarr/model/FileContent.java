@@ -0,0 +1,157 @@
+package user.jakecarr.model;
+
+/**
+ * Model class representing the content read from a file, as text or as base64-encoded bytes,
+ * together with the range of the file it covers.
+ */
+public class FileContent {
+    private String content;
+    private boolean binary;
+    private long size;
+    private long offset;
+    private long length;
+    private boolean truncated;
+
+    /**
+     * Default constructor.
+     */
+    public FileContent() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param content The text, or the base64-encoded bytes of a binary file
+     * @param binary Whether the file is binary and the content is base64-encoded
+     * @param size The size of the file
+     * @param offset The offset of the first byte of the content in the file
+     * @param length The number of bytes of the file the content covers
+     * @param truncated Whether the content was cut short by the maximum response size
+     */
+    public FileContent(String content, boolean binary, long size, long offset, long length, boolean truncated) {
+        this.content = content;
+        this.binary = binary;
+        this.size = size;
+        this.offset = offset;
+        this.length = length;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the content.
+     *
+     * @return The text, or the base64-encoded bytes of a binary file
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Set the content.
+     *
+     * @param content The text, or the base64-encoded bytes of a binary file
+     */
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * Check if the file is binary and the content is base64-encoded.
+     *
+     * @return True if the content is base64-encoded, false if it is text
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Set whether the file is binary and the content is base64-encoded.
+     *
+     * @param binary True if the content is base64-encoded, false if it is text
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return The size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Set the size of the file.
+     *
+     * @param size The size in bytes
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Get the offset of the first byte of the content in the file.
+     *
+     * @return The offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Set the offset of the first byte of the content in the file.
+     *
+     * @param offset The offset
+     */
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Get the number of bytes of the file the content covers.
+     *
+     * @return The length in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Set the number of bytes of the file the content covers.
+     *
+     * @param length The length in bytes
+     */
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    /**
+     * Check if the content was cut short by the maximum response size.
+     * The rest of the requested range starts at {@link #getNextOffset()}.
+     *
+     * @return True if the content was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Set whether the content was cut short by the maximum response size.
+     *
+     * @param truncated True if the content was truncated, false otherwise
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the offset to continue reading from.
+     *
+     * @return The offset after the last byte of the content
+     */
+    public long getNextOffset() {
+        return offset + length;
+    }
+}
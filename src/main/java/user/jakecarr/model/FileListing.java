@@ -0,0 +1,462 @@
+package user.jakecarr.model;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar list of file metadata for large listings.
+ * <p>
+ * Instead of one {@link FileMetadata} object per entry, with its strings and instants, the entries are
+ * stored as a struct of arrays: sizes and times in primitive arrays, the boolean flags packed into one
+ * byte per entry, and names appended to a shared character buffer. Paths are not stored: each entry
+ * points to the node of its parent directory in a parent-pointer table, where every node holds one
+ * path segment and the index of the node above it, so a prefix shared by many entries and directories
+ * is stored once. Nodes are matched against the path of the previous entry, which in a depth-first walk
+ * always holds the ancestors of the next one, so no lookup table is needed. Appending copies the
+ * metadata into the columns, so the object passed in can be collected right away.
+ * <p>
+ * The list can only be appended to. {@link #get(int)} builds a {@link FileMetadata} on demand for
+ * callers that want objects, while serializers read the columns directly.
+ */
+public class FileListing extends AbstractList<FileMetadata> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_TIME = -1;
+    private static final int NO_PARENT = -1;
+
+    private static final int DIRECTORY = 1;
+    private static final int REGULAR_FILE = 1 << 1;
+    private static final int SYMBOLIC_LINK = 1 << 2;
+    private static final int HIDDEN = 1 << 3;
+    private static final int READABLE = 1 << 4;
+    private static final int WRITABLE = 1 << 5;
+    private static final int EXECUTABLE = 1 << 6;
+
+    private int count;
+    private char[] names = new char[INITIAL_CAPACITY * 16];
+    private int namesLength;
+    private int[] nameEnds = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] lastModifiedSeconds = new long[INITIAL_CAPACITY];
+    private int[] lastModifiedNanos = new int[INITIAL_CAPACITY];
+    private long[] creationSeconds = new long[INITIAL_CAPACITY];
+    private int[] creationNanos = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+
+    private int nodeCount;
+    private char[] segments = new char[INITIAL_CAPACITY * 16];
+    private int[] segmentEnds = new int[INITIAL_CAPACITY];
+    private int[] nodeParents = new int[INITIAL_CAPACITY];
+    private int[] currentPath = new int[INITIAL_CAPACITY];
+    private int currentDepth;
+    private final List<String> verbatimPaths = new ArrayList<>();
+
+    /**
+     * Create an empty listing.
+     */
+    public FileListing() {
+    }
+
+    /**
+     * Append the metadata of one file.
+     *
+     * @param metadata The file metadata
+     * @return Always true
+     */
+    @Override
+    public boolean add(FileMetadata metadata) {
+        if (count == sizes.length) {
+            grow();
+        }
+        String name = metadata.getName() == null ? "" : metadata.getName();
+        appendName(name);
+        parents[count] = parentOf(metadata.getPath(), name);
+        sizes[count] = metadata.getSize();
+        storeTime(metadata.getLastModified(), lastModifiedSeconds, lastModifiedNanos);
+        storeTime(metadata.getCreationTime(), creationSeconds, creationNanos);
+        flags[count] = (byte) ((metadata.isDirectory() ? DIRECTORY : 0)
+                | (metadata.isRegularFile() ? REGULAR_FILE : 0)
+                | (metadata.isSymbolicLink() ? SYMBOLIC_LINK : 0)
+                | (metadata.isHidden() ? HIDDEN : 0)
+                | (metadata.isReadable() ? READABLE : 0)
+                | (metadata.isWritable() ? WRITABLE : 0)
+                | (metadata.isExecutable() ? EXECUTABLE : 0));
+        count++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Build the metadata object of one entry.
+     *
+     * @param index The index of the entry
+     * @return A new metadata object holding the entry's values
+     */
+    @Override
+    public FileMetadata get(int index) {
+        checkIndex(index);
+        FileMetadata metadata = new FileMetadata();
+        metadata.setName(getName(index));
+        metadata.setPath(getPath(index));
+        metadata.setSize(sizes[index]);
+        metadata.setLastModified(getLastModified(index));
+        metadata.setCreationTime(getCreationTime(index));
+        metadata.setDirectory(isDirectory(index));
+        metadata.setRegularFile(isRegularFile(index));
+        metadata.setSymbolicLink(isSymbolicLink(index));
+        metadata.setHidden(isHidden(index));
+        metadata.setReadable(isReadable(index));
+        metadata.setWritable(isWritable(index));
+        metadata.setExecutable(isExecutable(index));
+        return metadata;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the shared buffer holding the names of all entries.
+     * The buffer must not be modified; use {@link #getNameStart(int)} and {@link #getNameEnd(int)} to
+     * locate a name.
+     *
+     * @return The name buffer
+     */
+    public char[] getNameBuffer() {
+        return names;
+    }
+
+    /**
+     * Get the offset of an entry's name in the name buffer.
+     *
+     * @param index The index of the entry
+     * @return The start offset, inclusive
+     */
+    public int getNameStart(int index) {
+        checkIndex(index);
+        return index == 0 ? 0 : nameEnds[index - 1];
+    }
+
+    /**
+     * Get the end of an entry's name in the name buffer.
+     *
+     * @param index The index of the entry
+     * @return The end offset, exclusive
+     */
+    public int getNameEnd(int index) {
+        checkIndex(index);
+        return nameEnds[index];
+    }
+
+    /**
+     * Get the name of an entry.
+     *
+     * @param index The index of the entry
+     * @return The name
+     */
+    public String getName(int index) {
+        int start = getNameStart(index);
+        return new String(names, start, nameEnds[index] - start);
+    }
+
+    /**
+     * Get the path of an entry.
+     *
+     * @param index The index of the entry
+     * @return The path
+     */
+    public String getPath(int index) {
+        checkIndex(index);
+        int parent = parents[index];
+        if (parent < NO_PARENT) {
+            return verbatimPaths.get(NO_PARENT - 1 - parent);
+        }
+        StringBuilder path = new StringBuilder();
+        appendPrefix(path, parent);
+        int start = getNameStart(index);
+        return path.append(names, start, nameEnds[index] - start).toString();
+    }
+
+    /**
+     * Get the node of the directory prefix an entry's path starts with.
+     * Entries in the same directory share the node, which serializers use to write each prefix once.
+     *
+     * @param index The index of the entry
+     * @return The node, between 0 and {@link #getPrefixCount()}, or -1 if the path has no separate prefix
+     */
+    public int getPrefixNode(int index) {
+        checkIndex(index);
+        return Math.max(NO_PARENT, parents[index]);
+    }
+
+    /**
+     * Get the number of prefix nodes.
+     *
+     * @return The node count
+     */
+    public int getPrefixCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Get the directory prefix a node stands for.
+     *
+     * @param node The node
+     * @return The prefix, ending with the separator
+     */
+    public String getPrefix(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Node " + node + " out of bounds for length " + nodeCount);
+        }
+        StringBuilder prefix = new StringBuilder();
+        appendPrefix(prefix, node);
+        return prefix.toString();
+    }
+
+    /**
+     * Get the size of an entry.
+     *
+     * @param index The index of the entry
+     * @return The size in bytes
+     */
+    public long getSize(int index) {
+        checkIndex(index);
+        return sizes[index];
+    }
+
+    /**
+     * Get the last modified time of an entry.
+     *
+     * @param index The index of the entry
+     * @return The last modified time, or null if it is unknown
+     */
+    public Instant getLastModified(int index) {
+        checkIndex(index);
+        return toInstant(lastModifiedSeconds[index], lastModifiedNanos[index]);
+    }
+
+    /**
+     * Get the creation time of an entry.
+     *
+     * @param index The index of the entry
+     * @return The creation time, or null if it is unknown
+     */
+    public Instant getCreationTime(int index) {
+        checkIndex(index);
+        return toInstant(creationSeconds[index], creationNanos[index]);
+    }
+
+    /**
+     * Check if an entry is a directory.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is a directory, false otherwise
+     */
+    public boolean isDirectory(int index) {
+        return hasFlag(index, DIRECTORY);
+    }
+
+    /**
+     * Check if an entry is a regular file.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is a regular file, false otherwise
+     */
+    public boolean isRegularFile(int index) {
+        return hasFlag(index, REGULAR_FILE);
+    }
+
+    /**
+     * Check if an entry is a symbolic link.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is a symbolic link, false otherwise
+     */
+    public boolean isSymbolicLink(int index) {
+        return hasFlag(index, SYMBOLIC_LINK);
+    }
+
+    /**
+     * Check if an entry is hidden.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is hidden, false otherwise
+     */
+    public boolean isHidden(int index) {
+        return hasFlag(index, HIDDEN);
+    }
+
+    /**
+     * Check if an entry is readable.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is readable, false otherwise
+     */
+    public boolean isReadable(int index) {
+        return hasFlag(index, READABLE);
+    }
+
+    /**
+     * Check if an entry is writable.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is writable, false otherwise
+     */
+    public boolean isWritable(int index) {
+        return hasFlag(index, WRITABLE);
+    }
+
+    /**
+     * Check if an entry is executable.
+     *
+     * @param index The index of the entry
+     * @return True if the entry is executable, false otherwise
+     */
+    public boolean isExecutable(int index) {
+        return hasFlag(index, EXECUTABLE);
+    }
+
+    private boolean hasFlag(int index, int flag) {
+        checkIndex(index);
+        return (flags[index] & flag) != 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+        }
+    }
+
+    private void appendName(String name) {
+        int end = namesLength + name.length();
+        if (end > names.length) {
+            names = Arrays.copyOf(names, Math.max(end, names.length * 2));
+        }
+        name.getChars(0, name.length(), names, namesLength);
+        namesLength = end;
+        nameEnds[count] = end;
+    }
+
+    /**
+     * Find or create the node of the prefix of a path that precedes the name.
+     * The prefix is split into segments that each end with a separator, and the segments are matched
+     * against the path of the previous entry before new nodes are created for the rest.
+     *
+     * @param path The path
+     * @param name The name at the end of the path
+     * @return The node of the prefix, {@link #NO_PARENT} if the path is just the name, or the encoded
+     *         index of the whole path if it does not end with the name
+     */
+    private int parentOf(String path, String name) {
+        if (path == null || path.equals(name)) {
+            return NO_PARENT;
+        }
+        if (!path.endsWith(name)) {
+            verbatimPaths.add(path);
+            return NO_PARENT - verbatimPaths.size();
+        }
+        int prefixLength = path.length() - name.length();
+        int node = NO_PARENT;
+        int depth = 0;
+        int start = 0;
+        while (start < prefixLength) {
+            int separator = path.indexOf(File.separatorChar, start);
+            int end = separator < 0 || separator >= prefixLength ? prefixLength : separator + 1;
+            if (depth < currentDepth && segmentEquals(currentPath[depth], path, start, end)) {
+                node = currentPath[depth];
+            } else {
+                node = addNode(node, path, start, end);
+                if (depth == currentPath.length) {
+                    currentPath = Arrays.copyOf(currentPath, depth * 2);
+                }
+                currentPath[depth] = node;
+                currentDepth = depth + 1;
+            }
+            depth++;
+            start = end;
+        }
+        currentDepth = depth;
+        return node;
+    }
+
+    private boolean segmentEquals(int node, String path, int start, int end) {
+        int segmentStart = node == 0 ? 0 : segmentEnds[node - 1];
+        if (segmentEnds[node] - segmentStart != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (segments[segmentStart + i - start] != path.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addNode(int parent, String path, int start, int end) {
+        if (nodeCount == nodeParents.length) {
+            nodeParents = Arrays.copyOf(nodeParents, nodeCount * 2);
+            segmentEnds = Arrays.copyOf(segmentEnds, nodeCount * 2);
+        }
+        int segmentStart = nodeCount == 0 ? 0 : segmentEnds[nodeCount - 1];
+        int segmentEnd = segmentStart + end - start;
+        if (segmentEnd > segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segmentEnd, segments.length * 2));
+        }
+        path.getChars(start, end, segments, segmentStart);
+        segmentEnds[nodeCount] = segmentEnd;
+        nodeParents[nodeCount] = parent;
+        return nodeCount++;
+    }
+
+    /**
+     * Append the prefix a node stands for, walking up the parent pointers.
+     *
+     * @param builder The builder to append to
+     * @param node The node, or a negative value for no prefix
+     */
+    private void appendPrefix(StringBuilder builder, int node) {
+        int depth = 0;
+        for (int current = node; current >= 0; current = nodeParents[current]) {
+            depth++;
+        }
+        int[] chain = new int[depth];
+        for (int current = node; current >= 0; current = nodeParents[current]) {
+            chain[--depth] = current;
+        }
+        for (int current : chain) {
+            int segmentStart = current == 0 ? 0 : segmentEnds[current - 1];
+            builder.append(segments, segmentStart, segmentEnds[current] - segmentStart);
+        }
+    }
+
+    private void storeTime(Instant time, long[] seconds, int[] nanos) {
+        if (time == null) {
+            nanos[count] = NO_TIME;
+        } else {
+            seconds[count] = time.getEpochSecond();
+            nanos[count] = time.getNano();
+        }
+    }
+
+    private static Instant toInstant(long seconds, int nanos) {
+        return nanos == NO_TIME ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private void grow() {
+        int capacity = sizes.length * 2;
+        nameEnds = Arrays.copyOf(nameEnds, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        lastModifiedSeconds = Arrays.copyOf(lastModifiedSeconds, capacity);
+        lastModifiedNanos = Arrays.copyOf(lastModifiedNanos, capacity);
+        creationSeconds = Arrays.copyOf(creationSeconds, capacity);
+        creationNanos = Arrays.copyOf(creationNanos, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+}
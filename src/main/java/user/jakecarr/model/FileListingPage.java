@@ -0,0 +1,99 @@
+package user.jakecarr.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Model class representing one page of a directory listing.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FileListingPage {
+    private List<FileMetadata> files;
+    private String nextCursor;
+    private boolean truncated;
+
+    /**
+     * Default constructor.
+     */
+    public FileListingPage() {
+    }
+
+    /**
+     * Constructor for a page that was not truncated.
+     *
+     * @param files The files in this page
+     * @param nextCursor The cursor for the next page, or null if this is the last page
+     */
+    public FileListingPage(List<FileMetadata> files, String nextCursor) {
+        this(files, nextCursor, false);
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param files The files in this page
+     * @param nextCursor The cursor for the next page, or null if this is the last page
+     * @param truncated Whether the page was cut short by the entry or time budget of the call
+     */
+    public FileListingPage(List<FileMetadata> files, String nextCursor, boolean truncated) {
+        this.files = files;
+        this.nextCursor = nextCursor;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the files in this page.
+     *
+     * @return The files
+     */
+    public List<FileMetadata> getFiles() {
+        return files;
+    }
+
+    /**
+     * Set the files in this page.
+     *
+     * @param files The files
+     */
+    public void setFiles(List<FileMetadata> files) {
+        this.files = files;
+    }
+
+    /**
+     * Get the cursor for the next page.
+     *
+     * @return The cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Set the cursor for the next page.
+     *
+     * @param nextCursor The cursor, or null if this is the last page
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Check if the page was cut short by the entry or time budget of the call.
+     * A truncated page may hold fewer entries than the page size, and its cursor resumes the walk.
+     *
+     * @return True if the page was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Set whether the page was cut short by the entry or time budget of the call.
+     *
+     * @param truncated True if the page was truncated, false otherwise
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
@@ -1,12 +1,19 @@
 package user.jakecarr.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Model class representing file metadata.
+ * Properties are serialized in the order of {@link MetadataField}, the same order the streaming
+ * writers use for projections and columnar listings.
  */
+@JsonPropertyOrder({"name", "path", "size", "lastModified", "creationTime", "directory", "regularFile",
+        "symbolicLink", "hidden", "readable", "writable", "executable", "formattedLastModified",
+        "formattedCreationTime"})
 public class FileMetadata {
     private String name;
     private String path;
@@ -0,0 +1,49 @@
+package user.jakecarr.model;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+/**
+ * Enumeration of the attributes files can be ranked by.
+ */
+public enum FileSortKey {
+    /**
+     * The file size in bytes.
+     */
+    SIZE,
+
+    /**
+     * The last modified time.
+     */
+    LAST_MODIFIED;
+
+    /**
+     * Get the ranking key of a file.
+     *
+     * @param attributes The attributes of the file
+     * @return The key, where larger values rank higher
+     */
+    public long keyOf(BasicFileAttributes attributes) {
+        return this == SIZE ? attributes.size() : attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Parse a sort key from its name.
+     *
+     * @param value The name, either size or lastModified, in any case
+     * @return The sort key
+     * @throws IllegalArgumentException If the name is not a known sort key
+     */
+    public static FileSortKey fromString(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "size":
+                return SIZE;
+            case "lastmodified":
+            case "modified":
+            case "mtime":
+                return LAST_MODIFIED;
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + value + " (expected size or lastModified)");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package user.jakecarr.model;
+
+/**
+ * Model class representing the end of a text file, or the text appended to it since a tail token,
+ * together with the token to pass to the next call to follow the file.
+ */
+public class FileTail {
+    private String content;
+    private long offset;
+    private long size;
+    private String token;
+    private boolean rotated;
+    private boolean truncated;
+
+    /**
+     * Default constructor.
+     */
+    public FileTail() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param content The text
+     * @param offset The offset of the first byte of the text in the file
+     * @param size The size of the file
+     * @param token The token to pass to the next call
+     * @param rotated Whether the file was replaced or truncated since the given token
+     * @param truncated Whether the text was cut short by the maximum response size
+     */
+    public FileTail(String content, long offset, long size, String token, boolean rotated, boolean truncated) {
+        this.content = content;
+        this.offset = offset;
+        this.size = size;
+        this.token = token;
+        this.rotated = rotated;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the text.
+     *
+     * @return The last lines of the file, or the text appended since the given token
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Set the text.
+     *
+     * @param content The text
+     */
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * Get the offset of the first byte of the text in the file.
+     *
+     * @return The offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Set the offset of the first byte of the text in the file.
+     *
+     * @param offset The offset
+     */
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return The size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Set the size of the file.
+     *
+     * @param size The size in bytes
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Get the token to pass to the next call to receive the text appended after this text.
+     *
+     * @return The tail token
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Set the token to pass to the next call.
+     *
+     * @param token The tail token
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Check if the file was replaced, as by log rotation, or truncated since the given token.
+     * The text then starts at the beginning of the new file.
+     *
+     * @return True if the file was rotated, false otherwise
+     */
+    public boolean isRotated() {
+        return rotated;
+    }
+
+    /**
+     * Set whether the file was replaced or truncated since the given token.
+     *
+     * @param rotated True if the file was rotated, false otherwise
+     */
+    public void setRotated(boolean rotated) {
+        this.rotated = rotated;
+    }
+
+    /**
+     * Check if the text was cut short by the maximum response size.
+     * When following, the rest is returned by the next call with the returned token.
+     *
+     * @return True if the text was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Set whether the text was cut short by the maximum response size.
+     *
+     * @param truncated True if the text was truncated, false otherwise
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
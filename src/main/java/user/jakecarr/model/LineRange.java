@@ -0,0 +1,83 @@
+package user.jakecarr.model;
+
+/**
+ * A range of lines of a text file, numbered from 1, resolved against the line count when the file is read.
+ * Lines are separated by {@code \n}, and each line includes its terminating newline; parts of a range
+ * beyond the last line are ignored.
+ */
+public final class LineRange {
+    private final long startLine;
+    private final long endLine;
+
+    private LineRange(long startLine, long endLine) {
+        this.startLine = startLine;
+        this.endLine = endLine;
+    }
+
+    /**
+     * Create a range of lines.
+     *
+     * @param startLine The number of the first line, starting at 1
+     * @param endLine The number of the last line, inclusive, or -1 for everything up to the end of the file
+     * @return The range
+     * @throws IllegalArgumentException If the start line is not positive or the end line precedes it
+     */
+    public static LineRange of(long startLine, long endLine) {
+        if (startLine < 1) {
+            throw new IllegalArgumentException("Start line must be at least 1: " + startLine);
+        }
+        if (endLine != -1 && endLine < startLine) {
+            throw new IllegalArgumentException("End line " + endLine + " precedes start line " + startLine);
+        }
+        return new LineRange(startLine, endLine);
+    }
+
+    /**
+     * Parse a range in the form {@code first-last} with an inclusive last line, {@code first-} up to
+     * the end of the file, or a single line number.
+     *
+     * @param value The range
+     * @return The range
+     * @throws IllegalArgumentException If the range is malformed
+     */
+    public static LineRange parse(String value) {
+        String range = value.trim();
+        int dash = range.indexOf('-');
+        try {
+            if (dash < 0) {
+                long line = Long.parseLong(range);
+                return of(line, line);
+            }
+            long first = Long.parseLong(range.substring(0, dash));
+            if (dash == range.length() - 1) {
+                return of(first, -1);
+            }
+            return of(first, Long.parseLong(range.substring(dash + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid line range: " + value, e);
+        }
+    }
+
+    /**
+     * Get the number of the first line.
+     *
+     * @return The start line, starting at 1
+     */
+    public long getStartLine() {
+        return startLine;
+    }
+
+    /**
+     * Get the number of the last line.
+     *
+     * @return The inclusive end line, or -1 for the end of the file
+     */
+    public long getEndLine() {
+        return endLine;
+    }
+
+    @Override
+    public String toString() {
+        return startLine + "-" + (endLine < 0 ? "" : String.valueOf(endLine));
+    }
+}
@@ -0,0 +1,270 @@
+package user.jakecarr.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Model class representing the options of a directory listing request.
+ */
+public class ListingOptions {
+    /**
+     * The page size used when the client does not request one.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * The largest page size a client may request.
+     */
+    public static final int MAX_PAGE_SIZE = 10000;
+
+    /**
+     * The time budget of a listing call when the client does not request one, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+    /**
+     * The largest time budget a client may request, in milliseconds.
+     */
+    public static final long MAX_TIMEOUT_MS = 300000;
+
+    private boolean recursive;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private String cursor;
+    private int maxDepth = Integer.MAX_VALUE;
+    private List<String> include = List.of();
+    private List<String> exclude = List.of();
+    private EntryType type;
+    private long maxEntries = Long.MAX_VALUE;
+    private long timeoutMs = DEFAULT_TIMEOUT_MS;
+    private Set<MetadataField> fields = MetadataField.ALL;
+    private boolean followLinks;
+    private boolean compactPaths;
+
+    /**
+     * Default constructor.
+     */
+    public ListingOptions() {
+    }
+
+    /**
+     * Check if the listing is recursive.
+     *
+     * @return True if the listing is recursive, false otherwise
+     */
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Set whether the listing is recursive.
+     *
+     * @param recursive True if the listing is recursive, false otherwise
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * Get the maximum number of entries returned in one page.
+     *
+     * @return The page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Set the maximum number of entries returned in one page.
+     * Values outside of 1..{@link #MAX_PAGE_SIZE} are clamped.
+     *
+     * @param pageSize The page size
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Get the continuation token returned by the previous page.
+     *
+     * @return The cursor, or null to start from the beginning
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Set the continuation token returned by the previous page.
+     *
+     * @param cursor The cursor, or null to start from the beginning
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Get the maximum depth of a recursive listing, where the children of the listed directory are at depth 1.
+     *
+     * @return The maximum depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Set the maximum depth of a recursive listing, where the children of the listed directory are at depth 1.
+     *
+     * @param maxDepth The maximum depth; values below 1 are treated as 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    /**
+     * Get the glob patterns an entry must match to be returned.
+     *
+     * @return The include patterns, empty to include everything
+     */
+    public List<String> getInclude() {
+        return include;
+    }
+
+    /**
+     * Set the glob patterns an entry must match to be returned.
+     * Patterns without a slash match the entry name, other patterns match the path relative to the listed directory.
+     *
+     * @param include The include patterns, empty to include everything
+     */
+    public void setInclude(List<String> include) {
+        this.include = include == null ? List.of() : List.copyOf(include);
+    }
+
+    /**
+     * Get the glob patterns of entries that are skipped, along with everything below them.
+     *
+     * @return The exclude patterns
+     */
+    public List<String> getExclude() {
+        return exclude;
+    }
+
+    /**
+     * Set the glob patterns of entries that are skipped, along with everything below them.
+     * Patterns without a slash match the entry name, other patterns match the path relative to the listed directory.
+     *
+     * @param exclude The exclude patterns
+     */
+    public void setExclude(List<String> exclude) {
+        this.exclude = exclude == null ? List.of() : List.copyOf(exclude);
+    }
+
+    /**
+     * Get the entry type the listing is restricted to.
+     *
+     * @return The entry type, or null to return all types
+     */
+    public EntryType getType() {
+        return type;
+    }
+
+    /**
+     * Set the entry type the listing is restricted to.
+     *
+     * @param type The entry type, or null to return all types
+     */
+    public void setType(EntryType type) {
+        this.type = type;
+    }
+
+    /**
+     * Get the maximum number of entries a listing call visits, including entries the filters do not return.
+     *
+     * @return The entry budget
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set the maximum number of entries a listing call visits, including entries the filters do not return.
+     *
+     * @param maxEntries The entry budget; values below 1 are treated as 1
+     */
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Get the time a listing call may spend walking, in milliseconds.
+     *
+     * @return The time budget
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Set the time a listing call may spend walking, in milliseconds.
+     * Values outside of 1..{@link #MAX_TIMEOUT_MS} are clamped.
+     *
+     * @param timeoutMs The time budget
+     */
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = Math.max(1, Math.min(timeoutMs, MAX_TIMEOUT_MS));
+    }
+
+    /**
+     * Get the metadata fields collected and returned for each entry.
+     *
+     * @return The requested fields
+     */
+    public Set<MetadataField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Set the metadata fields collected and returned for each entry.
+     *
+     * @param fields The requested fields, or null or empty to return every field
+     */
+    public void setFields(Set<MetadataField> fields) {
+        this.fields = fields == null || fields.isEmpty() ? MetadataField.ALL : fields;
+    }
+
+    /**
+     * Check if a recursive listing descends into directories reached through symbolic links.
+     *
+     * @return True if links are followed, false otherwise
+     */
+    public boolean isFollowLinks() {
+        return followLinks;
+    }
+
+    /**
+     * Set whether a recursive listing descends into directories reached through symbolic links.
+     * A link is entered only if the directory it points to, identified by its file key, was not walked yet,
+     * so loops end and each directory outside the listed one is walked through the first link to it.
+     *
+     * @param followLinks True to follow links, false to report them without descending
+     */
+    public void setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+    }
+
+    /**
+     * Check if the response sends each directory prefix once instead of a full path per entry.
+     *
+     * @return True for compact paths, false for full paths
+     */
+    public boolean isCompactPaths() {
+        return compactPaths;
+    }
+
+    /**
+     * Set whether the response sends each directory prefix once instead of a full path per entry.
+     *
+     * @param compactPaths True for compact paths, false for full paths
+     */
+    public void setCompactPaths(boolean compactPaths) {
+        this.compactPaths = compactPaths;
+    }
+}
@@ -0,0 +1,190 @@
+package user.jakecarr.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Enumeration of the file metadata fields a client can request.
+ * Each field knows its JSON property name and which attribute reads it depends on, so a
+ * projection can skip both collecting and serializing the fields that were not requested.
+ */
+public enum MetadataField {
+    /**
+     * The file name.
+     */
+    NAME("name", false, false),
+
+    /**
+     * The file path.
+     */
+    PATH("path", false, false),
+
+    /**
+     * The file size in bytes.
+     */
+    SIZE("size", true, false),
+
+    /**
+     * The last modified time.
+     */
+    LAST_MODIFIED("lastModified", true, false),
+
+    /**
+     * The creation time.
+     */
+    CREATION_TIME("creationTime", true, false),
+
+    /**
+     * Whether the file is a directory.
+     */
+    DIRECTORY("directory", true, false),
+
+    /**
+     * Whether the file is a regular file.
+     */
+    REGULAR_FILE("regularFile", true, false),
+
+    /**
+     * Whether the file is a symbolic link.
+     */
+    SYMBOLIC_LINK("symbolicLink", false, false),
+
+    /**
+     * Whether the file is hidden.
+     */
+    HIDDEN("hidden", false, false),
+
+    /**
+     * Whether the file is readable.
+     */
+    READABLE("readable", true, true),
+
+    /**
+     * Whether the file is writable.
+     */
+    WRITABLE("writable", true, true),
+
+    /**
+     * Whether the file is executable.
+     */
+    EXECUTABLE("executable", true, true),
+
+    /**
+     * The last modified time as an ISO-8601 string.
+     */
+    FORMATTED_LAST_MODIFIED("formattedLastModified", true, false),
+
+    /**
+     * The creation time as an ISO-8601 string.
+     */
+    FORMATTED_CREATION_TIME("formattedCreationTime", true, false);
+
+    /**
+     * Every field, which is what a request without a projection returns.
+     */
+    public static final Set<MetadataField> ALL = Collections.unmodifiableSet(EnumSet.allOf(MetadataField.class));
+
+    private final String propertyName;
+    private final boolean describesTarget;
+    private final boolean needsAccessMode;
+
+    MetadataField(String propertyName, boolean describesTarget, boolean needsAccessMode) {
+        this.propertyName = propertyName;
+        this.describesTarget = describesTarget;
+        this.needsAccessMode = needsAccessMode;
+    }
+
+    /**
+     * Get the JSON property name of the field.
+     *
+     * @return The property name
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * Check if the field describes the target of a symbolic link rather than the link itself.
+     *
+     * @return True if the field needs the link target to be stat'ed, false otherwise
+     */
+    public boolean describesTarget() {
+        return describesTarget;
+    }
+
+    /**
+     * Check if the field is derived from the permission mode.
+     *
+     * @return True if the field needs the permission mode, false otherwise
+     */
+    public boolean needsAccessMode() {
+        return needsAccessMode;
+    }
+
+    /**
+     * Parse a field from its JSON property name.
+     *
+     * @param value The property name, in any case
+     * @return The field
+     * @throws IllegalArgumentException If the name is not a known field
+     */
+    public static MetadataField fromString(String value) {
+        String name = value.trim();
+        for (MetadataField field : values()) {
+            if (field.propertyName.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown metadata field: " + value);
+    }
+
+    /**
+     * Parse a projection from a list of property names.
+     *
+     * @param names The property names, empty to request every field
+     * @return The requested fields
+     * @throws IllegalArgumentException If a name is not a known field
+     */
+    public static Set<MetadataField> parse(List<String> names) {
+        if (names.isEmpty()) {
+            return ALL;
+        }
+        Set<MetadataField> fields = EnumSet.noneOf(MetadataField.class);
+        for (String name : names) {
+            fields.add(fromString(name));
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * Check if any of the given fields describes the target of a symbolic link.
+     *
+     * @param fields The requested fields
+     * @return True if a symbolic link target has to be stat'ed, false otherwise
+     */
+    public static boolean anyDescribesTarget(Set<MetadataField> fields) {
+        for (MetadataField field : fields) {
+            if (field.describesTarget) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if any of the given fields is derived from the permission mode.
+     *
+     * @param fields The requested fields
+     * @return True if the permission mode has to be read, false otherwise
+     */
+    public static boolean anyNeedsAccessMode(Set<MetadataField> fields) {
+        for (MetadataField field : fields) {
+            if (field.needsAccessMode) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
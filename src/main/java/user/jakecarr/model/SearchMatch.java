@@ -0,0 +1,127 @@
+package user.jakecarr.model;
+
+import java.util.List;
+
+/**
+ * Model class representing a line of a file that matches a content search, with the lines around it.
+ */
+public class SearchMatch {
+    private String path;
+    private long lineNumber;
+    private String line;
+    private List<String> before;
+    private List<String> after;
+
+    /**
+     * Default constructor.
+     */
+    public SearchMatch() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param path The path to the file
+     * @param lineNumber The number of the matching line, starting at 1
+     * @param line The matching line, without its line terminator
+     * @param before The context lines before the matching line, nearest last
+     * @param after The context lines after the matching line, nearest first
+     */
+    public SearchMatch(String path, long lineNumber, String line, List<String> before, List<String> after) {
+        this.path = path;
+        this.lineNumber = lineNumber;
+        this.line = line;
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Get the path to the file.
+     *
+     * @return The path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Set the path to the file.
+     *
+     * @param path The path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Get the number of the matching line.
+     *
+     * @return The line number, starting at 1
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Set the number of the matching line.
+     *
+     * @param lineNumber The line number, starting at 1
+     */
+    public void setLineNumber(long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Get the matching line.
+     *
+     * @return The line, without its line terminator
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Set the matching line.
+     *
+     * @param line The line, without its line terminator
+     */
+    public void setLine(String line) {
+        this.line = line;
+    }
+
+    /**
+     * Get the context lines before the matching line.
+     *
+     * @return The lines, nearest last
+     */
+    public List<String> getBefore() {
+        return before;
+    }
+
+    /**
+     * Set the context lines before the matching line.
+     *
+     * @param before The lines, nearest last
+     */
+    public void setBefore(List<String> before) {
+        this.before = before;
+    }
+
+    /**
+     * Get the context lines after the matching line.
+     *
+     * @return The lines, nearest first
+     */
+    public List<String> getAfter() {
+        return after;
+    }
+
+    /**
+     * Set the context lines after the matching line.
+     *
+     * @param after The lines, nearest first
+     */
+    public void setAfter(List<String> after) {
+        this.after = after;
+    }
+}
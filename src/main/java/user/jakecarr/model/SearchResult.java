@@ -0,0 +1,86 @@
+package user.jakecarr.model;
+
+import java.util.List;
+
+/**
+ * Model class representing the lines found by a content search under a directory.
+ */
+public class SearchResult {
+    private List<SearchMatch> matches;
+    private int filesSearched;
+    private boolean truncated;
+
+    /**
+     * Default constructor.
+     */
+    public SearchResult() {
+    }
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param matches The matching lines, in the order the files were walked
+     * @param filesSearched The number of files whose content was searched
+     * @param truncated Whether the search stopped at the result limit or the entry or time budget
+     */
+    public SearchResult(List<SearchMatch> matches, int filesSearched, boolean truncated) {
+        this.matches = matches;
+        this.filesSearched = filesSearched;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the matching lines.
+     *
+     * @return The matches, in the order the files were walked
+     */
+    public List<SearchMatch> getMatches() {
+        return matches;
+    }
+
+    /**
+     * Set the matching lines.
+     *
+     * @param matches The matches
+     */
+    public void setMatches(List<SearchMatch> matches) {
+        this.matches = matches;
+    }
+
+    /**
+     * Get the number of files whose content was searched.
+     *
+     * @return The file count
+     */
+    public int getFilesSearched() {
+        return filesSearched;
+    }
+
+    /**
+     * Set the number of files whose content was searched.
+     *
+     * @param filesSearched The file count
+     */
+    public void setFilesSearched(int filesSearched) {
+        this.filesSearched = filesSearched;
+    }
+
+    /**
+     * Check if the search stopped before covering every file, because it found more matches than the
+     * result limit or ran out of its entry or time budget.
+     *
+     * @return True if more matches may exist, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Set whether the search stopped before covering every file.
+     *
+     * @param truncated True if more matches may exist, false otherwise
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
@@ -1,9 +1,11 @@
 package user.jakecarr.resources;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.FileListingPage;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.util.Arguments;
 import user.jakecarr.util.FileSystemUtils;
+import user.jakecarr.util.MetadataJsonWriter;
 import io.modelcontextprotocol.spec.McpSchema;
 import io.modelcontextprotocol.spec.McpError;
 import org.apache.logging.log4j.LogManager;
@@ -14,17 +16,21 @@ import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * Resource handler for directory listing.
- * This resource provides a list of files in a directory.
+ * This resource provides a paginated list of files in a directory.
+ * Supported query parameters are {@code recursive}, {@code pageSize}, {@code cursor}, {@code maxDepth},
+ * {@code include}, {@code exclude} and {@code type}; pattern lists are comma-separated.
  */
 public class DirectoryListingResource {
+    /**
+     * The prefix of the URIs served by this resource, followed by the path.
+     */
+    public static final String URI_PREFIX = "file://directory/";
+
     private static final Logger logger = LogManager.getLogger(DirectoryListingResource.class);
-    private static final String URI_PREFIX = "file://directory/";
-    private static final Pattern RECURSIVE_PARAM_PATTERN = Pattern.compile("[?&]recursive=(true|false)");
     
     private final FileSystemUtils fileSystemUtils;
     private final ObjectMapper objectMapper;
@@ -72,18 +78,15 @@ public class DirectoryListingResource {
             String uriWithoutParams = uri.contains("?") ? uri.substring(0, uri.indexOf("?")) : uri;
             String directoryPath = fileSystemUtils.extractPathFromUri(uriWithoutParams, URI_PREFIX);
             
-            // Extract recursive parameter
-            boolean recursive = false;
-            Matcher matcher = RECURSIVE_PARAM_PATTERN.matcher(uri);
-            if (matcher.find()) {
-                recursive = Boolean.parseBoolean(matcher.group(1));
-            }
+            // Extract listing parameters
+            Map<String, String> parameters = fileSystemUtils.extractQueryParameters(uri);
+            ListingOptions options = Arguments.toListingOptions(parameters);
             
-            logger.debug("Listing directory: {}, recursive: {}", directoryPath, recursive);
+            logger.debug("Listing directory: {}, recursive: {}", directoryPath, options.isRecursive());
             
-            // Get file listing
-            List<FileMetadata> files = fileSystemUtils.listFiles(directoryPath, recursive);
-            String json = serializeFileList(files);
+            // Get one page of the file listing
+            FileListingPage page = fileSystemUtils.listFiles(directoryPath, options);
+            String json = serializeFileListingPage(page, options);
             
             logger.debug("Directory listing request handled successfully for URI: {}", uri);
             
@@ -102,13 +105,14 @@ public class DirectoryListingResource {
     }
     
     /**
-     * Serialize a list of file metadata to JSON.
+     * Serialize a page of file metadata to JSON.
      * 
-     * @param files The list of file metadata
+     * @param page The page of file metadata
+     * @param options The listing options selecting the fields and path encoding
      * @return The JSON string
-     * @throws JsonProcessingException If an error occurs during serialization
+     * @throws IOException If an error occurs during serialization
      */
-    private String serializeFileList(List<FileMetadata> files) throws JsonProcessingException {
-        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(files);
+    private String serializeFileListingPage(FileListingPage page, ListingOptions options) throws IOException {
+        return MetadataJsonWriter.write(objectMapper, page, options.getFields(), options.isCompactPaths());
     }
 }
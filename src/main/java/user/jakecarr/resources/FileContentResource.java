@@ -1,6 +1,11 @@
 package user.jakecarr.resources;
 
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.FileContent;
+import user.jakecarr.model.LineRange;
+import user.jakecarr.util.Arguments;
 import user.jakecarr.util.FileSystemUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.modelcontextprotocol.spec.McpSchema;
 import io.modelcontextprotocol.spec.McpError;
 import org.apache.logging.log4j.LogManager;
@@ -9,28 +14,47 @@ import org.apache.logging.log4j.Logger;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Resource handler for file content.
+ * An optional {@code range} query parameter in HTTP form, such as {@code 0-1023} or {@code -4096},
+ * reads only that range of bytes, and an optional {@code lines} query parameter, such as {@code 120-180},
+ * reads only that range of lines of a text file. Content longer than the maximum response size is
+ * truncated, and a second, JSON entry for the same URI tells where to continue.
  */
 public class FileContentResource {
+    /**
+     * The prefix of the URIs served by this resource, followed by the path.
+     */
+    public static final String URI_PREFIX = "file://content/";
+
     private static final Logger logger = LogManager.getLogger(FileContentResource.class);
-    private static final String URI_PREFIX = "file://content/";
     
     private final FileSystemUtils fileSystemUtils;
+    private final ObjectMapper objectMapper;
     
     /**
-     * Constructor for Spring dependency injection.
+     * Constructor with a default object mapper.
      * 
      * @param fileSystemUtils The FileSystemUtils dependency
      */
     public FileContentResource(FileSystemUtils fileSystemUtils) {
+        this(fileSystemUtils, new ObjectMapper());
+    }
+    
+    /**
+     * Constructor for Spring dependency injection.
+     * 
+     * @param fileSystemUtils The FileSystemUtils dependency
+     * @param objectMapper The ObjectMapper dependency
+     */
+    public FileContentResource(FileSystemUtils fileSystemUtils, ObjectMapper objectMapper) {
         this.fileSystemUtils = fileSystemUtils;
+        this.objectMapper = objectMapper;
         logger.debug("FileContentResource constructed");
     }
     
@@ -61,30 +85,25 @@ public class FileContentResource {
         logger.debug("Handling file content request for URI: {}", uri);
         
         try {
-            String filePath = fileSystemUtils.extractPathFromUri(uri, URI_PREFIX);
-            Path path = Paths.get(filePath);
-            
-            if (!Files.exists(path)) {
-                logger.warn("File does not exist: {}", filePath);
-                throw new IOException("File does not exist: " + filePath);
-            }
+            String uriWithoutParams = uri.contains("?") ? uri.substring(0, uri.indexOf("?")) : uri;
+            String filePath = fileSystemUtils.extractPathFromUri(uriWithoutParams, URI_PREFIX);
+            Map<String, String> parameters = fileSystemUtils.extractQueryParameters(uri);
+            ByteRange range = Arguments.getByteRange(parameters);
+            LineRange lines = Arguments.getLineRange(parameters);
             
-            if (Files.isDirectory(path)) {
-                logger.warn("Cannot read content of a directory: {}", filePath);
-                throw new IOException("Cannot read content of a directory: " + filePath);
+            if (range != null && lines != null) {
+                throw new IOException("Request either a byte range or a line range: " + uri);
             }
             
-            String content;
+            FileContent fileContent = lines != null ? fileSystemUtils.readFile(filePath, lines)
+                    : fileSystemUtils.readFile(filePath, range);
             String mimeType;
-            
-            if (fileSystemUtils.isTextFile(filePath)) {
-                content = fileSystemUtils.readTextFile(filePath);
-                mimeType = determineMimeType(filePath);
-                logger.debug("Read text file: {}", filePath);
-            } else {
-                content = fileSystemUtils.readBinaryFile(filePath);
+            if (fileContent.isBinary()) {
                 mimeType = "application/octet-stream;base64";
                 logger.debug("Read binary file: {}", filePath);
+            } else {
+                mimeType = determineMimeType(filePath);
+                logger.debug("Read text file: {}", filePath);
             }
             
             logger.debug("File content request handled successfully for URI: {}", uri);
@@ -93,8 +112,12 @@ public class FileContentResource {
             contents.add(new McpSchema.TextResourceContents(
                 uri,
                 mimeType,
-                content
+                fileContent.getContent()
             ));
+            if (fileContent.isTruncated()) {
+                contents.add(new McpSchema.TextResourceContents(uri, "application/json",
+                        objectMapper.writeValueAsString(describeTruncation(fileContent))));
+            }
             
             return new McpSchema.ReadResourceResult(contents);
         } catch (IOException e) {
@@ -103,6 +126,22 @@ public class FileContentResource {
         }
     }
     
+    /**
+     * Describe how a truncated read was cut short, for the client to continue from.
+     * 
+     * @param content The truncated content
+     * @return The size of the file, the range covered, the truncated flag and the offset to continue from
+     */
+    public static Map<String, Object> describeTruncation(FileContent content) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("size", content.getSize());
+        description.put("offset", content.getOffset());
+        description.put("length", content.getLength());
+        description.put("truncated", content.isTruncated());
+        description.put("nextOffset", content.getNextOffset());
+        return description;
+    }
+    
     /**
      * Determine the MIME type of a file based on its extension.
      * 
@@ -1,9 +1,11 @@
 package user.jakecarr.resources;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.MetadataField;
+import user.jakecarr.util.Arguments;
 import user.jakecarr.util.FileSystemUtils;
+import user.jakecarr.util.MetadataJsonWriter;
 import io.modelcontextprotocol.spec.McpSchema;
 import io.modelcontextprotocol.spec.McpError;
 import org.apache.logging.log4j.LogManager;
@@ -14,13 +16,18 @@ import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Resource handler for file metadata.
  */
 public class FileMetadataResource {
+    /**
+     * The prefix of the URIs served by this resource, followed by the path.
+     */
+    public static final String URI_PREFIX = "file://metadata/";
+
     private static final Logger logger = LogManager.getLogger(FileMetadataResource.class);
-    private static final String URI_PREFIX = "file://metadata/";
     
     private final FileSystemUtils fileSystemUtils;
     private final ObjectMapper objectMapper;
@@ -64,9 +71,11 @@ public class FileMetadataResource {
         logger.debug("Handling file metadata request for URI: {}", uri);
         
         try {
-            String filePath = fileSystemUtils.extractPathFromUri(uri, URI_PREFIX);
-            FileMetadata metadata = fileSystemUtils.getFileMetadata(filePath);
-            String json = serializeMetadata(metadata);
+            String uriWithoutParams = uri.contains("?") ? uri.substring(0, uri.indexOf("?")) : uri;
+            String filePath = fileSystemUtils.extractPathFromUri(uriWithoutParams, URI_PREFIX);
+            Set<MetadataField> fields = Arguments.getFields(fileSystemUtils.extractQueryParameters(uri));
+            FileMetadata metadata = fileSystemUtils.getFileMetadata(filePath, fields);
+            String json = serializeMetadata(metadata, fields);
             
             logger.debug("File metadata request handled successfully for URI: {}", uri);
             
@@ -88,10 +97,11 @@ public class FileMetadataResource {
      * Serialize file metadata to JSON.
      * 
      * @param metadata The file metadata
+     * @param fields The metadata fields to write
      * @return The JSON string
-     * @throws JsonProcessingException If an error occurs during serialization
+     * @throws IOException If an error occurs during serialization
      */
-    private String serializeMetadata(FileMetadata metadata) throws JsonProcessingException {
-        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(metadata);
+    private String serializeMetadata(FileMetadata metadata, Set<MetadataField> fields) throws IOException {
+        return MetadataJsonWriter.write(objectMapper, metadata, fields);
     }
 }
@@ -0,0 +1,327 @@
+package user.jakecarr.resources;
+
+import io.modelcontextprotocol.spec.McpError;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import user.jakecarr.util.DirectoryWatcher;
+import user.jakecarr.util.FileSystemUtils;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks subscriptions to the file resources and tells subscribers when a resource was updated.
+ * <p>
+ * All subscriptions share one {@link DirectoryWatcher}: a file resource watches the directory holding the
+ * file and a directory resource watches the directory itself. Events are debounced per resource, so a
+ * burst of writes yields a single update once the resource has been quiet for the debounce interval, or
+ * at the latest {@link #MAX_DELAY_INTERVALS} intervals after the first event. Because a directory event
+ * does not say which child changed, a file resource is only reported when the file's existence, size or
+ * modification time differs from the last report.
+ */
+public class ResourceSubscriptions implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ResourceSubscriptions.class);
+
+    /**
+     * The number of debounce intervals after which a resource that keeps changing is reported anyway.
+     */
+    static final int MAX_DELAY_INTERVALS = 5;
+
+    private final FileSystemUtils fileSystemUtils;
+    private final long debounceNanos;
+    private final DirectoryWatcher watcher;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Subscription> subscriptions = new HashMap<>();
+    private final Map<Path, Set<String>> urisByDirectory = new HashMap<>();
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    /**
+     * Receives the updates of subscribed resources.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the notifier thread when a subscribed resource was updated.
+         *
+         * @param uri The URI the listener subscribed to
+         */
+        void resourceUpdated(String uri);
+    }
+
+    /**
+     * Create the subscriptions and start the watcher and notifier threads.
+     *
+     * @param fileSystemUtils The FileSystemUtils dependency
+     * @param debounceMs The time a resource must be quiet before an update is sent, in milliseconds
+     * @throws IOException If the watch service cannot be created
+     */
+    public ResourceSubscriptions(FileSystemUtils fileSystemUtils, long debounceMs) throws IOException {
+        this.fileSystemUtils = fileSystemUtils;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, debounceMs));
+        this.watcher = new DirectoryWatcher(this::directoryChanged);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribe to the updates of a resource.
+     *
+     * @param uri The URI of a content, metadata or directory resource
+     * @param listener The listener notified of updates
+     * @throws McpError If the URI is not a file resource or its directory cannot be watched
+     */
+    public synchronized void subscribe(String uri, Listener listener) {
+        Subscription subscription = subscriptions.get(uri);
+        if (subscription == null) {
+            subscription = createSubscription(uri);
+            if (!watcher.watch(subscription.directory)) {
+                throw new McpError("Cannot watch resource: " + uri);
+            }
+            subscriptions.put(uri, subscription);
+            urisByDirectory.computeIfAbsent(subscription.directory, directory -> new HashSet<>()).add(uri);
+            logger.debug("Subscribed to resource: {}", uri);
+        }
+        subscription.listeners.add(listener);
+    }
+
+    /**
+     * Cancel a subscription to a resource.
+     *
+     * @param uri The URI
+     * @param listener The listener that subscribed
+     */
+    public synchronized void unsubscribe(String uri, Listener listener) {
+        Subscription subscription = subscriptions.get(uri);
+        if (subscription != null && subscription.listeners.remove(listener) && subscription.listeners.isEmpty()) {
+            remove(subscription);
+        }
+    }
+
+    /**
+     * Cancel all subscriptions of a listener, such as those of a closed session.
+     *
+     * @param listener The listener
+     */
+    public synchronized void unsubscribeAll(Listener listener) {
+        for (Subscription subscription : new ArrayList<>(subscriptions.values())) {
+            if (subscription.listeners.remove(listener) && subscription.listeners.isEmpty()) {
+                remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Stop the watcher and notifier threads.
+     */
+    @PreDestroy
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        watcher.close();
+        subscriptions.clear();
+        urisByDirectory.clear();
+        pending.clear();
+    }
+
+    /**
+     * Resolve the file a resource URI refers to.
+     *
+     * @param uri The URI
+     * @return The subscription, without listeners
+     * @throws McpError If the URI is not a file resource
+     */
+    private Subscription createSubscription(String uri) {
+        String withoutQuery = uri.contains("?") ? uri.substring(0, uri.indexOf('?')) : uri;
+        if (withoutQuery.startsWith(DirectoryListingResource.URI_PREFIX)) {
+            Path directory = Paths.get(fileSystemUtils.extractPathFromUri(withoutQuery,
+                    DirectoryListingResource.URI_PREFIX)).toAbsolutePath().normalize();
+            return new Subscription(uri, directory, directory, true);
+        }
+        String prefix = withoutQuery.startsWith(FileContentResource.URI_PREFIX) ? FileContentResource.URI_PREFIX
+                : withoutQuery.startsWith(FileMetadataResource.URI_PREFIX) ? FileMetadataResource.URI_PREFIX : null;
+        if (prefix == null) {
+            throw new McpError("Unknown resource: " + uri);
+        }
+        Path path = Paths.get(fileSystemUtils.extractPathFromUri(withoutQuery, prefix)).toAbsolutePath().normalize();
+        Path directory = path.getParent();
+        if (directory == null) {
+            throw new McpError("Cannot watch resource: " + uri);
+        }
+        return new Subscription(uri, path, directory, false);
+    }
+
+    /**
+     * Stop tracking a resource nobody subscribes to any more.
+     *
+     * @param subscription The subscription
+     */
+    private void remove(Subscription subscription) {
+        subscriptions.remove(subscription.uri);
+        pending.remove(subscription.uri);
+        Set<String> uris = urisByDirectory.get(subscription.directory);
+        uris.remove(subscription.uri);
+        if (uris.isEmpty()) {
+            urisByDirectory.remove(subscription.directory);
+            watcher.unwatch(subscription.directory);
+        }
+        logger.debug("Unsubscribed from resource: {}", subscription.uri);
+    }
+
+    /**
+     * Start or extend the debounce interval of every resource in a changed directory.
+     *
+     * @param directory The changed directory
+     */
+    private synchronized void directoryChanged(Path directory) {
+        Set<String> uris = urisByDirectory.get(directory);
+        if (uris == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (String uri : uris) {
+            Pending waiting = pending.get(uri);
+            if (waiting == null) {
+                pending.put(uri, new Pending(now));
+                schedule(uri, debounceNanos);
+            } else {
+                waiting.lastEvent = now;
+            }
+        }
+    }
+
+    /**
+     * Report a resource once its debounce interval has passed, or wait for the rest of it.
+     *
+     * @param uri The URI
+     */
+    private void flush(String uri) {
+        List<Listener> listeners;
+        synchronized (this) {
+            Pending waiting = pending.get(uri);
+            Subscription subscription = subscriptions.get(uri);
+            if (waiting == null || subscription == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            long quiet = waiting.lastEvent + debounceNanos - now;
+            long latest = waiting.firstEvent + MAX_DELAY_INTERVALS * debounceNanos - now;
+            if (quiet > 0 && latest > 0) {
+                schedule(uri, Math.min(quiet, latest));
+                return;
+            }
+            pending.remove(uri);
+            // A deleted and recreated directory has lost its watch
+            watcher.watch(subscription.directory);
+            if (!subscription.listing) {
+                FileState state = FileState.read(subscription.path);
+                if (state.equals(subscription.state)) {
+                    return;
+                }
+                subscription.state = state;
+            }
+            listeners = new ArrayList<>(subscription.listeners);
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.resourceUpdated(uri);
+            } catch (RuntimeException e) {
+                logger.warn("Resource update listener failed for: {}", uri, e);
+            }
+        }
+    }
+
+    private void schedule(String uri, long delayNanos) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(() -> flush(uri), delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * A subscribed resource and the listeners subscribed to it.
+     */
+    private static final class Subscription {
+        private final String uri;
+        private final Path path;
+        private final Path directory;
+        private final boolean listing;
+        private final Set<Listener> listeners = new HashSet<>();
+        private FileState state;
+
+        private Subscription(String uri, Path path, Path directory, boolean listing) {
+            this.uri = uri;
+            this.path = path;
+            this.directory = directory;
+            this.listing = listing;
+            this.state = listing ? null : FileState.read(path);
+        }
+    }
+
+    /**
+     * The times of the first and the latest event of a resource that waits to be reported.
+     */
+    private static final class Pending {
+        private final long firstEvent;
+        private long lastEvent;
+
+        private Pending(long now) {
+            this.firstEvent = now;
+            this.lastEvent = now;
+        }
+    }
+
+    /**
+     * The attributes of a file that decide whether a file resource was updated.
+     */
+    private static final class FileState {
+        private static final FileState MISSING = new FileState(-1, null);
+
+        private final long size;
+        private final FileTime lastModified;
+
+        private FileState(long size, FileTime lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static FileState read(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileState(attributes.size(), attributes.lastModifiedTime());
+            } catch (IOException e) {
+                return MISSING;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileState)) {
+                return false;
+            }
+            FileState state = (FileState) other;
+            return size == state.size && Objects.equals(lastModified, state.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
+}
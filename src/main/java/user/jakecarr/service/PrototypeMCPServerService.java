@@ -14,16 +14,35 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 import user.jakecarr.FileSystemServer;
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.ChangeSet;
+import user.jakecarr.model.DiskUsageReport;
+import user.jakecarr.model.EntryType;
+import user.jakecarr.model.FileContent;
+import user.jakecarr.model.FileListingPage;
 import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.FileSortKey;
+import user.jakecarr.model.FileTail;
+import user.jakecarr.model.LineRange;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.model.MetadataField;
+import user.jakecarr.model.SearchResult;
 import user.jakecarr.resources.DirectoryListingResource;
 import user.jakecarr.resources.FileContentResource;
 import user.jakecarr.resources.FileMetadataResource;
+import user.jakecarr.resources.ResourceSubscriptions;
+import user.jakecarr.util.Arguments;
+import user.jakecarr.util.ChangeJournal;
+import user.jakecarr.util.ContentSearcher;
 import user.jakecarr.util.FileSystemUtils;
+import user.jakecarr.util.MetadataJsonWriter;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class for managing the MCP server lifecycle and tools.
@@ -31,10 +50,18 @@ import java.util.Map;
 @Service
 public class PrototypeMCPServerService {
     private static final Logger logger = LogManager.getLogger(PrototypeMCPServerService.class);
+    private static final int DEFAULT_TOP_FILES = 50;
+    private static final int DEFAULT_TAIL_LINES = 10;
+    private static final int DEFAULT_SEARCH_CONTEXT = 2;
+    private static final int MAX_SEARCH_CONTEXT = 10;
+    private static final int DEFAULT_SEARCH_RESULTS = 100;
+    private static final int MAX_SEARCH_RESULTS = 1000;
     
     private final ApplicationContext applicationContext;
     private final FileSystemServer fileSystemServer;
     private final FileSystemUtils fileSystemUtils;
+    private final ChangeJournal changeJournal;
+    private final ResourceSubscriptions resourceSubscriptions;
     private final ObjectMapper objectMapper;
     private McpSyncServer mcpServer;
     
@@ -44,16 +71,22 @@ public class PrototypeMCPServerService {
      * @param applicationContext The Spring application context
      * @param fileSystemServer The FileSystemServer dependency
      * @param fileSystemUtils The FileSystemUtils dependency
+     * @param changeJournal The ChangeJournal dependency
+     * @param resourceSubscriptions The ResourceSubscriptions dependency
      * @param objectMapper The ObjectMapper dependency
      */
     @Autowired
     public PrototypeMCPServerService(ApplicationContext applicationContext,
                            FileSystemServer fileSystemServer,
                            FileSystemUtils fileSystemUtils,
+                           ChangeJournal changeJournal,
+                           ResourceSubscriptions resourceSubscriptions,
                            ObjectMapper objectMapper) {
         this.applicationContext = applicationContext;
         this.fileSystemServer = fileSystemServer;
         this.fileSystemUtils = fileSystemUtils;
+        this.changeJournal = changeJournal;
+        this.resourceSubscriptions = resourceSubscriptions;
         this.objectMapper = objectMapper;
         logger.debug("PrototypeMCPServerService constructed");
     }
@@ -70,17 +103,28 @@ public class PrototypeMCPServerService {
             // Create server info
             McpSchema.Implementation serverInfo = new McpSchema.Implementation("filesystem-mcp-server", "1.0.0");
             
-            // Create transport provider
-            StdioServerTransportProvider transportProvider = new StdioServerTransportProvider();
-            
-            // Get resources
-            FileMetadataResource metadataResource = fileSystemServer.getMetadataResource();
-            FileContentResource contentResource = fileSystemServer.getContentResource();
-            DirectoryListingResource directoryListingResource = fileSystemServer.getDirectoryListingResource();
+            // Create transport provider, answering resource reads and subscriptions for the file resources
+            ResourceTransportProvider transportProvider = new ResourceTransportProvider(
+                    new StdioServerTransportProvider(), fileSystemServer, resourceSubscriptions);
             
             // Create server using the builder pattern
             mcpServer = McpServer.sync(transportProvider)
                 .serverInfo(serverInfo)
+                .capabilities(McpSchema.ServerCapabilities.builder()
+                    .tools(false)
+                    .resources(true, false)
+                    .build())
+                // Register the file resources as templates
+                .resourceTemplates(
+                    new McpSchema.ResourceTemplate(FileContentResource.URI_PREFIX + "{path}", "File content",
+                        "Content of a file, base64-encoded if it is binary", null, null),
+                    new McpSchema.ResourceTemplate(FileMetadataResource.URI_PREFIX + "{path}", "File metadata",
+                        "Metadata of a file or directory; an optional fields query parameter selects fields",
+                        "application/json", null),
+                    new McpSchema.ResourceTemplate(DirectoryListingResource.URI_PREFIX + "{path}",
+                        "Directory listing", "Paginated listing of a directory; query parameters as for list_files",
+                        "application/json", null)
+                )
                 // Register the list_files tool
                 .tool(
                     new McpSchema.Tool(
@@ -90,11 +134,12 @@ public class PrototypeMCPServerService {
                     ),
                     (exchange, toolArgs) -> {
                         String path = (String) toolArgs.get("path");
-                        Boolean recursive = toolArgs.containsKey("recursive") ? (Boolean) toolArgs.get("recursive") : false;
                         
                         try {
-                            List<FileMetadata> files = fileSystemUtils.listFiles(path, recursive);
-                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(files);
+                            ListingOptions options = Arguments.toListingOptions(toolArgs);
+                            FileListingPage page = fileSystemUtils.listFiles(path, options);
+                            String json = MetadataJsonWriter.write(objectMapper, page, options.getFields(),
+                                    options.isCompactPaths());
                             
                             List<McpSchema.Content> content = new ArrayList<>();
                             content.add(new McpSchema.TextContent(json));
@@ -121,8 +166,9 @@ public class PrototypeMCPServerService {
                         String path = (String) toolArgs.get("path");
                         
                         try {
-                            FileMetadata metadata = fileSystemUtils.getFileMetadata(path);
-                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(metadata);
+                            Set<MetadataField> fields = Arguments.getFields(toolArgs);
+                            FileMetadata metadata = fileSystemUtils.getFileMetadata(path, fields);
+                            String json = MetadataJsonWriter.write(objectMapper, metadata, fields);
                             
                             List<McpSchema.Content> content = new ArrayList<>();
                             content.add(new McpSchema.TextContent(json));
@@ -142,28 +188,32 @@ public class PrototypeMCPServerService {
                 .tool(
                     new McpSchema.Tool(
                         "get_file_content",
-                        "Get content of a file",
+                        "Get content of a file; content beyond the maximum response size is truncated and "
+                                + "followed by a JSON entry with the size, truncated flag and nextOffset",
                         createFileContentSchema()
                     ),
                     (exchange, toolArgs) -> {
                         String path = (String) toolArgs.get("path");
                         
                         try {
-                            String content;
-                            String mimeType;
-                            
-                            if (fileSystemUtils.isTextFile(path)) {
-                                content = fileSystemUtils.readTextFile(path);
-                                mimeType = "text/plain";
-                            } else {
-                                content = fileSystemUtils.readBinaryFile(path);
-                                mimeType = "application/octet-stream;base64";
+                            ByteRange range = Arguments.getByteRange(toolArgs);
+                            LineRange lines = Arguments.getLineRange(toolArgs);
+                            if (range != null && lines != null) {
+                                throw new IllegalArgumentException("Request either a byte range or a line range");
                             }
                             
+                            FileContent fileContent = lines != null ? fileSystemUtils.readFile(path, lines)
+                                    : fileSystemUtils.readFile(path, range);
+                            
                             List<McpSchema.Content> contentList = new ArrayList<>();
                             contentList.add(new McpSchema.TextContent(
-                                content
+                                fileContent.getContent()
                             ));
+                            if (fileContent.isTruncated()) {
+                                // Tell the client how much was left out and where to continue
+                                contentList.add(new McpSchema.TextContent(objectMapper.writeValueAsString(
+                                        FileContentResource.describeTruncation(fileContent))));
+                            }
                             
                             return new McpSchema.CallToolResult(contentList, false);
                         } catch (Exception e) {
@@ -176,6 +226,176 @@ public class PrototypeMCPServerService {
                         }
                     }
                 )
+                // Register the top_files tool
+                .tool(
+                    new McpSchema.Tool(
+                        "top_files",
+                        "Find the largest or most recently modified files under a directory",
+                        createTopFilesSchema()
+                    ),
+                    (exchange, toolArgs) -> {
+                        String path = (String) toolArgs.get("path");
+                        
+                        try {
+                            ListingOptions options = Arguments.toListingOptions(toolArgs);
+                            if (options.getType() == null) {
+                                options.setType(EntryType.FILE);
+                            }
+                            int limit = Math.max(1, Math.min(ListingOptions.MAX_PAGE_SIZE,
+                                    Arguments.getInt(toolArgs, "limit", DEFAULT_TOP_FILES)));
+                            String by = Arguments.getString(toolArgs, "by");
+                            FileSortKey sortKey = by == null ? FileSortKey.SIZE : FileSortKey.fromString(by);
+                            
+                            FileListingPage page = fileSystemUtils.topFiles(path, limit, sortKey, options);
+                            String json = MetadataJsonWriter.write(objectMapper, page, options.getFields());
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent(json));
+                            
+                            return new McpSchema.CallToolResult(content, false);
+                        } catch (Exception e) {
+                            logger.error("Error finding top files: {}", e.getMessage(), e);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent("Error finding top files: " + e.getMessage()));
+                            
+                            return new McpSchema.CallToolResult(content, true);
+                        }
+                    }
+                )
+                // Register the disk_usage tool
+                .tool(
+                    new McpSchema.Tool(
+                        "disk_usage",
+                        "Compute the size and file count of a directory tree, rolled up per subdirectory",
+                        createDiskUsageSchema()
+                    ),
+                    (exchange, toolArgs) -> {
+                        String path = (String) toolArgs.get("path");
+                        
+                        try {
+                            ListingOptions options = Arguments.toListingOptions(toolArgs);
+                            int depth = Math.max(0, Arguments.getInt(toolArgs, "depth", 1));
+                            DiskUsageReport report = fileSystemUtils.diskUsage(path, depth, options);
+                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent(json));
+                            
+                            return new McpSchema.CallToolResult(content, false);
+                        } catch (Exception e) {
+                            logger.error("Error computing disk usage: {}", e.getMessage(), e);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent("Error computing disk usage: " + e.getMessage()));
+                            
+                            return new McpSchema.CallToolResult(content, true);
+                        }
+                    }
+                )
+                // Register the list_changes tool
+                .tool(
+                    new McpSchema.Tool(
+                        "list_changes",
+                        "List the entries added, modified or deleted under a directory since a change token",
+                        createListChangesSchema()
+                    ),
+                    (exchange, toolArgs) -> {
+                        String path = (String) toolArgs.get("path");
+                        
+                        try {
+                            String token = Arguments.getString(toolArgs, "token");
+                            ChangeSet changes = changeJournal.getChanges(Paths.get(path), token);
+                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(changes);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent(json));
+                            
+                            return new McpSchema.CallToolResult(content, false);
+                        } catch (Exception e) {
+                            logger.error("Error listing changes: {}", e.getMessage(), e);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent("Error listing changes: " + e.getMessage()));
+                            
+                            return new McpSchema.CallToolResult(content, true);
+                        }
+                    }
+                )
+                // Register the tail_file tool
+                .tool(
+                    new McpSchema.Tool(
+                        "tail_file",
+                        "Get the last lines of a text file, or with a token only the text appended since the "
+                                + "previous call; a rotated or truncated file is followed from its start",
+                        createTailFileSchema()
+                    ),
+                    (exchange, toolArgs) -> {
+                        String path = (String) toolArgs.get("path");
+                        
+                        try {
+                            String token = Arguments.getString(toolArgs, "token");
+                            int lines = Arguments.getInt(toolArgs, "lines", DEFAULT_TAIL_LINES);
+                            FileTail tail = token != null ? fileSystemUtils.followFile(path, token)
+                                    : fileSystemUtils.tailFile(path, lines);
+                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(tail);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent(json));
+                            
+                            return new McpSchema.CallToolResult(content, false);
+                        } catch (Exception e) {
+                            logger.error("Error tailing file: {}", e.getMessage(), e);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent("Error tailing file: " + e.getMessage()));
+                            
+                            return new McpSchema.CallToolResult(content, true);
+                        }
+                    }
+                )
+                // Register the search_content tool
+                .tool(
+                    new McpSchema.Tool(
+                        "search_content",
+                        "Find the lines of the text files under a directory that contain a literal or match a "
+                                + "regular expression, with the lines around them",
+                        createSearchContentSchema()
+                    ),
+                    (exchange, toolArgs) -> {
+                        String path = (String) toolArgs.get("path");
+                        
+                        try {
+                            String pattern = Arguments.getString(toolArgs, "pattern");
+                            boolean ignoreCase = Arguments.getBoolean(toolArgs, "ignoreCase", false);
+                            ContentSearcher searcher = Arguments.getBoolean(toolArgs, "regex", false)
+                                    ? ContentSearcher.regex(pattern, ignoreCase)
+                                    : ContentSearcher.literal(pattern, ignoreCase);
+                            int context = Math.max(0, Math.min(MAX_SEARCH_CONTEXT,
+                                    Arguments.getInt(toolArgs, "context", DEFAULT_SEARCH_CONTEXT)));
+                            int maxResults = Math.max(1, Math.min(MAX_SEARCH_RESULTS,
+                                    Arguments.getInt(toolArgs, "maxResults", DEFAULT_SEARCH_RESULTS)));
+                            ListingOptions options = Arguments.toListingOptions(toolArgs);
+                            options.setType(EntryType.FILE);
+                            
+                            SearchResult result = fileSystemUtils.searchContent(path, searcher, context, maxResults,
+                                    options);
+                            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent(json));
+                            
+                            return new McpSchema.CallToolResult(content, false);
+                        } catch (Exception e) {
+                            logger.error("Error searching content: {}", e.getMessage(), e);
+                            
+                            List<McpSchema.Content> content = new ArrayList<>();
+                            content.add(new McpSchema.TextContent("Error searching content: " + e.getMessage()));
+                            
+                            return new McpSchema.CallToolResult(content, true);
+                        }
+                    }
+                )
                 .build();
             
             logger.info("MCP server initialized successfully");
@@ -199,12 +419,32 @@ public class PrototypeMCPServerService {
         path.put("description", "Path to the file or directory");
         
         properties.put("path", path);
+        properties.put("fields", createFieldsSchema());
         
         List<String> required = List.of("path");
         
         return new McpSchema.JsonSchema("object", properties, required, null);
     }
     
+    /**
+     * Create the JSON schema of the fields argument shared by the metadata tools.
+     * 
+     * @return The JSON schema of the argument
+     */
+    private static Map<String, Object> createFieldsSchema() {
+        List<String> names = new ArrayList<>();
+        for (MetadataField field : MetadataField.values()) {
+            names.add(field.getPropertyName());
+        }
+        
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("type", "array");
+        fields.put("items", Map.of("type", "string", "enum", names));
+        fields.put("description", "Metadata fields to return for each entry, e.g. [\"name\", \"size\"]; "
+                + "all fields when omitted");
+        return fields;
+    }
+    
     /**
      * Create the JSON schema for the get_file_content tool.
      * 
@@ -218,7 +458,28 @@ public class PrototypeMCPServerService {
         path.put("type", "string");
         path.put("description", "Path to the file");
         
+        Map<String, Object> offset = new HashMap<>();
+        offset.put("type", "integer");
+        offset.put("description", "Offset of the first byte to read (default 0)");
+        
+        Map<String, Object> length = new HashMap<>();
+        length.put("type", "integer");
+        length.put("description", "Number of bytes to read from the offset (default up to the end of the file)");
+        
+        Map<String, Object> startLine = new HashMap<>();
+        startLine.put("type", "integer");
+        startLine.put("description", "Number of the first line to read, starting at 1; "
+                + "cannot be combined with offset and length");
+        
+        Map<String, Object> endLine = new HashMap<>();
+        endLine.put("type", "integer");
+        endLine.put("description", "Number of the last line to read, inclusive (default the last line)");
+        
         properties.put("path", path);
+        properties.put("offset", offset);
+        properties.put("length", length);
+        properties.put("startLine", startLine);
+        properties.put("endLine", endLine);
         
         List<String> required = List.of("path");
         
@@ -274,11 +535,274 @@ public class PrototypeMCPServerService {
         recursive.put("type", "boolean");
         recursive.put("description", "Whether to list files recursively");
         
+        Map<String, Object> pageSize = new HashMap<>();
+        pageSize.put("type", "integer");
+        pageSize.put("description", "Maximum number of entries per page (default "
+                + ListingOptions.DEFAULT_PAGE_SIZE + ", max " + ListingOptions.MAX_PAGE_SIZE + ")");
+        
+        Map<String, Object> cursor = new HashMap<>();
+        cursor.put("type", "string");
+        cursor.put("description", "Continuation token returned as nextCursor by the previous page");
+        
+        Map<String, Object> compactPaths = new HashMap<>();
+        compactPaths.put("type", "boolean");
+        compactPaths.put("description", "Send each directory prefix once in a directories array and give "
+                + "entries a dir index instead of a full path (default false)");
+        
         properties.put("path", path);
         properties.put("recursive", recursive);
+        properties.put("pageSize", pageSize);
+        properties.put("cursor", cursor);
+        properties.put("compactPaths", compactPaths);
+        addWalkProperties(properties, "Only return entries of this type");
+        
+        List<String> required = List.of("path");
+        
+        return new McpSchema.JsonSchema("object", properties, required, null);
+    }
+    
+    /**
+     * Create the JSON schema for the top_files tool.
+     * 
+     * @return The JSON schema
+     */
+    private static McpSchema.JsonSchema createTopFilesSchema() {
+        // Create input schema for the tool
+        Map<String, Object> properties = new HashMap<>();
+        
+        Map<String, Object> path = new HashMap<>();
+        path.put("type", "string");
+        path.put("description", "Directory path to search recursively");
+        
+        Map<String, Object> limit = new HashMap<>();
+        limit.put("type", "integer");
+        limit.put("description", "Number of files to return (default " + DEFAULT_TOP_FILES
+                + ", max " + ListingOptions.MAX_PAGE_SIZE + ")");
+        
+        Map<String, Object> by = new HashMap<>();
+        by.put("type", "string");
+        by.put("enum", List.of("size", "lastModified"));
+        by.put("description", "Attribute to rank files by, largest or newest first (default size)");
+        
+        properties.put("path", path);
+        properties.put("limit", limit);
+        properties.put("by", by);
+        addWalkProperties(properties, "Only rank entries of this type (default file)");
+        
+        List<String> required = List.of("path");
+        
+        return new McpSchema.JsonSchema("object", properties, required, null);
+    }
+    
+    /**
+     * Create the JSON schema for the disk_usage tool.
+     * 
+     * @return The JSON schema
+     */
+    private static McpSchema.JsonSchema createDiskUsageSchema() {
+        // Create input schema for the tool
+        Map<String, Object> properties = new HashMap<>();
+        
+        Map<String, Object> path = new HashMap<>();
+        path.put("type", "string");
+        path.put("description", "Directory path to measure");
+        
+        Map<String, Object> depth = new HashMap<>();
+        depth.put("type", "integer");
+        depth.put("description", "Deepest level of subdirectories that get their own rollup, "
+                + "0 for the directory only (default 1)");
+        
+        Map<String, Object> exclude = new HashMap<>();
+        exclude.put("type", "array");
+        exclude.put("items", Map.of("type", "string"));
+        exclude.put("description", "Glob patterns of entries to leave out together with everything below them");
+        
+        properties.put("path", path);
+        properties.put("depth", depth);
+        properties.put("exclude", exclude);
+        addBudgetProperties(properties);
+        
+        List<String> required = List.of("path");
+        
+        return new McpSchema.JsonSchema("object", properties, required, null);
+    }
+    
+    /**
+     * Create the JSON schema for the list_changes tool.
+     * 
+     * @return The JSON schema
+     */
+    private static McpSchema.JsonSchema createListChangesSchema() {
+        // Create input schema for the tool
+        Map<String, Object> properties = new HashMap<>();
+        
+        Map<String, Object> path = new HashMap<>();
+        path.put("type", "string");
+        path.put("description", "Directory path to track for changes");
+        
+        Map<String, Object> token = new HashMap<>();
+        token.put("type", "string");
+        token.put("description", "Change token returned by the previous call; omit it to start tracking "
+                + "and receive a first token");
+        
+        properties.put("path", path);
+        properties.put("token", token);
         
         List<String> required = List.of("path");
         
         return new McpSchema.JsonSchema("object", properties, required, null);
     }
+    
+    /**
+     * Create the JSON schema for the tail_file tool.
+     * 
+     * @return The JSON schema
+     */
+    private static McpSchema.JsonSchema createTailFileSchema() {
+        // Create input schema for the tool
+        Map<String, Object> properties = new HashMap<>();
+        
+        Map<String, Object> path = new HashMap<>();
+        path.put("type", "string");
+        path.put("description", "Path to the text file");
+        
+        Map<String, Object> lines = new HashMap<>();
+        lines.put("type", "integer");
+        lines.put("description", "Number of lines to return from the end of the file (default: "
+                + DEFAULT_TAIL_LINES + ")");
+        
+        Map<String, Object> token = new HashMap<>();
+        token.put("type", "string");
+        token.put("description", "Tail token returned by the previous call; return only the text appended since");
+        
+        properties.put("path", path);
+        properties.put("lines", lines);
+        properties.put("token", token);
+        
+        List<String> required = List.of("path");
+        
+        return new McpSchema.JsonSchema("object", properties, required, null);
+    }
+    
+    /**
+     * Create the JSON schema for the search_content tool.
+     * 
+     * @return The JSON schema
+     */
+    private static McpSchema.JsonSchema createSearchContentSchema() {
+        // Create input schema for the tool
+        Map<String, Object> properties = new HashMap<>();
+        
+        Map<String, Object> path = new HashMap<>();
+        path.put("type", "string");
+        path.put("description", "Directory path to search recursively");
+        
+        Map<String, Object> pattern = new HashMap<>();
+        pattern.put("type", "string");
+        pattern.put("description", "Text to find within a line, or a Java regular expression if regex is true");
+        
+        Map<String, Object> regex = new HashMap<>();
+        regex.put("type", "boolean");
+        regex.put("description", "Whether the pattern is a regular expression (default false)");
+        
+        Map<String, Object> ignoreCase = new HashMap<>();
+        ignoreCase.put("type", "boolean");
+        ignoreCase.put("description", "Whether to ignore case (default false)");
+        
+        Map<String, Object> context = new HashMap<>();
+        context.put("type", "integer");
+        context.put("description", "Number of lines to return before and after each matching line (default "
+                + DEFAULT_SEARCH_CONTEXT + ", max " + MAX_SEARCH_CONTEXT + ")");
+        
+        Map<String, Object> maxResults = new HashMap<>();
+        maxResults.put("type", "integer");
+        maxResults.put("description", "Number of matching lines to return (default " + DEFAULT_SEARCH_RESULTS
+                + ", max " + MAX_SEARCH_RESULTS + "); the result is truncated when there are more");
+        
+        properties.put("path", path);
+        properties.put("pattern", pattern);
+        properties.put("regex", regex);
+        properties.put("ignoreCase", ignoreCase);
+        properties.put("context", context);
+        properties.put("maxResults", maxResults);
+        addFilterProperties(properties);
+        addBudgetProperties(properties);
+        
+        List<String> required = List.of("path", "pattern");
+        
+        return new McpSchema.JsonSchema("object", properties, required, null);
+    }
+    
+    /**
+     * Add the filter, budget and field properties shared by the tools that walk a directory tree.
+     * 
+     * @param properties The schema properties to add to
+     * @param typeDescription The description of the type filter for the tool
+     */
+    private static void addWalkProperties(Map<String, Object> properties, String typeDescription) {
+        Map<String, Object> type = new HashMap<>();
+        type.put("type", "string");
+        type.put("enum", List.of("file", "dir", "symlink"));
+        type.put("description", typeDescription);
+        
+        addFilterProperties(properties);
+        properties.put("type", type);
+        properties.put("fields", createFieldsSchema());
+        addBudgetProperties(properties);
+    }
+    
+    /**
+     * Add the depth, pattern and link properties that choose the entries of a directory tree walk.
+     * 
+     * @param properties The schema properties to add to
+     */
+    private static void addFilterProperties(Map<String, Object> properties) {
+        Map<String, Object> maxDepth = new HashMap<>();
+        maxDepth.put("type", "integer");
+        maxDepth.put("description", "Maximum depth of a recursive listing, where direct children are at depth 1");
+        
+        Map<String, Object> include = new HashMap<>();
+        include.put("type", "array");
+        include.put("items", Map.of("type", "string"));
+        include.put("description", "Glob patterns an entry must match to be returned; "
+                + "patterns without a slash match the name, others the relative path");
+        
+        Map<String, Object> exclude = new HashMap<>();
+        exclude.put("type", "array");
+        exclude.put("items", Map.of("type", "string"));
+        exclude.put("description", "Glob patterns of entries to skip together with everything below them, "
+                + "e.g. node_modules");
+        
+        Map<String, Object> followLinks = new HashMap<>();
+        followLinks.put("type", "boolean");
+        followLinks.put("description", "Whether to descend into directories reached through symbolic links "
+                + "(default false); a link is entered only if its target directory was not walked yet, so each "
+                + "directory is walked once and loops are safe");
+        
+        properties.put("maxDepth", maxDepth);
+        properties.put("include", include);
+        properties.put("exclude", exclude);
+        properties.put("followLinks", followLinks);
+    }
+    
+    /**
+     * Add the entry and time budget properties shared by the tools that walk a directory tree.
+     * 
+     * @param properties The schema properties to add to
+     */
+    private static void addBudgetProperties(Map<String, Object> properties) {
+        Map<String, Object> maxEntries = new HashMap<>();
+        maxEntries.put("type", "integer");
+        maxEntries.put("description", "Maximum number of entries to visit in this call, including entries "
+                + "the filters do not return; the result is truncated when it runs out");
+        
+        Map<String, Object> timeoutMs = new HashMap<>();
+        timeoutMs.put("type", "integer");
+        timeoutMs.put("description", "Time this call may spend walking in milliseconds (default "
+                + ListingOptions.DEFAULT_TIMEOUT_MS + ", max " + ListingOptions.MAX_TIMEOUT_MS
+                + "); the result is truncated when it runs out");
+        
+        properties.put("maxEntries", maxEntries);
+        properties.put("timeoutMs", timeoutMs);
+    }
 }
@@ -0,0 +1,223 @@
+package user.jakecarr.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.modelcontextprotocol.spec.McpError;
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import io.modelcontextprotocol.spec.McpServerTransport;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import user.jakecarr.FileSystemServer;
+import user.jakecarr.resources.DirectoryListingResource;
+import user.jakecarr.resources.FileContentResource;
+import user.jakecarr.resources.FileMetadataResource;
+import user.jakecarr.resources.ResourceSubscriptions;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Transport provider that lets its sessions answer the resource requests the MCP SDK leaves out.
+ * <p>
+ * The SDK lists resource templates but only reads resources registered under their exact URI, and it
+ * has no handlers for {@code resources/subscribe} and {@code resources/unsubscribe}. Each session created
+ * through this provider answers those requests for the file resources itself and hands every other
+ * message to the session the SDK created. Subscribed resources are reported to the subscribing session
+ * with {@code notifications/resources/updated}, and its subscriptions end with the session.
+ */
+public class ResourceTransportProvider implements McpServerTransportProvider {
+    private static final Logger logger = LogManager.getLogger(ResourceTransportProvider.class);
+    private static final String METHOD_NOTIFICATION_RESOURCES_UPDATED = "notifications/resources/updated";
+
+    private final McpServerTransportProvider delegate;
+    private final FileSystemServer fileSystemServer;
+    private final ResourceSubscriptions subscriptions;
+
+    /**
+     * Create a provider decorating another one.
+     *
+     * @param delegate The provider carrying the messages
+     * @param fileSystemServer The server holding the file resources
+     * @param subscriptions The resource subscriptions
+     */
+    public ResourceTransportProvider(McpServerTransportProvider delegate, FileSystemServer fileSystemServer,
+                                     ResourceSubscriptions subscriptions) {
+        this.delegate = delegate;
+        this.fileSystemServer = fileSystemServer;
+        this.subscriptions = subscriptions;
+    }
+
+    @Override
+    public void setSessionFactory(McpServerSession.Factory sessionFactory) {
+        delegate.setSessionFactory(transport -> new ResourceSession(sessionFactory.create(transport), transport));
+    }
+
+    @Override
+    public Mono<Void> notifyClients(String method, Map<String, Object> params) {
+        return delegate.notifyClients(method, params);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public Mono<Void> closeGracefully() {
+        return delegate.closeGracefully();
+    }
+
+    /**
+     * Read a file resource.
+     *
+     * @param request The request
+     * @return The result
+     * @throws McpError If the resource cannot be read
+     */
+    private McpSchema.ReadResourceResult readResource(McpSchema.ReadResourceRequest request) {
+        String uri = request.uri();
+        if (uri.startsWith(FileContentResource.URI_PREFIX)) {
+            return fileSystemServer.getContentResource().handleRequest(request);
+        } else if (uri.startsWith(FileMetadataResource.URI_PREFIX)) {
+            return fileSystemServer.getMetadataResource().handleRequest(request);
+        } else if (uri.startsWith(DirectoryListingResource.URI_PREFIX)) {
+            return fileSystemServer.getDirectoryListingResource().handleRequest(request);
+        }
+        throw new McpError("Unknown resource: " + uri);
+    }
+
+    /**
+     * A session that answers resource reads and subscriptions and forwards everything else.
+     * <p>
+     * The provider can only hand the SDK a {@link McpServerSession}, and the SDK transports deliver incoming
+     * messages straight to {@link #handle}, so there is no message interceptor to use instead of a subclass.
+     * The session therefore wraps the one the SDK created and overrides every public method of
+     * {@link McpServerSession} and {@link io.modelcontextprotocol.spec.McpSession} as of MCP SDK 0.8.0 to
+     * forward it; the state built by the superclass constructor is never used. An SDK upgrade must check
+     * for new public methods, which {@code McpSdkTest} fails on.
+     */
+    private final class ResourceSession extends McpServerSession implements ResourceSubscriptions.Listener {
+        private final McpServerSession session;
+        private final McpServerTransport transport;
+
+        private ResourceSession(McpServerSession session, McpServerTransport transport) {
+            // Unused: every public method is forwarded to the wrapped session
+            super(session.getId(), transport, initializeRequest -> Mono.empty(), Mono::empty, Map.of(), Map.of());
+            this.session = session;
+            this.transport = transport;
+        }
+
+        @Override
+        public String getId() {
+            return session.getId();
+        }
+
+        @Override
+        public void init(McpSchema.ClientCapabilities clientCapabilities, McpSchema.Implementation clientInfo) {
+            session.init(clientCapabilities, clientInfo);
+        }
+
+        @Override
+        public <T> Mono<T> sendRequest(String method, Object requestParams, TypeReference<T> typeRef) {
+            return session.sendRequest(method, requestParams, typeRef);
+        }
+
+        @Override
+        public Mono<Void> sendNotification(String method) {
+            return session.sendNotification(method);
+        }
+
+        @Override
+        public Mono<Void> sendNotification(String method, Map<String, Object> params) {
+            return session.sendNotification(method, params);
+        }
+
+        @Override
+        public Mono<Void> handle(McpSchema.JSONRPCMessage message) {
+            if (message instanceof McpSchema.JSONRPCRequest) {
+                McpSchema.JSONRPCRequest request = (McpSchema.JSONRPCRequest) message;
+                switch (request.method()) {
+                    case McpSchema.METHOD_RESOURCES_READ:
+                        McpSchema.ReadResourceRequest read = transport.unmarshalFrom(request.params(),
+                                new TypeReference<McpSchema.ReadResourceRequest>() {
+                                });
+                        if (read.uri() != null && isFileResource(read.uri())) {
+                            return respond(request, () -> readResource(read));
+                        }
+                        break;
+                    case McpSchema.METHOD_RESOURCES_SUBSCRIBE:
+                        McpSchema.SubscribeRequest subscribe = transport.unmarshalFrom(request.params(),
+                                new TypeReference<McpSchema.SubscribeRequest>() {
+                                });
+                        return respond(request, () -> {
+                            subscriptions.subscribe(subscribe.uri(), this);
+                            return Map.of();
+                        });
+                    case McpSchema.METHOD_RESOURCES_UNSUBSCRIBE:
+                        McpSchema.UnsubscribeRequest unsubscribe = transport.unmarshalFrom(request.params(),
+                                new TypeReference<McpSchema.UnsubscribeRequest>() {
+                                });
+                        return respond(request, () -> {
+                            subscriptions.unsubscribe(unsubscribe.uri(), this);
+                            return Map.of();
+                        });
+                    default:
+                        break;
+                }
+            }
+            return session.handle(message);
+        }
+
+        @Override
+        public void resourceUpdated(String uri) {
+            session.sendNotification(METHOD_NOTIFICATION_RESOURCES_UPDATED, Map.of("uri", uri))
+                    .subscribe(ignored -> { }, error -> logger.warn("Failed to notify update of: {}", uri, error));
+        }
+
+        @Override
+        public Mono<Void> closeGracefully() {
+            subscriptions.unsubscribeAll(this);
+            return session.closeGracefully();
+        }
+
+        @Override
+        public void close() {
+            subscriptions.unsubscribeAll(this);
+            session.close();
+        }
+
+        private boolean isFileResource(String uri) {
+            return uri.startsWith(FileContentResource.URI_PREFIX) || uri.startsWith(FileMetadataResource.URI_PREFIX)
+                    || uri.startsWith(DirectoryListingResource.URI_PREFIX);
+        }
+
+        /**
+         * Answer a request with the result of a handler, or with an error if the handler fails.
+         *
+         * @param request The request
+         * @param handler The handler, run off the transport thread
+         * @return A Mono completing once the response is sent
+         */
+        private Mono<Void> respond(McpSchema.JSONRPCRequest request, Callable<Object> handler) {
+            return Mono.fromCallable(handler)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(result -> new McpSchema.JSONRPCResponse(McpSchema.JSONRPC_VERSION, request.id(), result,
+                            null))
+                    .onErrorResume(error -> Mono.just(new McpSchema.JSONRPCResponse(McpSchema.JSONRPC_VERSION,
+                            request.id(), null, toError(error))))
+                    .flatMap(transport::sendMessage);
+        }
+
+        private McpSchema.JSONRPCResponse.JSONRPCError toError(Throwable error) {
+            if (error instanceof McpError && ((McpError) error).getJsonRpcError() != null) {
+                return ((McpError) error).getJsonRpcError();
+            }
+            logger.error("Error handling resource request: {}", error.getMessage(), error);
+            return new McpSchema.JSONRPCResponse.JSONRPCError(McpSchema.ErrorCodes.INTERNAL_ERROR,
+                    error.getMessage(), null);
+        }
+    }
+}
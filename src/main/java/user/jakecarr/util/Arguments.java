@@ -0,0 +1,191 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.EntryType;
+import user.jakecarr.model.LineRange;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.model.MetadataField;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers for reading request arguments.
+ * Tool arguments arrive as JSON values while resource arguments arrive as query strings,
+ * so every accessor accepts both the typed value and its string form.
+ */
+public final class Arguments {
+
+    private Arguments() {
+    }
+
+    /**
+     * Get a string argument.
+     *
+     * @param arguments The arguments
+     * @param name The argument name
+     * @return The argument value, or null if it is absent
+     */
+    public static String getString(Map<String, ?> arguments, String name) {
+        Object value = arguments.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Get a boolean argument.
+     *
+     * @param arguments The arguments
+     * @param name The argument name
+     * @param defaultValue The value to use when the argument is absent
+     * @return The argument value
+     */
+    public static boolean getBoolean(Map<String, ?> arguments, String name, boolean defaultValue) {
+        Object value = arguments.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+    }
+
+    /**
+     * Get an integer argument.
+     *
+     * @param arguments The arguments
+     * @param name The argument name
+     * @param defaultValue The value to use when the argument is absent
+     * @return The argument value
+     * @throws IllegalArgumentException If the argument is not an integer
+     */
+    public static int getInt(Map<String, ?> arguments, String name, int defaultValue) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, getLong(arguments, name, defaultValue)));
+    }
+
+    /**
+     * Get a long argument.
+     *
+     * @param arguments The arguments
+     * @param name The argument name
+     * @param defaultValue The value to use when the argument is absent
+     * @return The argument value
+     * @throws IllegalArgumentException If the argument is not an integer
+     */
+    public static long getLong(Map<String, ?> arguments, String name, long defaultValue) {
+        Object value = arguments.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Argument " + name + " must be an integer: " + value, e);
+        }
+    }
+
+    /**
+     * Get a list of strings argument, given either as a JSON array or as a comma-separated string.
+     *
+     * @param arguments The arguments
+     * @param name The argument name
+     * @return The argument values, empty if the argument is absent
+     */
+    public static List<String> getStringList(Map<String, ?> arguments, String name) {
+        Object value = arguments.get(name);
+        List<String> values = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (item != null && !item.toString().isBlank()) {
+                    values.add(item.toString().trim());
+                }
+            }
+        } else if (value != null) {
+            for (String item : value.toString().split(",")) {
+                if (!item.isBlank()) {
+                    values.add(item.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the byte range requested either by a range argument in HTTP form, such as {@code 0-1023} or
+     * {@code -4096}, or by offset and length arguments.
+     *
+     * @param arguments The arguments
+     * @return The range, or null if the whole file is requested
+     * @throws IllegalArgumentException If the range is malformed
+     */
+    public static ByteRange getByteRange(Map<String, ?> arguments) {
+        String range = getString(arguments, "range");
+        if (range != null && !range.isBlank()) {
+            return ByteRange.parse(range);
+        }
+        if (arguments.get("offset") == null && arguments.get("length") == null) {
+            return null;
+        }
+        return ByteRange.of(getLong(arguments, "offset", 0), getLong(arguments, "length", -1));
+    }
+
+    /**
+     * Get the line range requested either by a lines argument, such as {@code 12000-12200} or {@code 500-},
+     * or by startLine and endLine arguments.
+     *
+     * @param arguments The arguments
+     * @return The range, or null if no line range is requested
+     * @throws IllegalArgumentException If the range is malformed
+     */
+    public static LineRange getLineRange(Map<String, ?> arguments) {
+        String lines = getString(arguments, "lines");
+        if (lines != null && !lines.isBlank()) {
+            return LineRange.parse(lines);
+        }
+        if (arguments.get("startLine") == null && arguments.get("endLine") == null) {
+            return null;
+        }
+        return LineRange.of(getLong(arguments, "startLine", 1), getLong(arguments, "endLine", -1));
+    }
+
+    /**
+     * Get the metadata fields requested by the fields argument.
+     *
+     * @param arguments The arguments
+     * @return The requested fields, every field if the argument is absent
+     * @throws IllegalArgumentException If a field name is unknown
+     */
+    public static Set<MetadataField> getFields(Map<String, ?> arguments) {
+        return MetadataField.parse(getStringList(arguments, "fields"));
+    }
+
+    /**
+     * Build directory listing options from request arguments.
+     *
+     * @param arguments The arguments
+     * @return The listing options
+     * @throws IllegalArgumentException If an argument is invalid
+     */
+    public static ListingOptions toListingOptions(Map<String, ?> arguments) {
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(getBoolean(arguments, "recursive", false));
+        options.setPageSize(getInt(arguments, "pageSize", ListingOptions.DEFAULT_PAGE_SIZE));
+        options.setCursor(getString(arguments, "cursor"));
+        options.setMaxDepth(getInt(arguments, "maxDepth", Integer.MAX_VALUE));
+        options.setInclude(getStringList(arguments, "include"));
+        options.setExclude(getStringList(arguments, "exclude"));
+        String type = getString(arguments, "type");
+        if (type != null && !type.isBlank()) {
+            options.setType(EntryType.fromString(type));
+        }
+        options.setMaxEntries(getLong(arguments, "maxEntries", Long.MAX_VALUE));
+        options.setTimeoutMs(getLong(arguments, "timeoutMs", ListingOptions.DEFAULT_TIMEOUT_MS));
+        options.setFields(getFields(arguments));
+        options.setFollowLinks(getBoolean(arguments, "followLinks", false));
+        options.setCompactPaths(getBoolean(arguments, "compactPaths", false));
+        return options;
+    }
+}
@@ -0,0 +1,443 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import user.jakecarr.model.ChangeSet;
+import user.jakecarr.model.ChangeType;
+import user.jakecarr.model.FileChange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Records the entries added, modified and deleted below tracked directories, so callers can ask for
+ * the changes since a token instead of listing a whole tree again.
+ * <p>
+ * A directory is tracked from the first request for it: its tree is walked once and every directory in it
+ * is watched. Watch events only mark a directory as changed; the next request lists the changed
+ * directories again and compares each entry with the recorded one, reporting an entry as modified when
+ * its size or modification time differs. Directories that cannot be watched, for example beyond the OS
+ * watch limit, are compared on every request instead. Changes are numbered and kept in a bounded journal
+ * per tree, and a token is the tree's identity plus the number of the last change the caller has seen.
+ * A token the journal cannot answer, because the tree was tracked again or its changes were trimmed,
+ * yields a reset.
+ */
+public class ChangeJournal implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ChangeJournal.class);
+    private static final String TOKEN_VERSION = "c1";
+    private static final char SEPARATOR = '\n';
+
+    private final int maxTrees;
+    private final int maxEntries;
+    private final int maxRecords;
+    private final DirectoryWatcher watcher;
+    private final Set<Path> changed = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<Path, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a journal.
+     *
+     * @param maxTrees The maximum number of tracked directories; the least recently used is dropped beyond it
+     * @param maxEntries The maximum number of entries below a tracked directory
+     * @param maxRecords The maximum number of changes kept per tracked directory
+     */
+    public ChangeJournal(int maxTrees, int maxEntries, int maxRecords) {
+        this.maxTrees = Math.max(1, maxTrees);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxRecords = Math.max(1, maxRecords);
+        this.watcher = createWatcher();
+    }
+
+    /**
+     * Create the watcher that marks directories as changed.
+     *
+     * @return The watcher, or null if directories cannot be watched
+     */
+    private DirectoryWatcher createWatcher() {
+        try {
+            return new DirectoryWatcher(changed::add);
+        } catch (IOException e) {
+            logger.warn("Cannot watch directories, every tracked directory is compared on each request", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the changes below a directory since a token.
+     * Without a token the directory is tracked, if it is not already, and only a token is returned.
+     *
+     * @param directory The tracked directory
+     * @param token The token returned by the previous call, or null to start tracking
+     * @return The changes since the token, at most one per path, and the token for the next call
+     * @throws IOException If the directory cannot be tracked
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    public synchronized ChangeSet getChanges(Path directory, String token) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        String id = null;
+        long since = 0;
+        if (token != null) {
+            String[] parts = decodeToken(token);
+            id = parts[0];
+            since = Long.parseLong(parts[1]);
+        }
+
+        Tree tree = trees.get(root);
+        if (tree == null) {
+            tree = track(root);
+            return new ChangeSet(List.of(), encodeToken(tree), token != null);
+        }
+        synchronize(tree);
+        if (token == null) {
+            return new ChangeSet(List.of(), encodeToken(tree), false);
+        }
+        if (!tree.id.equals(id) || since < tree.trimmedThrough || since > tree.sequence) {
+            return new ChangeSet(List.of(), encodeToken(tree), true);
+        }
+        return new ChangeSet(collect(tree, since), encodeToken(tree), false);
+    }
+
+    /**
+     * Stop watching all tracked directories.
+     */
+    @PreDestroy
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        trees.clear();
+    }
+
+    /**
+     * Walk a directory and start tracking it, dropping the least recently used tree beyond the limit.
+     *
+     * @param root The absolute, normalized directory
+     * @return The tracked tree
+     * @throws IOException If the directory cannot be read or holds too many entries
+     */
+    private Tree track(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a directory: " + root);
+        }
+        long start = System.nanoTime();
+        Tree tree = new Tree(root);
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            scan(tree, pending.pop(), pending, false);
+            if (tree.entries.size() > maxEntries) {
+                release(tree, tree.children.keySet());
+                throw new IOException("Too many entries to track below " + root + " (max " + maxEntries + ")");
+            }
+        }
+        trees.put(root, tree);
+        Iterator<Tree> eldest = trees.values().iterator();
+        while (trees.size() > maxTrees) {
+            Tree dropped = eldest.next();
+            eldest.remove();
+            release(dropped, dropped.children.keySet());
+            logger.info("Stopped tracking changes below {}", dropped.root);
+        }
+        logger.info("Tracking changes of {} entries below {}, read in {} ms", tree.entries.size(), root,
+                (System.nanoTime() - start) / 1_000_000);
+        return tree;
+    }
+
+    /**
+     * Bring a tree up to date by scanning its changed and unwatched directories again.
+     *
+     * @param tree The tree
+     */
+    private void synchronize(Tree tree) {
+        for (Iterator<Path> iterator = changed.iterator(); iterator.hasNext(); ) {
+            Path directory = iterator.next();
+            iterator.remove();
+            for (Tree candidate : trees.values()) {
+                if (candidate.children.containsKey(directory)) {
+                    candidate.dirty.add(directory);
+                }
+            }
+        }
+        Deque<Path> pending = new ArrayDeque<>(tree.dirty);
+        pending.addAll(tree.unwatched);
+        tree.dirty.clear();
+        while (!pending.isEmpty()) {
+            Path directory = pending.pop();
+            if (tree.children.containsKey(directory)) {
+                scan(tree, directory, pending, true);
+            }
+        }
+    }
+
+    /**
+     * List a directory and compare its entries with the recorded ones.
+     * The directory is watched before it is read, so a change racing with the read is seen again later.
+     *
+     * @param tree The tree
+     * @param directory The directory
+     * @param added Receives the directories that were added and must be scanned as well
+     * @param record Whether to record the differences as changes
+     */
+    private void scan(Tree tree, Path directory, Deque<Path> added, boolean record) {
+        if (watcher != null && watcher.watch(directory)) {
+            tree.unwatched.remove(directory);
+        } else {
+            tree.unwatched.add(directory);
+        }
+        Set<Path> previous = tree.children.getOrDefault(directory, Set.of());
+        Set<Path> current = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                Entry entry;
+                try {
+                    entry = new Entry(FileStat.read(child, LinkOption.NOFOLLOW_LINKS));
+                } catch (IOException e) {
+                    // Removed between listing and reading; the next scan records it if it was known
+                    continue;
+                }
+                current.add(child);
+                Entry before = tree.entries.get(child);
+                if (before != null && before.directory != entry.directory) {
+                    forget(tree, child, record);
+                    before = null;
+                }
+                tree.entries.put(child, entry);
+                if (before == null) {
+                    if (entry.directory) {
+                        // Known with no entries yet, so scanning it records everything in it as added
+                        tree.children.put(child, Set.of());
+                        added.push(child);
+                    }
+                    append(tree, child, ChangeType.ADDED, entry, record);
+                } else if (!entry.directory && !entry.sameAs(before)) {
+                    append(tree, child, ChangeType.MODIFIED, entry, record);
+                }
+            }
+        } catch (IOException e) {
+            // A directory that can no longer be listed has lost its entries; its parent records its removal
+            logger.debug("Cannot list tracked directory: {}", directory, e);
+        }
+        for (Path child : previous) {
+            if (!current.contains(child)) {
+                forget(tree, child, record);
+            }
+        }
+        tree.children.put(directory, current);
+    }
+
+    /**
+     * Remove an entry and everything below it from a tree.
+     *
+     * @param tree The tree
+     * @param path The removed entry
+     * @param record Whether to record the removals as changes
+     */
+    private void forget(Tree tree, Path path, boolean record) {
+        Set<Path> released = new HashSet<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(path);
+        while (!pending.isEmpty()) {
+            Path removed = pending.pop();
+            Entry entry = tree.entries.remove(removed);
+            if (entry != null) {
+                append(tree, removed, ChangeType.DELETED, entry, record);
+            }
+            Set<Path> children = tree.children.remove(removed);
+            if (children != null) {
+                released.add(removed);
+                pending.addAll(children);
+            }
+        }
+        release(tree, released);
+    }
+
+    /**
+     * Stop watching directories a tree no longer tracks, unless another tree still tracks them.
+     *
+     * @param tree The tree
+     * @param directories The released directories
+     */
+    private void release(Tree tree, Set<Path> directories) {
+        for (Path directory : directories) {
+            tree.unwatched.remove(directory);
+            if (watcher == null) {
+                continue;
+            }
+            boolean shared = false;
+            for (Tree other : trees.values()) {
+                if (other != tree && other.children.containsKey(directory)) {
+                    shared = true;
+                    break;
+                }
+            }
+            if (!shared) {
+                watcher.unwatch(directory);
+            }
+        }
+    }
+
+    /**
+     * Append a change to the journal of a tree, trimming its oldest change beyond the limit.
+     *
+     * @param tree The tree
+     * @param path The changed entry
+     * @param type The kind of change
+     * @param entry The attributes of the entry after the change, or before it for a removal
+     * @param record Whether to record the change at all
+     */
+    private void append(Tree tree, Path path, ChangeType type, Entry entry, boolean record) {
+        if (!record) {
+            return;
+        }
+        tree.records.addLast(new Record(++tree.sequence, path, type, entry));
+        if (tree.records.size() > maxRecords) {
+            tree.trimmedThrough = tree.records.removeFirst().sequence;
+        }
+    }
+
+    /**
+     * Collect the changes after a sequence number, folding the changes of each path into one.
+     * An entry added and then deleted is left out, and an entry deleted and then added again is modified.
+     *
+     * @param tree The tree
+     * @param since The sequence number of the last change the caller has seen
+     * @return The changes in the order of their last change
+     */
+    private static List<FileChange> collect(Tree tree, long since) {
+        Map<Path, ChangeType> folded = new LinkedHashMap<>();
+        Map<Path, Entry> latest = new HashMap<>();
+        for (Record change : tree.records) {
+            if (change.sequence <= since) {
+                continue;
+            }
+            ChangeType before = folded.remove(change.path);
+            ChangeType type = change.type;
+            if (before == ChangeType.ADDED && type == ChangeType.DELETED) {
+                latest.remove(change.path);
+                continue;
+            }
+            if (before == ChangeType.ADDED) {
+                type = ChangeType.ADDED;
+            } else if (before == ChangeType.DELETED && type == ChangeType.ADDED) {
+                type = ChangeType.MODIFIED;
+            }
+            folded.put(change.path, type);
+            latest.put(change.path, change.entry);
+        }
+        List<FileChange> changes = new ArrayList<>(folded.size());
+        for (Map.Entry<Path, ChangeType> change : folded.entrySet()) {
+            Entry entry = latest.get(change.getKey());
+            changes.add(new FileChange(change.getKey().toString(), change.getValue(), entry.directory, entry.size,
+                    entry.lastModified.toInstant()));
+        }
+        return changes;
+    }
+
+    /**
+     * Encode the position of a tree's journal as a token.
+     *
+     * @param tree The tree
+     * @return The opaque token
+     */
+    private static String encodeToken(Tree tree) {
+        String payload = TOKEN_VERSION + SEPARATOR + tree.id + SEPARATOR + tree.sequence;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token into the identity of its tree and its sequence number.
+     *
+     * @param token The opaque token
+     * @return The tree identity and the sequence number
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    private static String[] decodeToken(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split(String.valueOf(SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid change token: " + token, e);
+        }
+        if (parts.length != 3 || !TOKEN_VERSION.equals(parts[0]) || !parts[2].matches("\\d{1,18}")) {
+            throw new IllegalArgumentException("Invalid change token: " + token);
+        }
+        return new String[] {parts[1], parts[2]};
+    }
+
+    /**
+     * The recorded state of a tracked directory tree.
+     */
+    private static final class Tree {
+        private final Path root;
+        private final String id = UUID.randomUUID().toString();
+        private final Map<Path, Entry> entries = new HashMap<>();
+        private final Map<Path, Set<Path>> children = new HashMap<>();
+        private final Set<Path> dirty = new HashSet<>();
+        private final Set<Path> unwatched = new HashSet<>();
+        private final Deque<Record> records = new ArrayDeque<>();
+        private long sequence;
+        private long trimmedThrough;
+
+        private Tree(Path root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * The attributes of an entry that are compared to detect changes.
+     */
+    private static final class Entry {
+        private final boolean directory;
+        private final long size;
+        private final FileTime lastModified;
+
+        private Entry(FileStat attributes) {
+            this.directory = attributes.isDirectory();
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+        }
+
+        private boolean sameAs(Entry other) {
+            return size == other.size && lastModified.equals(other.lastModified);
+        }
+    }
+
+    /**
+     * One numbered change in the journal of a tree.
+     */
+    private static final class Record {
+        private final long sequence;
+        private final Path path;
+        private final ChangeType type;
+        private final Entry entry;
+
+        private Record(long sequence, Path path, ChangeType type, Entry entry) {
+            this.sequence = sequence;
+            this.path = path;
+            this.type = type;
+            this.entry = entry;
+        }
+    }
+}
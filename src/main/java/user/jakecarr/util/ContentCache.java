@@ -0,0 +1,172 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.FileContent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bounded cache of the content of whole files, as returned by {@link FileContentReader}.
+ * <p>
+ * Content is served only while the file has the same file key, size and modification time as when it
+ * was read, so a file that is replaced or written to is read again. The cache is weighted by the bytes
+ * of content held, the UTF-8 size of text and the length of base64-encoded binary content, and evicts
+ * the least recently used files first.
+ */
+public class ContentCache {
+    private static final Logger logger = LogManager.getLogger(ContentCache.class);
+
+    private final long maxBytes;
+    private final LinkedHashMap<Path, CachedContent> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxBytes The maximum number of bytes of content held across all cached files, 0 to cache nothing
+     */
+    public ContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Check if the content of a file of a given size could be cached, so that looking it up is worthwhile.
+     *
+     * @param size The size of the file
+     * @return True if the cache is enabled and the content of the file fits in it
+     */
+    public boolean accepts(long size) {
+        return maxBytes > 0 && size <= maxBytes;
+    }
+
+    /**
+     * Get the cached content of a file if it is still valid.
+     *
+     * @param path The path to the file
+     * @param stat The current attributes of the file
+     * @return A copy of the content, or null if it is not cached or no longer valid
+     */
+    public synchronized FileContent get(Path path, FileStat stat) {
+        CachedContent cached = files.get(path);
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        if (!cached.matches(stat)) {
+            files.remove(path);
+            weight -= cached.weight;
+            misses++;
+            return null;
+        }
+        hits++;
+        return new FileContent(cached.content, cached.binary, cached.size, 0, cached.size, false);
+    }
+
+    /**
+     * Store the content of a whole file.
+     *
+     * @param path The path to the file
+     * @param stat The attributes of the file read before its content
+     * @param content The content of the whole file, not truncated
+     */
+    public synchronized void put(Path path, FileStat stat, FileContent content) {
+        CachedContent entry = new CachedContent(stat, content);
+        if (entry.weight > maxBytes) {
+            return;
+        }
+        CachedContent previous = files.put(path, entry);
+        weight += entry.weight - (previous == null ? 0 : previous.weight);
+        Iterator<Map.Entry<Path, CachedContent>> iterator = files.entrySet().iterator();
+        while (weight > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, CachedContent> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().weight;
+            evictions++;
+            logger.trace("Evicted content: {}", eldest.getKey());
+        }
+    }
+
+    /**
+     * Get the number of bytes of content held.
+     *
+     * @return The weight of the cached content
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the number of lookups served from the cache.
+     *
+     * @return The hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to read the file.
+     *
+     * @return The miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Get the number of files evicted to stay within the byte budget.
+     * Entries dropped because their file changed are not counted.
+     *
+     * @return The eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Log the hit, miss and eviction counts, called by Spring before bean destruction.
+     */
+    @PreDestroy
+    public synchronized void logStatistics() {
+        logger.info("Content cache: {} hits, {} misses, {} evictions, {} bytes in {} files",
+                hits, misses, evictions, weight, files.size());
+    }
+
+    /**
+     * The content of a file and the attributes of the file it was read from.
+     */
+    private static final class CachedContent {
+        private final Object fileKey;
+        private final long size;
+        private final FileTime modifiedTime;
+        private final String content;
+        private final boolean binary;
+        private final long weight;
+
+        CachedContent(FileStat stat, FileContent content) {
+            this.fileKey = stat.fileKey();
+            this.size = stat.size();
+            this.modifiedTime = stat.lastModifiedTime();
+            this.content = content.getContent();
+            this.binary = content.isBinary();
+            // Text has no more characters than UTF-8 bytes, base64 has more characters than bytes
+            this.weight = Math.max(content.getContent().length(), content.getLength());
+        }
+
+        boolean matches(FileStat stat) {
+            return size == stat.size() && Objects.equals(fileKey, stat.fileKey())
+                    && Objects.equals(modifiedTime, stat.lastModifiedTime());
+        }
+    }
+}
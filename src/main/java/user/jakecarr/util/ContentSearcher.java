@@ -0,0 +1,300 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.SearchMatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of a file that contain a literal or match a regular expression, with the lines around them.
+ * <p>
+ * A file is read into one buffer, memory-mapped from {@link #MAP_THRESHOLD} bytes and read onto the heap below it,
+ * and skipped if its first bytes hold a NUL. A mapped file truncated while it is scanned fails with an
+ * {@link IOException} like any other unreadable file. A case-sensitive literal is found with Boyer-Moore-Horspool over the
+ * raw bytes, so only matching lines are decoded and lines are counted between matches a word at a time by
+ * {@link TextClassifier}. A regular expression, or a case-insensitive literal, decodes and matches each line in turn.
+ * Lines are searched one at a time, so a pattern never matches across a line break. Like grep, context lines
+ * are returned once: a match's context stops at the next matching line and after the lines the previous
+ * match already returned.
+ */
+public final class ContentSearcher {
+    /**
+     * The size from which files are memory-mapped rather than read onto the heap. Most source and text
+     * files are smaller and are read with positional reads, which a concurrent truncation cannot fault.
+     */
+    public static final int MAP_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The number of bytes of a returned line, beyond which it is cut at a character boundary.
+     */
+    public static final int MAX_LINE_LENGTH = 1000;
+
+    /**
+     * The number of leading bytes checked for NUL to skip binary files.
+     */
+    private static final int SNIFF_LENGTH = 8192;
+
+    private final byte[] needle;
+    private final int[] shifts;
+    private final Pattern pattern;
+
+    private ContentSearcher(byte[] needle, Pattern pattern) {
+        this.needle = needle;
+        this.pattern = pattern;
+        this.shifts = needle == null ? null : shifts(needle);
+    }
+
+    /**
+     * Create a searcher for a literal.
+     *
+     * @param text The literal
+     * @param ignoreCase Whether to ignore case, which falls back to matching each line
+     * @return The searcher
+     * @throws IllegalArgumentException If the literal is empty or spans lines
+     */
+    public static ContentSearcher literal(String text, boolean ignoreCase) {
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("Search pattern must not be empty");
+        }
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Search pattern must not contain a line break");
+        }
+        if (ignoreCase) {
+            return new ContentSearcher(null,
+                    Pattern.compile(text, Pattern.LITERAL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+        }
+        return new ContentSearcher(text.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    /**
+     * Create a searcher for a regular expression.
+     *
+     * @param regex The regular expression, in {@link Pattern} syntax
+     * @param ignoreCase Whether to ignore case
+     * @return The searcher
+     * @throws IllegalArgumentException If the regular expression is empty or invalid
+     */
+    public static ContentSearcher regex(String regex, boolean ignoreCase) {
+        if (regex == null || regex.isEmpty()) {
+            throw new IllegalArgumentException("Search pattern must not be empty");
+        }
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        return new ContentSearcher(null, Pattern.compile(regex, flags));
+    }
+
+    /**
+     * Find the matching lines of a file. Binary files, and files too large for one buffer, have no matches.
+     *
+     * @param path The path to the file
+     * @param context The number of lines to return before and after each matching line
+     * @param maxMatches The number of matching lines after which to stop
+     * @return The matching lines, in file order
+     * @throws IOException If the file cannot be read, or changed size while it was searched
+     */
+    public List<SearchMatch> search(Path path, int context, int maxMatches) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0 || size > Integer.MAX_VALUE) {
+                return List.of();
+            }
+            bytes = read(channel, (int) size);
+        }
+        String file = path.toString();
+        try {
+            if (TextClassifier.classify(bytes.duplicate().limit(Math.min(bytes.limit(), SNIFF_LENGTH))).hasNul()) {
+                return List.of();
+            }
+            return needle != null
+                    ? searchLiteral(file, bytes, context, maxMatches)
+                    : searchLines(file, bytes, context, maxMatches);
+        } catch (InternalError e) {
+            // A mapped file truncated during the scan faults on access instead of failing a read
+            throw new IOException("File changed while it was searched: " + path, e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, int size) throws IOException {
+        if (size >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            // Keep reading until the buffer is full or the file ends early
+        }
+        return bytes.flip();
+    }
+
+    private List<SearchMatch> searchLiteral(String file, ByteBuffer bytes, int context, int maxMatches) {
+        List<Hit> hits = new ArrayList<>();
+        int limit = bytes.limit();
+        int from = 0;
+        int counted = 0;
+        long lineNumber = 1;
+        while (hits.size() < maxMatches) {
+            int found = indexOf(bytes, from, limit);
+            if (found < 0) {
+                break;
+            }
+            int start = lineStart(bytes, found);
+            int end = lineEnd(bytes, found, limit);
+            lineNumber += TextClassifier.classify(bytes.duplicate().limit(start).position(counted)).getLineCount();
+            counted = start;
+            hits.add(new Hit(lineNumber, start, end));
+            // One match per line; continue on the next line
+            from = end + 1;
+        }
+        return matches(file, bytes, hits, context);
+    }
+
+    /**
+     * Find the literal between two offsets with Boyer-Moore-Horspool: compare from the end of the literal,
+     * and on a mismatch skip ahead by how far the byte under the end of the literal is from its last occurrence.
+     */
+    private int indexOf(ByteBuffer bytes, int from, int limit) {
+        int last = needle.length - 1;
+        int i = from;
+        while (i + last < limit) {
+            int j = last;
+            while (bytes.get(i + j) == needle[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shifts[bytes.get(i + last) & 0xFF];
+        }
+        return -1;
+    }
+
+    private static int[] shifts(byte[] needle) {
+        int[] shifts = new int[256];
+        int last = needle.length - 1;
+        Arrays.fill(shifts, needle.length);
+        for (int i = 0; i < last; i++) {
+            shifts[needle[i] & 0xFF] = last - i;
+        }
+        return shifts;
+    }
+
+    private List<SearchMatch> searchLines(String file, ByteBuffer bytes, int context, int maxMatches) {
+        List<Hit> hits = new ArrayList<>();
+        Matcher matcher = pattern.matcher("");
+        int limit = bytes.limit();
+        int start = 0;
+        long lineNumber = 1;
+        while (start < limit && hits.size() < maxMatches) {
+            int end = lineEnd(bytes, start, limit);
+            int textEnd = end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+            if (matcher.reset(decode(bytes, start, textEnd, textEnd - start)).find()) {
+                hits.add(new Hit(lineNumber, start, end));
+            }
+            start = end + 1;
+            lineNumber++;
+        }
+        return matches(file, bytes, hits, context);
+    }
+
+    /**
+     * Decode the matching lines with their context, returning each context line once: the lines after a match
+     * stop at the next matching line, and the lines before it start after what the previous match returned.
+     */
+    private static List<SearchMatch> matches(String file, ByteBuffer bytes, List<Hit> hits, int context) {
+        List<SearchMatch> matches = new ArrayList<>(hits.size());
+        int limit = bytes.limit();
+        int returned = 0;
+        for (int h = 0; h < hits.size(); h++) {
+            Hit hit = hits.get(h);
+            List<String> before = new ArrayList<>(context);
+            int previous = hit.start;
+            for (int i = 0; i < context && previous > returned; i++) {
+                int previousEnd = previous - 1;
+                previous = lineStart(bytes, previousEnd);
+                before.add(0, line(bytes, previous, previousEnd));
+            }
+            List<String> after = new ArrayList<>(context);
+            int following = h + 1 < hits.size() ? hits.get(h + 1).start : limit;
+            int next = hit.end + 1;
+            for (int i = 0; i < context && next < following; i++) {
+                int nextEnd = lineEnd(bytes, next, limit);
+                after.add(line(bytes, next, nextEnd));
+                next = nextEnd + 1;
+            }
+            returned = next;
+            matches.add(new SearchMatch(file, hit.lineNumber, line(bytes, hit.start, hit.end), before, after));
+        }
+        return matches;
+    }
+
+    /**
+     * Find the start of the line holding an offset.
+     */
+    private static int lineStart(ByteBuffer bytes, int offset) {
+        int i = offset;
+        while (i > 0 && bytes.get(i - 1) != '\n') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Find the offset of the newline ending the line holding an offset, or the limit for the last line.
+     */
+    private static int lineEnd(ByteBuffer bytes, int offset, int limit) {
+        int i = offset;
+        while (i < limit && bytes.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Decode a line without its carriage return, cut to the maximum line length.
+     */
+    private static String line(ByteBuffer bytes, int start, int end) {
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        return decode(bytes, start, end, MAX_LINE_LENGTH);
+    }
+
+    /**
+     * Decode at most a number of bytes of a line, backing off to the start of a character if that cuts one.
+     */
+    private static String decode(ByteBuffer bytes, int start, int end, int maxLength) {
+        int cut = end;
+        if (end - start > maxLength) {
+            cut = start + maxLength;
+            while (cut > start && (bytes.get(cut) & 0xC0) == 0x80) {
+                cut--;
+            }
+        }
+        byte[] line = new byte[cut - start];
+        bytes.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A matching line: its number and the offsets of its start and of the newline ending it.
+     */
+    private static final class Hit {
+        private final long lineNumber;
+        private final int start;
+        private final int end;
+
+        Hit(long lineNumber, int start, int end) {
+            this.lineNumber = lineNumber;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,964 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Depth-first directory walker with a deterministic, name-sorted visiting order.
+ * The walk is iterative and lazy: only the listings of the directories on the current
+ * path are held in memory, and a walk can be resumed right after any previously visited
+ * entry, which is what makes stable cursor pagination possible.
+ * <p>
+ * A {@link WalkFilter} is applied while walking: excluded names are dropped from each listing
+ * before anything is stat'ed, and directories beyond the maximum depth are not read.
+ * <p>
+ * When a {@link ForkJoinPool} is supplied, entries are loaded in parallel chunks and the
+ * listings of upcoming subdirectories are prefetched as separate tasks, bounded by a window
+ * of outstanding directories. Results are still consumed in depth-first order, so the output
+ * is identical to a sequential walk.
+ * <p>
+ * When a {@link ListingCache} is supplied, directory listings and the attributes of their children
+ * are taken from the cache while it holds them, and every directory the walk reads completely is
+ * offered to the cache.
+ * <p>
+ * A walk can be bounded by a number of visited entries and a deadline. When a limit is reached the
+ * walk stops as if it were exhausted, {@link #isTruncated()} reports it, and {@link #getPosition()}
+ * is where a later walk resumes. At least one entry is always visited, so resumed walks make progress.
+ * <p>
+ * Symbolic links are reported as links and not followed unless the walk is created with
+ * {@code followLinks}. Following walks remember the {@link BasicFileAttributes#fileKey() file key} of every
+ * directory they descend into, or its real path where the file system has no file keys, and only follow a
+ * link to a directory that has not been seen, so loops end at the link that closes them and every directory
+ * is walked at most once through links. Real directories are always walked, even when a link already led
+ * into them. A resumed walk only knows the directories on the path of its position, and whether the link at
+ * the position was followed, which keeps cursors a fixed size and still stops every loop. It re-reads the
+ * siblings before each directory on that path to remember the directories they reach, but may still walk
+ * a directory again if only a deeper entry of an earlier subtree links to it.
+ *
+ * @param <T> The type of value loaded for each entry
+ */
+public class DirectoryWalker<T> implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(DirectoryWalker.class);
+    private static final Comparator<Path> BY_NAME = Comparator.comparing(p -> p.getFileName().toString());
+    private static final int LOAD_CHUNK = 256;
+    private static final int MIN_PARALLEL_LOAD = 32;
+
+    private final Path root;
+    private final boolean recursive;
+    private final WalkFilter filter;
+    private final EntryLoader<T> loader;
+    private final ForkJoinPool pool;
+    private final boolean readAccessMode;
+    private final ListingCache cache;
+    private final boolean followLinks;
+    private final Set<Object> visitedKeys = new HashSet<>();
+    private final int prefetchWindow;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    private Entry<T> pendingRoot;
+    private Path pendingDescent;
+    private int pendingDepth;
+    private ForkJoinTask<Listing> pendingPrefetch;
+    private int outstandingPrefetches;
+    private Entry<T> lookahead;
+    private Path position;
+    private boolean positionFollowed;
+    private boolean lookaheadFollowed;
+    private long maxVisits = Long.MAX_VALUE;
+    private long deadline;
+    private boolean hasDeadline;
+    private long visited;
+    private boolean truncated;
+
+    /**
+     * Loads the value of one entry from its path and attributes.
+     *
+     * @param <T> The type of the loaded value
+     */
+    @FunctionalInterface
+    public interface EntryLoader<T> {
+        /**
+         * Load the value of an entry.
+         *
+         * @param path The path of the entry
+         * @param attributes The attributes of the entry, read without following symbolic links
+         * @return The loaded value
+         * @throws IOException If the entry cannot be loaded; the entry is then skipped
+         */
+        T load(Path path, FileStat attributes) throws IOException;
+    }
+
+    /**
+     * Create a walker.
+     *
+     * @param root The directory to walk
+     * @param recursive Whether to descend into subdirectories; when true the root itself is the first entry
+     * @param resumeAfter The path components, relative to the root, of the last entry visited by a previous
+     *                    walk, or null to start from the beginning
+     * @param filter The filter deciding which entries are visited and returned
+     * @param loader The loader for the values of returned entries
+     * @param pool The pool used to load entries and prefetch subdirectories, or null to walk sequentially
+     * @throws IOException If the root directory cannot be read
+     */
+    public DirectoryWalker(Path root, boolean recursive, List<String> resumeAfter, WalkFilter filter,
+                           EntryLoader<T> loader, ForkJoinPool pool) throws IOException {
+        this(root, recursive, resumeAfter, filter, loader, pool, true);
+    }
+
+    /**
+     * Create a walker that may skip reading the permission mode of entries.
+     *
+     * @param root The directory to walk
+     * @param recursive Whether to descend into subdirectories; when true the root itself is the first entry
+     * @param resumeAfter The path components, relative to the root, of the last entry visited by a previous
+     *                    walk, or null to start from the beginning
+     * @param filter The filter deciding which entries are visited and returned
+     * @param loader The loader for the values of returned entries
+     * @param pool The pool used to load entries and prefetch subdirectories, or null to walk sequentially
+     * @param readAccessMode Whether the attributes passed to the loader carry the permission mode
+     * @throws IOException If the root directory cannot be read
+     */
+    public DirectoryWalker(Path root, boolean recursive, List<String> resumeAfter, WalkFilter filter,
+                           EntryLoader<T> loader, ForkJoinPool pool, boolean readAccessMode) throws IOException {
+        this(root, recursive, resumeAfter, filter, loader, pool, readAccessMode, null);
+    }
+
+    /**
+     * Create a walker that reads directory listings through a cache.
+     *
+     * @param root The directory to walk
+     * @param recursive Whether to descend into subdirectories; when true the root itself is the first entry
+     * @param resumeAfter The path components, relative to the root, of the last entry visited by a previous
+     *                    walk, or null to start from the beginning
+     * @param filter The filter deciding which entries are visited and returned
+     * @param loader The loader for the values of returned entries
+     * @param pool The pool used to load entries and prefetch subdirectories, or null to walk sequentially
+     * @param readAccessMode Whether the attributes passed to the loader carry the permission mode
+     * @param cache The cache of directory listings, or null to always read the file system
+     * @throws IOException If the root directory cannot be read
+     */
+    public DirectoryWalker(Path root, boolean recursive, List<String> resumeAfter, WalkFilter filter,
+                           EntryLoader<T> loader, ForkJoinPool pool, boolean readAccessMode,
+                           ListingCache cache) throws IOException {
+        this(root, recursive, resumeAfter, filter, loader, pool, readAccessMode, cache, false);
+    }
+
+    /**
+     * Create a walker that may descend into the directories symbolic links point to.
+     *
+     * @param root The directory to walk
+     * @param recursive Whether to descend into subdirectories; when true the root itself is the first entry
+     * @param resumeAfter The path components, relative to the root, of the last entry visited by a previous
+     *                    walk, or null to start from the beginning
+     * @param filter The filter deciding which entries are visited and returned
+     * @param loader The loader for the values of returned entries
+     * @param pool The pool used to load entries and prefetch subdirectories, or null to walk sequentially
+     * @param readAccessMode Whether the attributes passed to the loader carry the permission mode
+     * @param cache The cache of directory listings, or null to always read the file system
+     * @param followLinks Whether to descend into directories reached through symbolic links
+     * @throws IOException If the root directory cannot be read
+     */
+    public DirectoryWalker(Path root, boolean recursive, List<String> resumeAfter, WalkFilter filter,
+                           EntryLoader<T> loader, ForkJoinPool pool, boolean readAccessMode,
+                           ListingCache cache, boolean followLinks) throws IOException {
+        this(root, recursive, resumeAfter, filter, loader, pool, readAccessMode, cache, followLinks, false);
+    }
+
+    /**
+     * Create a walker that resumes a walk following symbolic links.
+     *
+     * @param root The directory to walk
+     * @param recursive Whether to descend into subdirectories; when true the root itself is the first entry
+     * @param resumeAfter The path components, relative to the root, of the last entry visited by a previous
+     *                    walk, or null to start from the beginning
+     * @param filter The filter deciding which entries are visited and returned
+     * @param loader The loader for the values of returned entries
+     * @param pool The pool used to load entries and prefetch subdirectories, or null to walk sequentially
+     * @param readAccessMode Whether the attributes passed to the loader carry the permission mode
+     * @param cache The cache of directory listings, or null to always read the file system
+     * @param followLinks Whether to descend into directories reached through symbolic links
+     * @param resumeFollowed Whether the previous walk descended into the entry it stopped at, as reported by
+     *                       {@link #isPositionFollowed()}; ignored unless that entry is a symbolic link
+     * @throws IOException If the root directory cannot be read
+     */
+    public DirectoryWalker(Path root, boolean recursive, List<String> resumeAfter, WalkFilter filter,
+                           EntryLoader<T> loader, ForkJoinPool pool, boolean readAccessMode,
+                           ListingCache cache, boolean followLinks, boolean resumeFollowed) throws IOException {
+        this.root = root;
+        this.recursive = recursive;
+        this.filter = filter;
+        this.loader = loader;
+        this.pool = pool;
+        this.readAccessMode = readAccessMode;
+        this.cache = cache;
+        this.followLinks = followLinks;
+        this.prefetchWindow = pool == null ? 0 : pool.getParallelism() * 2;
+
+        if (resumeAfter == null) {
+            if (recursive) {
+                FileStat attrs = readStat(root);
+                visited++;
+                if (filter.accepts(root, root, attrs)) {
+                    pendingRoot = new Entry<>(root, 0, attrs, loader.load(root, attrs));
+                } else {
+                    position = root;
+                }
+            }
+            markVisited(root, null);
+            scheduleDescent(root, 1, null);
+        } else {
+            seek(resumeAfter, resumeFollowed);
+        }
+    }
+
+    /**
+     * Bound the rest of the walk.
+     *
+     * @param maxEntries The maximum number of entries to visit, including entries the filter does not return
+     * @param timeoutMillis The time the walk may take from now in milliseconds, or 0 for no deadline
+     */
+    public void setLimits(long maxEntries, long timeoutMillis) {
+        this.maxVisits = maxEntries;
+        this.hasDeadline = timeoutMillis > 0;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Check if the walk stopped because a limit was reached rather than because it was exhausted.
+     *
+     * @return True if the walk was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Check if the walk has more entries.
+     *
+     * @return True if there are more entries, false otherwise
+     * @throws IOException If the root directory cannot be read
+     */
+    public boolean hasNext() throws IOException {
+        if (lookahead == null) {
+            lookahead = advance();
+        }
+        return lookahead != null;
+    }
+
+    /**
+     * Get the next entry of the walk.
+     *
+     * @return The next entry
+     * @throws IOException If the root directory cannot be read
+     */
+    public Entry<T> next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Walk of " + root + " is exhausted");
+        }
+        Entry<T> entry = lookahead;
+        lookahead = null;
+        position = entry.getPath();
+        positionFollowed = lookaheadFollowed;
+        return entry;
+    }
+
+    /**
+     * Get the position a cursor should record: the last entry consumed by the walk, which is either
+     * the last entry returned by {@link #next()} or a later entry the filter did not return.
+     * An entry computed by {@link #hasNext()} but not yet returned is not consumed.
+     *
+     * @return The position, or null if nothing has been consumed yet
+     */
+    public Path getPosition() {
+        return position;
+    }
+
+    /**
+     * Check if the entry at the {@link #getPosition() position} is a symbolic link the walk descended into.
+     * A walk resumed from the position must be told, so it makes the same decision.
+     *
+     * @return True if the walk follows the link at its position, false otherwise
+     */
+    public boolean isPositionFollowed() {
+        return positionFollowed;
+    }
+
+    /**
+     * Cancel any outstanding prefetch tasks.
+     */
+    @Override
+    public void close() {
+        if (pendingPrefetch != null) {
+            pendingPrefetch.cancel(false);
+            pendingPrefetch = null;
+        }
+        for (Frame frame : stack) {
+            frame.cancelPrefetches();
+        }
+        stack.clear();
+    }
+
+    /**
+     * Rebuild the walk state so the next entry is the one following the given position.
+     * Only the directories along the position's path are read, and skipped entries are never loaded.
+     *
+     * @param resumeAfter The path components of the last visited entry
+     * @param resumeFollowed Whether the previous walk descended into the last visited entry
+     * @throws IOException If the root directory cannot be read
+     */
+    private void seek(List<String> resumeAfter, boolean resumeFollowed) throws IOException {
+        position = root;
+        markVisited(root, null);
+        if (resumeAfter.isEmpty()) {
+            scheduleDescent(root, 1, null);
+            return;
+        }
+
+        Path directory = root;
+        for (int i = 0; i < resumeAfter.size(); i++) {
+            String name = resumeAfter.get(i);
+            Listing listing = readListing(directory);
+            if (listing.error != null) {
+                if (directory.equals(root)) {
+                    throw listing.error;
+                }
+                logger.warn("Directory on cursor path is no longer readable: {}", directory, listing.error);
+                return;
+            }
+
+            Frame frame = new Frame(listing, i + 1);
+            frame.skipThrough(name);
+            stack.push(frame);
+
+            Path next = directory.resolve(name);
+            position = next;
+            if (!recursive || !filter.canDescend(i + 1)) {
+                return;
+            }
+            rememberPassed(frame, name);
+            if (!Files.isDirectory(next, LinkOption.NOFOLLOW_LINKS)) {
+                // A link inside the position was followed, and the cursor tells about the link at the position
+                boolean last = i == resumeAfter.size() - 1;
+                if (!followLinks || (last && !resumeFollowed) || !Files.isDirectory(next)) {
+                    return;
+                }
+                positionFollowed = last;
+            }
+            markVisited(next, null);
+            if (i == resumeAfter.size() - 1) {
+                scheduleDescent(next, i + 2, null);
+            }
+            directory = next;
+        }
+    }
+
+    /**
+     * Compute the next entry in depth-first order.
+     *
+     * @return The next entry, or null if the walk is exhausted
+     * @throws IOException If the root directory cannot be read
+     */
+    private Entry<T> advance() throws IOException {
+        if (pendingRoot != null) {
+            Entry<T> entry = pendingRoot;
+            pendingRoot = null;
+            return entry;
+        }
+
+        while (true) {
+            if (visited > 0 && limitReached()) {
+                truncated = true;
+                return null;
+            }
+            if (pendingDescent != null && !descend()) {
+                truncated = true;
+                return null;
+            }
+
+            Frame frame = stack.peek();
+            if (frame == null) {
+                return null;
+            }
+            if (!frame.hasMore()) {
+                Frame completed = stack.pop();
+                completed.cancelPrefetches();
+                offerToCache(completed.listing);
+                continue;
+            }
+
+            int index = frame.index++;
+            Listing listing = frame.listing;
+            ensureLoaded(listing, index);
+            prefetch(frame);
+
+            visited++;
+            FileStat attrs = listing.attributes[index];
+            Path child = listing.children.get(index);
+            if (attrs == null) {
+                position = child;
+                positionFollowed = false;
+                continue;
+            }
+            boolean followed = false;
+            if (recursive && attrs.isDirectory() && filter.canDescend(frame.depth)) {
+                markVisited(child, attrs.fileKey());
+                scheduleDescent(child, frame.depth + 1, frame.takePrefetch(index));
+            } else if (recursive && followLinks && attrs.isSymbolicLink() && filter.canDescend(frame.depth)
+                    && enterLink(child)) {
+                scheduleDescent(child, frame.depth + 1, null);
+                followed = true;
+            }
+            if (!listing.accepted[index]) {
+                position = child;
+                positionFollowed = followed;
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            T value = (T) listing.values[index];
+            lookaheadFollowed = followed;
+            return new Entry<>(child, frame.depth, attrs, value);
+        }
+    }
+
+    /**
+     * Remember a directory the walk descends into, when the walk follows links.
+     *
+     * @param directory The directory
+     * @param key The file key if it is already known, or null to read it
+     */
+    private void markVisited(Path directory, Object key) {
+        if (!followLinks) {
+            return;
+        }
+        if (key != null) {
+            visitedKeys.add(key);
+            return;
+        }
+        try {
+            visitedKeys.add(identity(directory, Files.readAttributes(directory, BasicFileAttributes.class)));
+        } catch (IOException e) {
+            logger.debug("Cannot identify directory: {}", directory, e);
+        }
+    }
+
+    /**
+     * Remember the directories that the walk which issued the cursor visited among the siblings before a
+     * cursor component: the subdirectories, and the targets of links to directories, which were either
+     * followed there or visited before. Otherwise a later link to one of them would be followed again by
+     * every page resumed past it, which grows exponentially along a chain of such links.
+     *
+     * @param frame The frame positioned after the cursor component
+     * @param name The cursor component
+     */
+    private void rememberPassed(Frame frame, String name) {
+        if (!followLinks) {
+            return;
+        }
+        Listing listing = frame.listing;
+        for (int i = 0; i < frame.index; i++) {
+            Path child = listing.children.get(i);
+            if (child.getFileName().toString().equals(name)) {
+                continue;
+            }
+            try {
+                FileStat attrs = listing.attributes[i] != null ? listing.attributes[i]
+                        : FileStat.readBasic(child, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    markVisited(child, attrs.fileKey());
+                } else if (attrs.isSymbolicLink()) {
+                    enterLink(child);
+                }
+            } catch (IOException e) {
+                logger.debug("Cannot identify entry before cursor: {}", child, e);
+            }
+        }
+    }
+
+    /**
+     * Decide whether to descend into the target of a symbolic link, and remember the target if so.
+     * Links to anything but a directory, broken links, and links to directories that were already
+     * visited are not followed.
+     *
+     * @param link The symbolic link
+     * @return True if the walk descends into the link, false otherwise
+     */
+    private boolean enterLink(Path link) {
+        Object key;
+        try {
+            BasicFileAttributes target = Files.readAttributes(link, BasicFileAttributes.class);
+            if (!target.isDirectory()) {
+                return false;
+            }
+            key = identity(link, target);
+        } catch (IOException e) {
+            logger.debug("Not following broken symbolic link: {}", link);
+            return false;
+        }
+        if (!visitedKeys.add(key)) {
+            logger.debug("Not following symbolic link to a visited directory: {}", link);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get what identifies a directory among those the walk visits: its file key, or its real path if the
+     * file system has no file keys.
+     *
+     * @param directory The directory, or a link to it
+     * @param attrs The attributes of the directory
+     * @return The identity
+     * @throws IOException If the real path cannot be resolved
+     */
+    private static Object identity(Path directory, BasicFileAttributes attrs) throws IOException {
+        Object key = attrs.fileKey();
+        return key != null ? key : directory.toRealPath();
+    }
+
+    /**
+     * Check if the number of visited entries or the deadline has been reached.
+     *
+     * @return True if the walk must stop, false otherwise
+     */
+    private boolean limitReached() {
+        return visited >= maxVisits || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * Push the frame of the scheduled directory, using its prefetched listing when available.
+     * When the walk has a deadline, waiting for a prefetched listing stops at the deadline and the
+     * descent stays scheduled, so the directory position remains a valid place to resume from.
+     *
+     * @return True if the walk can continue, false if the deadline passed while waiting
+     * @throws IOException If the root directory cannot be read
+     */
+    private boolean descend() throws IOException {
+        Path directory = pendingDescent;
+        ForkJoinTask<Listing> prefetched = pendingPrefetch;
+
+        Listing listing;
+        if (prefetched != null) {
+            listing = awaitPrefetch(prefetched);
+            if (listing == null) {
+                return false;
+            }
+            outstandingPrefetches--;
+        } else {
+            listing = readListing(directory);
+        }
+        pendingDescent = null;
+        pendingPrefetch = null;
+
+        if (listing.error != null) {
+            if (directory.equals(root)) {
+                throw listing.error;
+            }
+            logger.warn("Skipping unreadable directory: {}", directory, listing.error);
+            return true;
+        }
+        stack.push(new Frame(listing, pendingDepth));
+        return true;
+    }
+
+    /**
+     * Wait for a prefetched listing, no longer than the deadline allows once an entry has been visited.
+     *
+     * @param prefetched The prefetch task
+     * @return The listing, or null if the deadline passed first
+     */
+    private Listing awaitPrefetch(ForkJoinTask<Listing> prefetched) {
+        if (!hasDeadline || visited == 0 || prefetched.isDone()) {
+            return prefetched.join();
+        }
+        try {
+            return prefetched.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Prefetch of " + pendingDescent + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Remember a directory whose children are visited next.
+     * The listing is read lazily so a page ending on a directory does not pay for it.
+     *
+     * @param directory The directory
+     * @param depth The depth of its children
+     * @param prefetched The prefetch task for the directory, or null if none was started
+     */
+    private void scheduleDescent(Path directory, int depth, ForkJoinTask<Listing> prefetched) {
+        pendingDescent = directory;
+        pendingDepth = depth;
+        pendingPrefetch = prefetched;
+    }
+
+    /**
+     * Start prefetch tasks for the upcoming subdirectories of a frame, up to the prefetch window.
+     *
+     * @param frame The frame being consumed
+     */
+    private void prefetch(Frame frame) {
+        if (pool == null || !recursive || !filter.canDescend(frame.depth)) {
+            return;
+        }
+        Listing listing = frame.listing;
+        int candidate = Math.max(frame.prefetchIndex, frame.index);
+        while (outstandingPrefetches < prefetchWindow && candidate < listing.loadedTo) {
+            FileStat attrs = listing.attributes[candidate];
+            if (attrs != null && attrs.isDirectory()) {
+                Path directory = listing.children.get(candidate);
+                frame.prefetches[candidate] = pool.submit(() -> {
+                    Listing prefetched = readListing(directory);
+                    if (prefetched.error == null) {
+                        loadRange(prefetched, 0, Math.min(LOAD_CHUNK, prefetched.children.size()));
+                    }
+                    return prefetched;
+                });
+                outstandingPrefetches++;
+            }
+            candidate++;
+        }
+        frame.prefetchIndex = candidate;
+    }
+
+    /**
+     * Make sure the entry at the given index has been loaded, loading the next chunk if needed.
+     *
+     * @param listing The listing
+     * @param index The index of the entry
+     */
+    private void ensureLoaded(Listing listing, int index) {
+        if (index < listing.loadedFrom || index >= listing.loadedTo) {
+            int end = Math.min(listing.children.size(), index + LOAD_CHUNK);
+            if (pool != null && end - index >= MIN_PARALLEL_LOAD) {
+                loadRangeInParallel(listing, index, end);
+            } else {
+                loadRange(listing, index, end);
+            }
+        }
+    }
+
+    /**
+     * Load a range of entries by splitting it into one slice per worker.
+     *
+     * @param listing The listing
+     * @param from The first index, inclusive
+     * @param to The last index, exclusive
+     */
+    private void loadRangeInParallel(Listing listing, int from, int to) {
+        int parallelism = pool.getParallelism();
+        int sliceSize = (to - from + parallelism - 1) / parallelism;
+        List<ForkJoinTask<?>> slices = new ArrayList<>();
+        for (int start = from; start < to; start += sliceSize) {
+            int sliceStart = start;
+            int sliceEnd = Math.min(to, start + sliceSize);
+            slices.add(pool.submit(() -> loadEntries(listing, sliceStart, sliceEnd)));
+        }
+        for (ForkJoinTask<?> slice : slices) {
+            slice.join();
+        }
+        listing.loadedFrom = from;
+        listing.loadedTo = to;
+        listing.loadedCount += to - from;
+    }
+
+    /**
+     * Load a range of entries on the calling thread.
+     *
+     * @param listing The listing
+     * @param from The first index, inclusive
+     * @param to The last index, exclusive
+     */
+    private void loadRange(Listing listing, int from, int to) {
+        loadEntries(listing, from, to);
+        listing.loadedFrom = from;
+        listing.loadedTo = to;
+        listing.loadedCount += to - from;
+    }
+
+    /**
+     * Read the attributes of a range of entries, and the values of those the filter accepts.
+     * Entries that cannot be read are left without attributes and are skipped by the walk.
+     *
+     * @param listing The listing
+     * @param from The first index, inclusive
+     * @param to The last index, exclusive
+     */
+    private void loadEntries(Listing listing, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Path child = listing.children.get(i);
+            try {
+                FileStat attrs = listing.cached ? listing.attributes[i] : readStat(child);
+                if (attrs == null) {
+                    continue;
+                }
+                boolean accepted = filter.accepts(root, child, attrs);
+                if (accepted) {
+                    listing.values[i] = loader.load(child, attrs);
+                }
+                listing.accepted[i] = accepted;
+                listing.attributes[i] = attrs;
+            } catch (IOException e) {
+                logger.warn("Skipping entry that could not be read: {}", child, e);
+            }
+        }
+    }
+
+    /**
+     * Read the attributes of an entry without following symbolic links.
+     *
+     * @param path The entry
+     * @return The attributes, with the permission mode only if the walk reads it
+     * @throws IOException If the attributes cannot be read
+     */
+    private FileStat readStat(Path path) throws IOException {
+        return readAccessMode ? FileStat.read(path, LinkOption.NOFOLLOW_LINKS)
+                : FileStat.readBasic(path, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Read the children of a directory that are not excluded by the filter, sorted by name.
+     * A valid cached listing is used when there is one; otherwise the directory is read and, when
+     * nothing was excluded from it, prepared to be offered to the cache once fully loaded.
+     *
+     * @param directory The directory
+     * @return The listing, carrying the error if the directory could not be read
+     */
+    private Listing readListing(Path directory) {
+        if (cache != null) {
+            ListingCache.Snapshot snapshot = cache.get(directory, readAccessMode);
+            if (snapshot != null) {
+                return fromSnapshot(directory, snapshot);
+            }
+        }
+
+        long cacheStamp = cache == null || filter.hasExclusions() ? -1 : cache.beginLoad(directory);
+        FileTime modifiedTime = null;
+        if (cacheStamp >= 0) {
+            try {
+                modifiedTime = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                cacheStamp = -1;
+            }
+        }
+
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                if (!filter.isExcluded(root, child)) {
+                    children.add(child);
+                }
+            }
+        } catch (IOException e) {
+            return new Listing(directory, List.of(), e);
+        }
+        children.sort(BY_NAME);
+        Listing listing = new Listing(directory, children, null);
+        listing.cacheStamp = cacheStamp;
+        listing.modifiedTime = modifiedTime;
+        return listing;
+    }
+
+    /**
+     * Build a listing from a cached snapshot, dropping the children the filter excludes.
+     * The attributes are taken over, so loading the listing only applies the filter and the loader.
+     *
+     * @param directory The directory
+     * @param snapshot The cached listing
+     * @return The listing
+     */
+    private Listing fromSnapshot(Path directory, ListingCache.Snapshot snapshot) {
+        List<Path> children = snapshot.getChildren();
+        List<Integer> kept = null;
+        if (filter.hasExclusions()) {
+            kept = new ArrayList<>();
+            List<Path> filtered = new ArrayList<>();
+            for (int i = 0; i < children.size(); i++) {
+                if (!filter.isExcluded(root, children.get(i))) {
+                    kept.add(i);
+                    filtered.add(children.get(i));
+                }
+            }
+            children = filtered;
+        }
+        Listing listing = new Listing(directory, children, null);
+        for (int i = 0; i < children.size(); i++) {
+            listing.attributes[i] = snapshot.getAttributes(kept == null ? i : kept.get(i));
+        }
+        listing.cached = true;
+        return listing;
+    }
+
+    /**
+     * Offer a completely loaded listing to the cache.
+     *
+     * @param listing The listing of a directory the walk has finished
+     */
+    private void offerToCache(Listing listing) {
+        if (listing.cacheStamp < 0 || listing.loadedCount != listing.children.size()) {
+            return;
+        }
+        cache.put(listing.directory, listing.cacheStamp, new ListingCache.Snapshot(
+                Collections.unmodifiableList(listing.children), listing.attributes, listing.modifiedTime,
+                readAccessMode));
+    }
+
+    /**
+     * The sorted children of one directory and the entries loaded so far.
+     */
+    private static final class Listing {
+        private final Path directory;
+        private final List<Path> children;
+        private final IOException error;
+        private final FileStat[] attributes;
+        private final boolean[] accepted;
+        private final Object[] values;
+        private int loadedFrom;
+        private int loadedTo;
+        private int loadedCount;
+        private boolean cached;
+        private long cacheStamp = -1;
+        private FileTime modifiedTime;
+
+        Listing(Path directory, List<Path> children, IOException error) {
+            this.directory = directory;
+            this.children = children;
+            this.error = error;
+            this.attributes = new FileStat[children.size()];
+            this.accepted = new boolean[children.size()];
+            this.values = new Object[children.size()];
+        }
+    }
+
+    /**
+     * The remaining children of one directory on the current walk path.
+     */
+    private final class Frame {
+        private final Listing listing;
+        private final int depth;
+        private final ForkJoinTask<Listing>[] prefetches;
+        private int index;
+        private int prefetchIndex;
+
+        @SuppressWarnings("unchecked")
+        Frame(Listing listing, int depth) {
+            this.listing = listing;
+            this.depth = depth;
+            this.prefetches = pool == null ? null : new ForkJoinTask[listing.children.size()];
+        }
+
+        boolean hasMore() {
+            return index < listing.children.size();
+        }
+
+        void skipThrough(String name) {
+            while (index < listing.children.size()
+                    && listing.children.get(index).getFileName().toString().compareTo(name) <= 0) {
+                index++;
+            }
+        }
+
+        ForkJoinTask<Listing> takePrefetch(int childIndex) {
+            if (prefetches == null) {
+                return null;
+            }
+            ForkJoinTask<Listing> task = prefetches[childIndex];
+            prefetches[childIndex] = null;
+            return task;
+        }
+
+        void cancelPrefetches() {
+            if (prefetches == null) {
+                return;
+            }
+            for (int i = index; i < prefetches.length; i++) {
+                if (prefetches[i] != null) {
+                    prefetches[i].cancel(false);
+                    prefetches[i] = null;
+                    outstandingPrefetches--;
+                }
+            }
+        }
+    }
+
+    /**
+     * An entry produced by the walk.
+     *
+     * @param <T> The type of the loaded value
+     */
+    public static final class Entry<T> {
+        private final Path path;
+        private final int depth;
+        private final FileStat attributes;
+        private final T value;
+
+        Entry(Path path, int depth, FileStat attributes, T value) {
+            this.path = path;
+            this.depth = depth;
+            this.attributes = attributes;
+            this.value = value;
+        }
+
+        /**
+         * Get the path of the entry.
+         *
+         * @return The path
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Get the depth of the entry, where the root is 0 and its children are 1.
+         *
+         * @return The depth
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Get the attributes of the entry, read without following symbolic links.
+         *
+         * @return The attributes
+         */
+        public FileStat getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Get the value loaded for the entry.
+         *
+         * @return The loaded value
+         */
+        public T getValue() {
+            return value;
+        }
+    }
+}
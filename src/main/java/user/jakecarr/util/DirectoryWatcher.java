@@ -0,0 +1,134 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches directories for changes with a single {@link WatchService} and a daemon thread.
+ * Every event on a watched directory, including an overflow, is reported to the listener as a change of
+ * that directory; the individual events are not needed by the callers and are discarded.
+ */
+public class DirectoryWatcher implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(DirectoryWatcher.class);
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private final Thread thread;
+
+    /**
+     * Receives the changes of watched directories.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the watcher thread when a watched directory or one of its children changed,
+         * or when the directory can no longer be watched.
+         *
+         * @param directory The watched directory
+         */
+        void directoryChanged(Path directory);
+    }
+
+    /**
+     * Create a watcher and start its thread.
+     *
+     * @param listener The listener notified of changes
+     * @throws IOException If the watch service cannot be created
+     */
+    public DirectoryWatcher(Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        this.thread = new Thread(this::run, "directory-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Start watching a directory for created, deleted and modified children.
+     *
+     * @param directory The directory
+     * @return True if the directory is watched, false if it could not be registered
+     */
+    public boolean watch(Path directory) {
+        if (keys.containsKey(directory)) {
+            return true;
+        }
+        try {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(directory, key);
+            return true;
+        } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            logger.debug("Cannot watch directory: {}", directory, e);
+            return false;
+        }
+    }
+
+    /**
+     * Check if a directory is currently watched.
+     *
+     * @param directory The directory
+     * @return True if changes of the directory are reported, false otherwise
+     */
+    public boolean isWatched(Path directory) {
+        return keys.containsKey(directory);
+    }
+
+    /**
+     * Stop watching a directory.
+     *
+     * @param directory The directory
+     */
+    public void unwatch(Path directory) {
+        WatchKey key = keys.remove(directory);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    /**
+     * Stop the watcher thread and release all watches.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close watch service", e);
+        }
+        keys.clear();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                key.pollEvents();
+                if (!key.reset()) {
+                    keys.remove(directory, key);
+                }
+                try {
+                    listener.directoryChanged(directory);
+                } catch (RuntimeException e) {
+                    logger.warn("Directory change listener failed for: {}", directory, e);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Directory watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,784 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.FileContent;
+import user.jakecarr.model.FileTail;
+import user.jakecarr.model.LineRange;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Reads the content of files, or of ranges of their bytes or lines, as text or as base64-encoded bytes.
+ * <p>
+ * Ranges smaller than the map threshold are read onto the heap with positional reads. Larger ranges are
+ * memory-mapped, sniffed, decoded and encoded straight from the mapping in bounded chunks, so the bytes of
+ * the file are never copied onto the heap as a whole; only the resulting string is. A mapping is released
+ * by the garbage collector some time after the read returns. Binary content of any size is encoded as
+ * base64 one chunk at a time into a buffer of the exact encoded size, which the returned string is built
+ * from, so the raw bytes are never held next to their encoding.
+ * Whole files may be served from a content cache while they are unchanged.
+ */
+public class FileContentReader {
+    private static final Logger logger = LogManager.getLogger(FileContentReader.class);
+
+    /**
+     * The largest range a single read returns, bounded by the size of a Java array.
+     */
+    public static final int MAX_RANGE_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The default size from which ranges are memory-mapped instead of read onto the heap.
+     */
+    public static final long DEFAULT_MAP_THRESHOLD = 8L * 1024 * 1024;
+
+    private static final int SNIFF_LENGTH = 8192;
+    private static final int CHUNK_SIZE = 48 * 1024;
+    private static final long MIN_RESPONSE_SIZE = 1024;
+    private static final int TAIL_BLOCK_SIZE = 8192;
+    private static final String TAIL_TOKEN_VERSION = "t1";
+    private static final char TAIL_TOKEN_SEPARATOR = '\n';
+
+    /**
+     * The default maximum number of bytes of a file returned by one read of a file's content.
+     */
+    public static final long DEFAULT_MAX_RESPONSE_SIZE = 16L * 1024 * 1024;
+
+    private final long mapThreshold;
+    private final long maxResponseSize;
+    private final LineIndexCache lineIndexCache;
+    private final ContentCache contentCache;
+
+    /**
+     * Create a reader with the default map threshold and maximum response size and no caches.
+     */
+    public FileContentReader() {
+        this(DEFAULT_MAP_THRESHOLD, null);
+    }
+
+    /**
+     * Create a reader with the default maximum response size and no content cache.
+     *
+     * @param mapThreshold The size from which ranges are memory-mapped, 0 or less to never map them
+     * @param lineIndexCache The cache of line indexes used by line range reads, or null to index files on every read
+     */
+    public FileContentReader(long mapThreshold, LineIndexCache lineIndexCache) {
+        this(mapThreshold, DEFAULT_MAX_RESPONSE_SIZE, lineIndexCache);
+    }
+
+    /**
+     * Create a reader with no content cache.
+     *
+     * @param mapThreshold The size from which ranges are memory-mapped, 0 or less to never map them
+     * @param maxResponseSize The maximum number of bytes of a file returned by one read of its content,
+     *                        0 or less for no limit
+     * @param lineIndexCache The cache of line indexes used by line range reads, or null to index files on every read
+     */
+    public FileContentReader(long mapThreshold, long maxResponseSize, LineIndexCache lineIndexCache) {
+        this(mapThreshold, maxResponseSize, lineIndexCache, null);
+    }
+
+    /**
+     * Create a reader.
+     *
+     * @param mapThreshold The size from which ranges are memory-mapped, 0 or less to never map them
+     * @param maxResponseSize The maximum number of bytes of a file returned by one read of its content,
+     *                        0 or less for no limit
+     * @param lineIndexCache The cache of line indexes used by line range reads, or null to index files on every read
+     * @param contentCache The cache of whole file content, or null to read files on every read
+     */
+    public FileContentReader(long mapThreshold, long maxResponseSize, LineIndexCache lineIndexCache,
+                             ContentCache contentCache) {
+        this.mapThreshold = mapThreshold > 0 ? mapThreshold : Long.MAX_VALUE;
+        this.maxResponseSize = maxResponseSize > 0 ? Math.max(maxResponseSize, MIN_RESPONSE_SIZE) : Long.MAX_VALUE;
+        this.lineIndexCache = lineIndexCache;
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * Read a file, or a range of its bytes, as text if the range is valid UTF-8 without NUL bytes and as
+     * base64-encoded bytes otherwise; a range that does not start the file must also not follow NUL bytes
+     * at the start of the file. The file is checked with one stat call and opened once, and the range is
+     * classified in one pass by {@link TextClassifier}, whose result also picks how the text is built.
+     * <p>
+     * A range longer than the maximum response size is truncated: text at the last character boundary
+     * within the limit, and binary content at a multiple of three bytes, so the base64 encodings of
+     * consecutive reads can be joined. The size of the file is known once it is open, so ranges within
+     * the limit cost nothing extra. A whole file is served from the content cache while it is unchanged.
+     *
+     * @param path The path to the file
+     * @param range The range of bytes to read, or null for the whole file
+     * @return The content
+     * @throws IOException If an I/O error occurs or the range is too large to hold in memory
+     */
+    public FileContent read(Path path, ByteRange range) throws IOException {
+        FileStat stat = requireRegularFile(path);
+        FileContent cached = range == null ? readCached(path, stat) : null;
+        return cached != null ? cached : readContent(path, stat.size(), range);
+    }
+
+    /**
+     * Read a file, or a range of its bytes, bypassing the content cache.
+     *
+     * @param path The path to the file
+     * @param size The size of the file
+     * @param range The range of bytes to read, or null for the whole file
+     * @return The content
+     * @throws IOException If an I/O error occurs or the range is too large to hold in memory
+     */
+    private FileContent readContent(Path path, long size, ByteRange range) throws IOException {
+        try (FileChannel channel = open(path)) {
+            long start = range == null ? 0 : range.getStart(size);
+            long end = range == null ? size : range.getEnd(size);
+            boolean truncated = end - start > maxResponseSize;
+            if (truncated) {
+                end = start + maxResponseSize;
+            }
+            checkLength(start, end, path);
+            ByteBuffer bytes = isMapped(start, end) ? channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)
+                    : ByteBuffer.wrap(readRange(channel, start, end));
+            end = start + bytes.remaining();
+            TextClassifier classifier = classify(bytes);
+            boolean text = classifier.isText() && classifier.isValidUtf8()
+                    && (start == 0 || isText(readHead(channel, size)));
+            if (truncated) {
+                end = text ? characterBoundary(channel, size, start, end) : start + (end - start) / 3 * 3;
+                bytes.limit((int) (end - start));
+                logger.debug("Truncated range of {} to {}-{} of {} bytes", path, start, end, size);
+            }
+            String content = text ? decode(bytes, classifier) : encode(channel, bytes, start, end, path);
+            return new FileContent(content, !text, size, start, end - start, truncated);
+        }
+    }
+
+    /**
+     * Read a range of lines of a text file, truncated like {@link #read(Path, ByteRange)} if it is longer
+     * than the maximum response size.
+     *
+     * @param path The path to the file
+     * @param lines The range of lines to read
+     * @return The lines, each with its terminating newline
+     * @throws IOException If an I/O error occurs or the file is not a text file
+     */
+    public FileContent read(Path path, LineRange lines) throws IOException {
+        FileStat stat = requireRegularFile(path);
+        try (FileChannel channel = open(path)) {
+            if (!isText(readHead(channel, stat.size()))) {
+                throw new IOException("Line ranges can only be read from text files: " + path);
+            }
+            LineIndex index = getLineIndex(path, stat, channel);
+            long start = index.getStart(channel, lines);
+            long end = index.getEnd(channel, lines);
+            boolean truncated = end - start > maxResponseSize;
+            if (truncated) {
+                end = characterBoundary(channel, index.getSize(), start, start + maxResponseSize);
+            }
+            return new FileContent(readText(channel, start, end, path), false, index.getSize(), start,
+                    end - start, truncated);
+        }
+    }
+
+    /**
+     * Read a file, or a range of its bytes, as text.
+     * Bytes of a character split by the range boundaries are decoded as replacement characters.
+     *
+     * @param path The path to the file
+     * @param range The range of bytes to read, or null for the whole file
+     * @return The text
+     * @throws IOException If an I/O error occurs or the range is too large to hold in memory
+     */
+    public String readText(Path path, ByteRange range) throws IOException {
+        FileStat stat = requireRegularFile(path);
+        FileContent cached = range == null ? readCached(path, stat) : null;
+        if (cached != null && !cached.isBinary() && !cached.isTruncated()) {
+            return cached.getContent();
+        }
+        try (FileChannel channel = open(path)) {
+            long size = stat.size();
+            return readText(channel, range == null ? 0 : range.getStart(size),
+                    range == null ? size : range.getEnd(size), path);
+        }
+    }
+
+    /**
+     * Read a range of lines of a text file.
+     * The byte offset of every line comes from a line index built in one scan of the file and cached
+     * while the file is unchanged, so later reads of the same file only read the requested lines.
+     *
+     * @param path The path to the file
+     * @param lines The range of lines to read
+     * @return The lines, each with its terminating newline
+     * @throws IOException If an I/O error occurs or the lines are too large to hold in memory
+     */
+    public String readText(Path path, LineRange lines) throws IOException {
+        FileStat stat = requireRegularFile(path);
+        try (FileChannel channel = open(path)) {
+            LineIndex index = getLineIndex(path, stat, channel);
+            return readText(channel, index.getStart(channel, lines), index.getEnd(channel, lines), path);
+        }
+    }
+
+    /**
+     * Read a file, or a range of its bytes, and encode it as base64.
+     * The bytes are encoded one chunk at a time into a buffer of the exact encoded size, so they are never
+     * held on the heap as a whole.
+     *
+     * @param path The path to the file
+     * @param range The range of bytes to read, or null for the whole file
+     * @return The base64-encoded bytes
+     * @throws IOException If an I/O error occurs or the range is too large to hold in memory
+     */
+    public String readBinary(Path path, ByteRange range) throws IOException {
+        FileStat stat = requireRegularFile(path);
+        FileContent cached = range == null ? readCached(path, stat) : null;
+        if (cached != null && cached.isBinary() && !cached.isTruncated()) {
+            return cached.getContent();
+        }
+        try (FileChannel channel = open(path)) {
+            long size = stat.size();
+            long start = range == null ? 0 : range.getStart(size);
+            long end = range == null ? size : range.getEnd(size);
+            checkLength(start, end, path);
+            return encode(channel, null, start, end, path);
+        }
+    }
+
+    /**
+     * Read the last lines of a text file, scanning backward from the end of the file so only those lines
+     * are read. A final newline ends the last line rather than starting another. Lines reaching further
+     * back than the maximum response size are cut at a character boundary within it.
+     *
+     * @param path The path to the file
+     * @param lines The number of lines to read
+     * @return The lines, and a token to follow the file from its current end
+     * @throws IOException If an I/O error occurs or the file is not a text file
+     * @throws IllegalArgumentException If the line count is negative
+     */
+    public FileTail tail(Path path, int lines) throws IOException {
+        if (lines < 0) {
+            throw new IllegalArgumentException("Line count must not be negative: " + lines);
+        }
+        FileStat stat = requireRegularFile(path);
+        long size = stat.size();
+        try (FileChannel channel = open(path)) {
+            if (!isText(readHead(channel, size))) {
+                throw new IOException("Only text files can be tailed: " + path);
+            }
+            long limit = Math.max(0, size - maxResponseSize);
+            long start = size;
+            int found = 0;
+            // Each block ends where the previous one started, until enough newlines are found
+            while (found < lines && start > limit) {
+                long from = Math.max(limit, start - TAIL_BLOCK_SIZE);
+                byte[] block = readRange(channel, from, start);
+                int i = block.length - 1;
+                for (; i >= 0; i--) {
+                    if (block[i] == '\n' && from + i != size - 1 && ++found == lines) {
+                        break;
+                    }
+                }
+                start = i >= 0 ? from + i + 1 : from;
+            }
+            boolean truncated = found < lines && start > 0;
+            checkLength(start, size, path);
+            byte[] bytes = readRange(channel, start, size);
+            int skipped = 0;
+            while (truncated && skipped < Math.min(3, bytes.length) && (bytes[skipped] & 0xC0) == 0x80) {
+                skipped++;
+            }
+            logger.debug("Tailed {} lines of {} from offset {}", found, path, start + skipped);
+            return new FileTail(new String(bytes, skipped, bytes.length - skipped, StandardCharsets.UTF_8),
+                    start + skipped, size, encodeTailToken(stat, start + bytes.length), false, truncated);
+        }
+    }
+
+    /**
+     * Read the text appended to a file since a tail token, up to the maximum response size.
+     * A file whose file key changed, as when a log is rotated, or that shrank below the token's position,
+     * as when it is truncated in place, is read again from its beginning. A character still being written
+     * at the end of the file is left for the next call.
+     *
+     * @param path The path to the file
+     * @param token The token returned by the previous call to {@link #tail} or {@code follow}
+     * @return The appended text, and the token for the next call
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    public FileTail follow(Path path, String token) throws IOException {
+        String[] parts = decodeTailToken(token);
+        long position = Long.parseLong(parts[1]);
+        FileStat stat = requireRegularFile(path);
+        long size = stat.size();
+        boolean rotated = !parts[0].equals(String.valueOf(stat.fileKey())) || size < position;
+        long start = rotated ? 0 : position;
+        // Compare the remainder rather than adding, since an unlimited response size is Long.MAX_VALUE
+        long end = size - start > maxResponseSize ? start + maxResponseSize : size;
+        checkLength(start, end, path);
+        try (FileChannel channel = open(path)) {
+            byte[] bytes = readRange(channel, start, end);
+            int length = completeCharacters(bytes);
+            if (rotated) {
+                logger.debug("File {} was rotated, following it from the start", path);
+            }
+            return new FileTail(new String(bytes, 0, length, StandardCharsets.UTF_8), start, size,
+                    encodeTailToken(stat, start + length), rotated, end < size);
+        }
+    }
+
+    /**
+     * Determine if a file is a text file from the absence of NUL bytes at its start.
+     * This is a simple heuristic and may not be accurate for all files.
+     *
+     * @param path The path to the file
+     * @return True if the file is likely a text file, false otherwise
+     * @throws IOException If an I/O error occurs
+     */
+    public boolean isText(Path path) throws IOException {
+        long size = requireRegularFile(path).size();
+        try (FileChannel channel = open(path)) {
+            return isText(readHead(channel, size));
+        }
+    }
+
+    /**
+     * Encode a position in a file as a tail token, with the file key that identifies the file.
+     *
+     * @param stat The attributes of the file
+     * @param position The offset after the last byte returned
+     * @return The opaque token
+     */
+    private static String encodeTailToken(FileStat stat, long position) {
+        String payload = TAIL_TOKEN_VERSION + TAIL_TOKEN_SEPARATOR + stat.fileKey() + TAIL_TOKEN_SEPARATOR + position;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a tail token into its file key and position.
+     *
+     * @param token The opaque token
+     * @return The file key and the position
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    private static String[] decodeTailToken(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split(String.valueOf(TAIL_TOKEN_SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid tail token: " + token, e);
+        }
+        if (parts.length != 3 || !TAIL_TOKEN_VERSION.equals(parts[0]) || !parts[2].matches("\\d{1,18}")) {
+            throw new IllegalArgumentException("Invalid tail token: " + token);
+        }
+        return new String[] {parts[1], parts[2]};
+    }
+
+    /**
+     * Find how many bytes of UTF-8 end with a complete character, leaving out a character cut by the end.
+     *
+     * @param bytes The bytes
+     * @return The length of the bytes up to the last complete character
+     */
+    private static int completeCharacters(byte[] bytes) {
+        for (int i = bytes.length - 1; i >= Math.max(0, bytes.length - 4); i--) {
+            int lead = bytes[i] & 0xFF;
+            if ((lead & 0xC0) != 0x80) {
+                int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+                return i + length > bytes.length ? i : bytes.length;
+            }
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Check with one stat call that a path names a regular file, following symbolic links.
+     * Whether the file is readable is left to opening it.
+     *
+     * @param path The path to the file
+     * @return The attributes of the file
+     * @throws IOException If the file does not exist or is not a regular file
+     */
+    private static FileStat requireRegularFile(Path path) throws IOException {
+        FileStat stat;
+        try {
+            stat = FileStat.readBasic(path);
+        } catch (NoSuchFileException e) {
+            logger.warn("File does not exist: {}", path);
+            throw new IOException("File does not exist: " + path, e);
+        }
+        if (stat.isDirectory()) {
+            logger.warn("Cannot read content of a directory: {}", path);
+            throw new IOException("Not a regular file. Cannot read content of a directory: " + path);
+        }
+        if (!stat.isRegularFile()) {
+            logger.warn("Not a regular file: {}", path);
+            throw new IOException("Not a regular file: " + path);
+        }
+        return stat;
+    }
+
+    /**
+     * Open a file for reading.
+     *
+     * @param path The path to the file
+     * @return The open file
+     * @throws IOException If the file is not readable or cannot be opened
+     */
+    private static FileChannel open(Path path) throws IOException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            logger.warn("File is not readable: {}", path);
+            throw new IOException("File is not readable: " + path, e);
+        }
+    }
+
+    /**
+     * Read a whole file through the content cache.
+     * The attributes are read before the content, so a file written during the read is cached under
+     * attributes it no longer has and is read again next time.
+     *
+     * @param path The path to the file
+     * @param stat The attributes of the file
+     * @return The content, or null if there is no content cache or the file is too large for it
+     * @throws IOException If an I/O error occurs
+     */
+    private FileContent readCached(Path path, FileStat stat) throws IOException {
+        if (contentCache == null || !contentCache.accepts(stat.size())) {
+            return null;
+        }
+        Path key = path.toAbsolutePath().normalize();
+        FileContent content = contentCache.get(key, stat);
+        if (content == null) {
+            content = readContent(path, stat.size(), null);
+            if (!content.isTruncated() && content.getSize() == stat.size()) {
+                contentCache.put(key, stat, content);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Read the bytes between two offsets of an open file as text, from a mapping if the range is large.
+     *
+     * @param channel The open file
+     * @param start The offset of the first byte
+     * @param end The offset after the last byte
+     * @param path The path to the file, for error messages
+     * @return The text
+     * @throws IOException If an I/O error occurs or the range is too large to hold in memory
+     */
+    private String readText(FileChannel channel, long start, long end, Path path) throws IOException {
+        checkLength(start, end, path);
+        if (isMapped(start, end)) {
+            logger.debug("Decoding mapped range {}-{} of {}", start, end, path);
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        }
+        return new String(readRange(channel, start, end), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the line index of an open file, from the cache while the file is unchanged.
+     *
+     * @param path The path to the file
+     * @param stat The attributes of the file
+     * @param channel The open file
+     * @return The line index
+     * @throws IOException If the file cannot be read
+     */
+    private LineIndex getLineIndex(Path path, FileStat stat, FileChannel channel) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        LineIndex index = lineIndexCache == null ? null : lineIndexCache.get(key, stat);
+        if (index == null) {
+            index = LineIndex.build(channel, stat.size());
+            if (lineIndexCache != null) {
+                lineIndexCache.put(key, stat, index);
+            }
+            logger.debug("Indexed {} lines of {}", index.getLineCount(), path);
+        }
+        return index;
+    }
+
+    private boolean isMapped(long start, long end) {
+        return end - start >= mapThreshold;
+    }
+
+    /**
+     * Check that a range is small enough to be returned by one read.
+     *
+     * @param start The offset of the first byte
+     * @param end The offset after the last byte
+     * @param path The path to the file, for error messages
+     * @throws IOException If the range is too large
+     */
+    private static void checkLength(long start, long end, Path path) throws IOException {
+        long length = end - start;
+        if (length > MAX_RANGE_LENGTH) {
+            throw new IOException("Range of " + length + " bytes is too large, read at most "
+                    + MAX_RANGE_LENGTH + " bytes at a time: " + path);
+        }
+    }
+
+    /**
+     * Move the end of a truncated text range back to the start of the character it splits, if any.
+     *
+     * @param channel The open file
+     * @param size The size of the file
+     * @param start The offset of the first byte of the range
+     * @param end The offset after the last byte of the range, inside the file
+     * @return The offset after the last complete character, at most 3 bytes before the end
+     * @throws IOException If an I/O error occurs
+     */
+    private static long characterBoundary(FileChannel channel, long size, long start, long end) throws IOException {
+        long from = Math.max(start, end - 3);
+        byte[] tail = readRange(channel, from, Math.min(end + 1, size));
+        long boundary = end;
+        // UTF-8 continuation bytes look like 10xxxxxx; back up over them to the lead byte
+        while (boundary > from && boundary - from < tail.length && (tail[(int) (boundary - from)] & 0xC0) == 0x80) {
+            boundary--;
+        }
+        return boundary > start ? boundary : end;
+    }
+
+    /**
+     * Read the first bytes of an open file, enough to sniff it.
+     *
+     * @param channel The open file
+     * @param size The size of the file
+     * @return A buffer holding the first bytes of the file
+     * @throws IOException If an I/O error occurs
+     */
+    private static ByteBuffer readHead(FileChannel channel, long size) throws IOException {
+        return ByteBuffer.wrap(readRange(channel, 0, Math.min(SNIFF_LENGTH, size)));
+    }
+
+    /**
+     * Check for NUL bytes in the first bytes of a file, which are uncommon in text files.
+     * The bytes are scanned eight at a time by {@link TextClassifier}.
+     *
+     * @param bytes A buffer holding the start of the file
+     * @return True if the file is likely a text file, false otherwise
+     */
+    private static boolean isText(ByteBuffer bytes) {
+        ByteBuffer head = bytes.duplicate();
+        head.limit(head.position() + Math.min(SNIFF_LENGTH, head.remaining()));
+        return TextClassifier.classify(head).isText();
+    }
+
+    /**
+     * Read the bytes between two offsets of an open file with positional reads.
+     *
+     * @param channel The open file
+     * @param start The offset of the first byte
+     * @param end The offset after the last byte, at most {@link #MAX_RANGE_LENGTH} bytes after the start
+     * @return The bytes, fewer if the file ends earlier
+     * @throws IOException If an I/O error occurs
+     */
+    private static byte[] readRange(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        long position = start;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        return buffer.position() == buffer.capacity() ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Classify bytes as text in one pass, leaving out the continuation bytes of a character that the start of
+     * the bytes cuts, which are decoded as replacement characters rather than making the bytes invalid UTF-8.
+     *
+     * @param bytes The bytes, left unchanged
+     * @return The classification
+     */
+    private static TextClassifier classify(ByteBuffer bytes) {
+        ByteBuffer characters = bytes.duplicate();
+        characters.position(characters.position() + cutContinuationBytes(characters));
+        return TextClassifier.classify(characters);
+    }
+
+    /**
+     * Count the UTF-8 continuation bytes at the start of some bytes, left over from a character that starts
+     * before them.
+     *
+     * @param bytes The bytes
+     * @return The number of continuation bytes, at most 3
+     */
+    private static int cutContinuationBytes(ByteBuffer bytes) {
+        int count = 0;
+        while (count < 3 && count < bytes.remaining() && (bytes.get(bytes.position() + count) & 0xC0) == 0x80) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Decode UTF-8 bytes into a string, classifying them first.
+     *
+     * @param bytes The bytes, consumed by the call
+     * @return The text
+     * @see #decode(ByteBuffer, TextClassifier)
+     */
+    static String decode(ByteBuffer bytes) {
+        return decode(bytes, classify(bytes));
+    }
+
+    /**
+     * Decode classified UTF-8 bytes into a string, one bounded chunk at a time. ASCII is copied into the string
+     * as Latin-1 without decoding, and valid UTF-8 is cut into chunks at character boundaries and built by the
+     * String constructor, which needs no validation of its own; only invalid UTF-8 goes through a decoder,
+     * which replaces malformed input with replacement characters. Bytes of a character cut by the start or
+     * the end of the bytes are decoded as replacement characters too.
+     *
+     * @param bytes The bytes, consumed by the call
+     * @param classifier The classification of the bytes
+     * @return The text
+     */
+    static String decode(ByteBuffer bytes, TextClassifier classifier) {
+        StringBuilder text = new StringBuilder(bytes.remaining());
+        for (int i = cutContinuationBytes(bytes); i > 0; i--) {
+            text.append('\uFFFD');
+            bytes.get();
+        }
+        if (!classifier.isValidUtf8()) {
+            decodeMalformed(bytes, text);
+            return text.toString();
+        }
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, bytes.remaining())];
+        while (bytes.hasRemaining()) {
+            int length = Math.min(chunk.length, bytes.remaining());
+            if (!classifier.isAscii() && length < bytes.remaining()) {
+                // Back up to the lead byte of a character the chunk would cut
+                while (length > 1 && (bytes.get(bytes.position() + length) & 0xC0) == 0x80) {
+                    length--;
+                }
+            }
+            bytes.get(chunk, 0, length);
+            text.append(new String(chunk, 0, length,
+                    classifier.isAscii() ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Decode invalid UTF-8 through a decoder and bounded buffers, replacing malformed input with replacement
+     * characters. Each chunk is copied into a reusable heap buffer first, where the decoder takes its array
+     * path, and a character split between chunks is carried over to the next one.
+     *
+     * @param bytes The bytes, consumed by the call
+     * @param text The text to append to
+     */
+    private static void decodeMalformed(ByteBuffer bytes, StringBuilder text) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.allocate(Math.min(CHUNK_SIZE, Math.max(bytes.remaining(), 1)));
+        CharBuffer chars = CharBuffer.allocate(in.capacity());
+        boolean endOfInput;
+        do {
+            int length = Math.min(in.remaining(), bytes.remaining());
+            in.put(in.position(), bytes, bytes.position(), length);
+            in.position(in.position() + length);
+            bytes.position(bytes.position() + length);
+            in.flip();
+            endOfInput = !bytes.hasRemaining();
+            CoderResult result;
+            do {
+                result = decoder.decode(in, chars, endOfInput);
+                text.append(chars.array(), 0, chars.position());
+                chars.clear();
+            } while (result.isOverflow());
+            in.compact();
+        } while (!endOfInput);
+        decoder.flush(chars);
+        text.append(chars.array(), 0, chars.position());
+    }
+
+    /**
+     * Encode the bytes between two offsets of an open file as base64 into a buffer of the exact encoded size.
+     *
+     * @param channel The open file
+     * @param mapped The bytes of the range, mapped or already read, or null to read them from the channel
+     * @param start The offset of the first byte
+     * @param end The offset after the last byte
+     * @param path The path to the file, for error messages
+     * @return The base64-encoded bytes
+     * @throws IOException If an I/O error occurs or the encoded form is too large to hold in memory
+     */
+    private String encode(FileChannel channel, ByteBuffer mapped, long start, long end, Path path)
+            throws IOException {
+        long encodedLength = (end - start + 2) / 3 * 4;
+        if (encodedLength > MAX_RANGE_LENGTH) {
+            throw new IOException("Range of " + (end - start) + " bytes is too large to encode as base64: " + path);
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) encodedLength);
+        ByteBuffer source = mapped != null || !isMapped(start, end) ? mapped
+                : channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        encode(channel, source, start, end, encoded);
+        return encoded.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encode the bytes between two offsets of an open file as base64, one chunk at a time.
+     * Every chunk but the last is a multiple of three bytes long, so the chunks encode without padding
+     * and their concatenation is the encoding of the whole range.
+     *
+     * @param channel The open file
+     * @param mapped A mapping of the range, or null to read it from the channel
+     * @param start The offset of the first byte
+     * @param end The offset after the last byte
+     * @param out The stream the encoded bytes are written to
+     * @return The number of bytes encoded, fewer than the range if the file ends earlier
+     * @throws IOException If an I/O error occurs
+     */
+    private static long encode(FileChannel channel, ByteBuffer mapped, long start, long end, OutputStream out)
+            throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, end - start)];
+        byte[] encoded = new byte[(chunk.length + 2) / 3 * 4];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long position = start;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(chunk.length, end - position));
+            if (mapped != null) {
+                mapped.get(chunk, 0, buffer.limit());
+                buffer.position(buffer.limit());
+            } else {
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // Keep reading until the chunk is full or the file ends
+                }
+            }
+            int length = buffer.position();
+            if (length == 0) {
+                break;
+            }
+            int count = encoder.encode(length == chunk.length ? chunk : Arrays.copyOf(chunk, length), encoded);
+            out.write(encoded, 0, count);
+            position += length;
+            if (length < buffer.limit()) {
+                break;
+            }
+        }
+        return position - start;
+    }
+}
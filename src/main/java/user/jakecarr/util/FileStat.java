@@ -0,0 +1,300 @@
+package user.jakecarr.util;
+
+import com.sun.security.auth.module.UnixSystem;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+/**
+ * Snapshot of a file's attributes taken with a single stat call.
+ * On Unix-like file systems the snapshot includes the permission mode and owner, so access
+ * checks can be answered in-process instead of issuing one access call per permission.
+ */
+public final class FileStat implements BasicFileAttributes {
+    private static final Logger logger = LogManager.getLogger(FileStat.class);
+
+    /**
+     * Permission mask for read access.
+     */
+    public static final int READ = 4;
+
+    /**
+     * Permission mask for write access.
+     */
+    public static final int WRITE = 2;
+
+    /**
+     * Permission mask for execute access.
+     */
+    public static final int EXECUTE = 1;
+
+    private static final String UNIX_ATTRIBUTES = "unix:size,lastModifiedTime,lastAccessTime,creationTime,"
+            + "isDirectory,isRegularFile,isSymbolicLink,isOther,fileKey,mode,uid,gid";
+    private static final boolean UNIX_VIEW = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    private static final Credentials CREDENTIALS = UNIX_VIEW ? Credentials.load() : null;
+
+    private final long size;
+    private final FileTime lastModifiedTime;
+    private final FileTime lastAccessTime;
+    private final FileTime creationTime;
+    private final boolean directory;
+    private final boolean regularFile;
+    private final boolean symbolicLink;
+    private final boolean other;
+    private final Object fileKey;
+    private final int mode;
+    private final long uid;
+    private final long gid;
+
+    private FileStat(BasicFileAttributes attrs, int mode, long uid, long gid) {
+        this.size = attrs.size();
+        this.lastModifiedTime = attrs.lastModifiedTime();
+        this.lastAccessTime = attrs.lastAccessTime();
+        this.creationTime = attrs.creationTime();
+        this.directory = attrs.isDirectory();
+        this.regularFile = attrs.isRegularFile();
+        this.symbolicLink = attrs.isSymbolicLink();
+        this.other = attrs.isOther();
+        this.fileKey = attrs.fileKey();
+        this.mode = mode;
+        this.uid = uid;
+        this.gid = gid;
+    }
+
+    private FileStat(long size, FileTime lastModifiedTime, FileTime lastAccessTime, FileTime creationTime,
+                     boolean directory, boolean regularFile, boolean symbolicLink, boolean other,
+                     int mode, long uid, long gid) {
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+        this.lastAccessTime = lastAccessTime;
+        this.creationTime = creationTime;
+        this.directory = directory;
+        this.regularFile = regularFile;
+        this.symbolicLink = symbolicLink;
+        this.other = other;
+        this.fileKey = null;
+        this.mode = CREDENTIALS == null ? -1 : mode;
+        this.uid = uid;
+        this.gid = gid;
+    }
+
+    private FileStat(Map<String, Object> attrs) {
+        this.size = (Long) attrs.get("size");
+        this.lastModifiedTime = (FileTime) attrs.get("lastModifiedTime");
+        this.lastAccessTime = (FileTime) attrs.get("lastAccessTime");
+        this.creationTime = (FileTime) attrs.get("creationTime");
+        this.directory = (Boolean) attrs.get("isDirectory");
+        this.regularFile = (Boolean) attrs.get("isRegularFile");
+        this.symbolicLink = (Boolean) attrs.get("isSymbolicLink");
+        this.other = (Boolean) attrs.get("isOther");
+        this.fileKey = attrs.get("fileKey");
+        this.mode = CREDENTIALS == null ? -1 : (Integer) attrs.get("mode");
+        this.uid = Integer.toUnsignedLong((Integer) attrs.get("uid"));
+        this.gid = Integer.toUnsignedLong((Integer) attrs.get("gid"));
+    }
+
+    /**
+     * Read the attributes of a file with one stat call.
+     *
+     * @param path The path to the file
+     * @param options Options indicating how symbolic links are handled
+     * @return The attribute snapshot
+     * @throws IOException If the attributes cannot be read
+     */
+    public static FileStat read(Path path, LinkOption... options) throws IOException {
+        if (UNIX_VIEW) {
+            return new FileStat(Files.readAttributes(path, UNIX_ATTRIBUTES, options));
+        }
+        return readBasic(path, options);
+    }
+
+    /**
+     * Read only the basic attributes of a file with one stat call.
+     * The snapshot has no permission mode, which saves decoding the owner and mode when no
+     * access check is needed.
+     *
+     * @param path The path to the file
+     * @param options Options indicating how symbolic links are handled
+     * @return The attribute snapshot
+     * @throws IOException If the attributes cannot be read
+     */
+    public static FileStat readBasic(Path path, LinkOption... options) throws IOException {
+        return new FileStat(Files.readAttributes(path, BasicFileAttributes.class, options), -1, -1, -1);
+    }
+
+    /**
+     * Restore a snapshot from previously recorded attributes, such as those kept by a {@link MetadataIndex}.
+     * The restored snapshot has no file key.
+     *
+     * @param size The size in bytes
+     * @param lastModifiedTime The last modification time
+     * @param lastAccessTime The last access time
+     * @param creationTime The creation time
+     * @param directory Whether the file is a directory
+     * @param regularFile Whether the file is a regular file
+     * @param symbolicLink Whether the file is a symbolic link
+     * @param other Whether the file is something else
+     * @param mode The permission mode, or -1 if it is unknown
+     * @param uid The owner
+     * @param gid The group
+     * @return The attribute snapshot
+     */
+    static FileStat restore(long size, FileTime lastModifiedTime, FileTime lastAccessTime, FileTime creationTime,
+                            boolean directory, boolean regularFile, boolean symbolicLink, boolean other,
+                            int mode, long uid, long gid) {
+        return new FileStat(size, lastModifiedTime, lastAccessTime, creationTime, directory, regularFile,
+                symbolicLink, other, mode, uid, gid);
+    }
+
+    /**
+     * Get the raw permission mode.
+     *
+     * @return The mode, or -1 if it is unknown
+     */
+    int mode() {
+        return mode;
+    }
+
+    /**
+     * Get the owner.
+     *
+     * @return The user id, or -1 if it is unknown
+     */
+    long uid() {
+        return uid;
+    }
+
+    /**
+     * Get the group.
+     *
+     * @return The group id, or -1 if it is unknown
+     */
+    long gid() {
+        return gid;
+    }
+
+    /**
+     * Check if access checks can be answered from the permission mode.
+     *
+     * @return True if the mode and the process credentials are known, false otherwise
+     */
+    public boolean hasMode() {
+        return mode >= 0;
+    }
+
+    /**
+     * Check if the current process is granted the given access, following the rules of access(2).
+     * Access control lists and read-only mounts are not taken into account.
+     *
+     * @param access One of {@link #READ}, {@link #WRITE} or {@link #EXECUTE}
+     * @return True if the access is granted, false otherwise
+     * @throws IllegalStateException If the mode is unknown
+     */
+    public boolean permits(int access) {
+        if (!hasMode()) {
+            throw new IllegalStateException("Permission mode is not available");
+        }
+        if (CREDENTIALS.uid == 0) {
+            // Root may read and write anything, and execute anything with at least one execute bit
+            return access != EXECUTE || directory || (mode & 0111) != 0;
+        }
+        if (CREDENTIALS.uid == uid) {
+            return ((mode >> 6) & access) == access;
+        }
+        if (CREDENTIALS.isMember(gid)) {
+            return ((mode >> 3) & access) == access;
+        }
+        return (mode & access) == access;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return regularFile;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return symbolicLink;
+    }
+
+    @Override
+    public boolean isOther() {
+        return other;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return fileKey;
+    }
+
+    /**
+     * The user and groups of the current process.
+     */
+    private static final class Credentials {
+        private final long uid;
+        private final long gid;
+        private final long[] groups;
+
+        private Credentials(long uid, long gid, long[] groups) {
+            this.uid = uid;
+            this.gid = gid;
+            this.groups = groups;
+        }
+
+        static Credentials load() {
+            try {
+                UnixSystem system = new UnixSystem();
+                long[] groups = system.getGroups();
+                return new Credentials(system.getUid(), system.getGid(), groups == null ? new long[0] : groups);
+            } catch (LinkageError | RuntimeException e) {
+                logger.warn("Process credentials unavailable, falling back to per-file access checks", e);
+                return null;
+            }
+        }
+
+        boolean isMember(long group) {
+            if (gid == group) {
+                return true;
+            }
+            for (long candidate : groups) {
+                if (candidate == group) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
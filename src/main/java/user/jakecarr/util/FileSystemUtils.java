@@ -1,20 +1,45 @@
 package user.jakecarr.util;
 
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.DiskUsage;
+import user.jakecarr.model.DiskUsageReport;
+import user.jakecarr.model.FileContent;
+import user.jakecarr.model.FileListing;
+import user.jakecarr.model.FileListingPage;
 import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.FileSortKey;
+import user.jakecarr.model.FileTail;
+import user.jakecarr.model.LineRange;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.model.MetadataField;
+import user.jakecarr.model.SearchMatch;
+import user.jakecarr.model.SearchResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -26,10 +51,95 @@ public class FileSystemUtils {
     private static final Logger logger = LogManager.getLogger(FileSystemUtils.class);
     
     /**
-     * Constructor for Spring dependency injection.
+     * The largest range a single read returns, bounded by the size of a Java array.
+     */
+    public static final int MAX_RANGE_LENGTH = FileContentReader.MAX_RANGE_LENGTH;
+    
+    private final ForkJoinPool walkPool;
+    private final ListingCache listingCache;
+    private final MetadataIndexer metadataIndexer;
+    private final FileContentReader contentReader;
+    
+    /**
+     * Constructor using one directory walk worker per available processor and no listing cache.
      */
     public FileSystemUtils() {
-        logger.debug("FileSystemUtils constructed");
+        this(0);
+    }
+    
+    /**
+     * Constructor without a listing cache.
+     * 
+     * @param walkParallelism The number of workers used by directory walks; 0 or less uses one per
+     *                        available processor, and 1 walks sequentially on the calling thread
+     */
+    public FileSystemUtils(int walkParallelism) {
+        this(walkParallelism, 0, 0);
+    }
+    
+    /**
+     * Constructor without a metadata index.
+     * 
+     * @param walkParallelism The number of workers used by directory walks; 0 or less uses one per
+     *                        available processor, and 1 walks sequentially on the calling thread
+     * @param cacheMaxEntries The maximum number of directory entries held by the listing cache, 0 to disable it
+     * @param cacheMaxDirectories The maximum number of directories the listing cache watches
+     */
+    public FileSystemUtils(int walkParallelism, long cacheMaxEntries, int cacheMaxDirectories) {
+        this(walkParallelism, cacheMaxEntries, cacheMaxDirectories, null);
+    }
+    
+    /**
+     * Constructor with the default content reader.
+     * 
+     * @param walkParallelism The number of workers used by directory walks; 0 or less uses one per
+     *                        available processor, and 1 walks sequentially on the calling thread
+     * @param cacheMaxEntries The maximum number of directory entries held by the listing cache, 0 to disable it
+     * @param cacheMaxDirectories The maximum number of directories the listing cache watches
+     * @param metadataIndexer The index answering listings of indexed roots, or null for none
+     */
+    public FileSystemUtils(int walkParallelism, long cacheMaxEntries, int cacheMaxDirectories,
+                           MetadataIndexer metadataIndexer) {
+        this(walkParallelism, cacheMaxEntries, cacheMaxDirectories, metadataIndexer, new FileContentReader());
+    }
+    
+    /**
+     * Constructor for Spring dependency injection.
+     * 
+     * @param walkParallelism The number of workers used by directory walks; 0 or less uses one per
+     *                        available processor, and 1 walks sequentially on the calling thread
+     * @param cacheMaxEntries The maximum number of directory entries held by the listing cache, 0 to disable it
+     * @param cacheMaxDirectories The maximum number of directories the listing cache watches
+     * @param metadataIndexer The index answering listings of indexed roots, or null for none
+     * @param contentReader The reader of file content
+     */
+    public FileSystemUtils(int walkParallelism, long cacheMaxEntries, int cacheMaxDirectories,
+                           MetadataIndexer metadataIndexer, FileContentReader contentReader) {
+        int parallelism = walkParallelism > 0 ? walkParallelism : Runtime.getRuntime().availableProcessors();
+        this.walkPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.metadataIndexer = metadataIndexer != null && metadataIndexer.isEnabled() ? metadataIndexer : null;
+        this.listingCache = (cacheMaxEntries > 0 && cacheMaxDirectories > 0) || this.metadataIndexer != null
+                ? createListingCache(cacheMaxEntries, cacheMaxDirectories, this.metadataIndexer) : null;
+        this.contentReader = contentReader;
+        logger.debug("FileSystemUtils constructed with walk parallelism {}, listing cache {}, metadata index {}",
+                parallelism, listingCache != null, this.metadataIndexer != null);
+    }
+    
+    /**
+     * Create the listing cache, leaving listings uncached if directories cannot be watched.
+     * 
+     * @param maxEntries The maximum number of directory entries held
+     * @param maxDirectories The maximum number of directories watched
+     * @param indexer The metadata index backing the cache, or null for none
+     * @return The cache, or null if it cannot be created
+     */
+    private static ListingCache createListingCache(long maxEntries, int maxDirectories, MetadataIndexer indexer) {
+        try {
+            return new ListingCache(maxEntries, maxDirectories, indexer);
+        } catch (IOException e) {
+            logger.warn("Directory listings will not be cached: cannot watch directories", e);
+            return null;
+        }
     }
     
     /**
@@ -46,53 +156,134 @@ public class FileSystemUtils {
     @PreDestroy
     public void cleanup() {
         logger.info("Cleaning up FileSystemUtils");
+        if (walkPool != null) {
+            walkPool.shutdownNow();
+        }
+        if (listingCache != null) {
+            listingCache.close();
+        }
     }
     
     /**
      * Get metadata for a file.
+     * On POSIX file systems the metadata is collected from a single stat call.
      * 
      * @param filePath The path to the file
      * @return The file metadata
      * @throws IOException If an I/O error occurs
      */
     public FileMetadata getFileMetadata(String filePath) throws IOException {
-        logger.debug("Getting metadata for file: {}", filePath);
+        return getFileMetadata(filePath, MetadataField.ALL);
+    }
+    
+    /**
+     * Get the requested metadata fields for a file.
+     * Fields that were not requested are left unset, and attribute reads that only serve
+     * those fields are skipped.
+     * 
+     * @param filePath The path to the file
+     * @param fields The fields to collect
+     * @return The file metadata
+     * @throws IOException If an I/O error occurs
+     */
+    public FileMetadata getFileMetadata(String filePath, Set<MetadataField> fields) throws IOException {
+        logger.debug("Getting metadata for file: {}, fields: {}", filePath, fields);
         
         Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
+        boolean readAccessMode = MetadataField.anyNeedsAccessMode(fields);
+        FileStat stat;
+        try {
+            stat = readStat(path, readAccessMode, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
             logger.warn("File does not exist: {}", filePath);
-            throw new IOException("File does not exist: " + filePath);
+            throw new IOException("File does not exist: " + filePath, e);
         }
         
-        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
-        FileMetadata metadata = new FileMetadata();
+        FileMetadata metadata = toFileMetadata(path, stat, fields);
+        logger.debug("Metadata retrieved successfully for file: {}", filePath);
+        return metadata;
+    }
+    
+    /**
+     * Read the attributes of a file, with the permission mode only when it is needed.
+     * 
+     * @param path The path to the file
+     * @param readAccessMode Whether to read the permission mode
+     * @param options Options indicating how symbolic links are handled
+     * @return The attribute snapshot
+     * @throws IOException If the attributes cannot be read
+     */
+    private FileStat readStat(Path path, boolean readAccessMode, LinkOption... options) throws IOException {
+        return readAccessMode ? FileStat.read(path, options) : FileStat.readBasic(path, options);
+    }
+    
+    /**
+     * Build file metadata from attributes that have already been read without following links.
+     * Symbolic links are described by their target, as before, at the cost of one extra stat call
+     * that is skipped when no requested field describes the target.
+     * Access flags are derived from the permission mode when it is available, and otherwise
+     * fall back to one access check per requested flag.
+     * 
+     * @param path The path to the file
+     * @param stat The attributes of the file itself
+     * @param fields The fields to collect
+     * @return The file metadata
+     */
+    private FileMetadata toFileMetadata(Path path, FileStat stat, Set<MetadataField> fields) {
+        FileStat target = stat;
+        if (stat.isSymbolicLink() && MetadataField.anyDescribesTarget(fields)) {
+            try {
+                target = readStat(path, MetadataField.anyNeedsAccessMode(fields));
+            } catch (IOException e) {
+                logger.debug("Symbolic link target is not accessible: {}", path);
+            }
+        }
         
-        metadata.setName(path.getFileName().toString());
+        FileMetadata metadata = new FileMetadata();
+        Path fileName = path.getFileName();
+        metadata.setName(fileName == null ? path.toString() : fileName.toString());
         metadata.setPath(path.toString());
-        metadata.setSize(attrs.size());
-        metadata.setLastModified(attrs.lastModifiedTime());
-        metadata.setCreationTime(attrs.creationTime());
-        metadata.setDirectory(Files.isDirectory(path));
-        metadata.setRegularFile(Files.isRegularFile(path));
-        metadata.setSymbolicLink(Files.isSymbolicLink(path));
+        metadata.setSize(target.size());
+        metadata.setLastModified(target.lastModifiedTime());
+        metadata.setCreationTime(target.creationTime());
+        metadata.setDirectory(target.isDirectory());
+        metadata.setRegularFile(target.isRegularFile());
+        metadata.setSymbolicLink(stat.isSymbolicLink());
         
-        try {
-            metadata.setHidden(Files.isHidden(path));
-        } catch (IOException e) {
-            logger.warn("Failed to determine if file is hidden: {}", filePath, e);
-            metadata.setHidden(false);
+        if (target.hasMode() || !fields.contains(MetadataField.HIDDEN)) {
+            // POSIX hides dot files, which is exactly what Files.isHidden checks there
+            metadata.setHidden(metadata.getName().startsWith("."));
+        } else {
+            try {
+                metadata.setHidden(Files.isHidden(path));
+            } catch (IOException e) {
+                logger.warn("Failed to determine if file is hidden: {}", path, e);
+                metadata.setHidden(false);
+            }
         }
         
-        metadata.setReadable(Files.isReadable(path));
-        metadata.setWritable(Files.isWritable(path));
-        metadata.setExecutable(Files.isExecutable(path));
-        
-        logger.debug("Metadata retrieved successfully for file: {}", filePath);
+        if (target.hasMode()) {
+            metadata.setReadable(target.permits(FileStat.READ));
+            metadata.setWritable(target.permits(FileStat.WRITE));
+            metadata.setExecutable(target.permits(FileStat.EXECUTE));
+        } else {
+            if (fields.contains(MetadataField.READABLE)) {
+                metadata.setReadable(Files.isReadable(path));
+            }
+            if (fields.contains(MetadataField.WRITABLE)) {
+                metadata.setWritable(Files.isWritable(path));
+            }
+            if (fields.contains(MetadataField.EXECUTABLE)) {
+                metadata.setExecutable(Files.isExecutable(path));
+            }
+        }
         return metadata;
     }
     
     /**
      * List files in a directory.
+     * This drains every page of the listing and is intended for callers that need the full result,
+     * which is held in a columnar {@link FileListing} rather than one object per entry.
      * 
      * @param directoryPath The path to the directory
      * @param recursive Whether to list files recursively
@@ -102,6 +293,69 @@ public class FileSystemUtils {
     public List<FileMetadata> listFiles(String directoryPath, boolean recursive) throws IOException {
         logger.debug("Listing files in directory: {}, recursive: {}", directoryPath, recursive);
         
+        Path path = validateDirectory(directoryPath);
+        List<FileMetadata> files = new FileListing();
+        try (DirectoryWalker<FileMetadata> walker = newMetadataWalker(path, recursive, null, WalkFilter.NONE,
+                MetadataField.ALL, false, false)) {
+            collectPage(walker, files, Integer.MAX_VALUE);
+        }
+        
+        logger.debug("Listed {} files in directory: {}", files.size(), directoryPath);
+        return files;
+    }
+    
+    /**
+     * List one page of files in a directory.
+     * Entries are returned in a stable depth-first, name-sorted order, and the walk resumes from the
+     * position recorded in the cursor so that at most one page is held in memory. Depth, pattern and
+     * type filters are applied during the walk, and excluded subtrees are never read.
+     * The walk stops early when the entry or time budget of the options runs out; the page is then
+     * marked as truncated and its cursor resumes after the last entry that was visited.
+     * The page holds its entries in a columnar {@link FileListing}.
+     * 
+     * @param directoryPath The path to the directory
+     * @param options The listing options
+     * @return The page of file metadata and the cursor for the next page
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the cursor or a filter pattern is invalid
+     */
+    public FileListingPage listFiles(String directoryPath, ListingOptions options) throws IOException {
+        logger.debug("Listing files in directory: {}, recursive: {}, pageSize: {}, cursor: {}",
+                directoryPath, options.isRecursive(), options.getPageSize(), options.getCursor());
+        
+        Path path = validateDirectory(directoryPath);
+        WalkFilter filter = WalkFilter.of(options);
+        List<String> resumeAfter = options.getCursor() == null ? null : ListingCursor.decode(path, options.getCursor());
+        List<FileMetadata> files = new FileListing();
+        String nextCursor = null;
+        boolean truncated;
+        try (DirectoryWalker<FileMetadata> walker = newMetadataWalker(path, options.isRecursive(), resumeAfter, filter,
+                options.getFields(), options.isFollowLinks(),
+                options.getCursor() != null && ListingCursor.isFollowed(options.getCursor()))) {
+            walker.setLimits(options.getMaxEntries(), options.getTimeoutMs());
+            collectPage(walker, files, options.getPageSize());
+            boolean more = walker.hasNext();
+            truncated = walker.isTruncated();
+            if ((more || truncated) && walker.getPosition() != null) {
+                nextCursor = ListingCursor.encode(path, walker.getPosition(), walker.isPositionFollowed());
+            }
+        }
+        
+        if (truncated) {
+            logger.info("Listing of {} stopped by its budget after {} files", directoryPath, files.size());
+        }
+        logger.debug("Listed {} files in directory: {}, more: {}", files.size(), directoryPath, nextCursor != null);
+        return new FileListingPage(files, nextCursor, truncated);
+    }
+    
+    /**
+     * Validate that a path is an existing, readable directory.
+     * 
+     * @param directoryPath The path to the directory
+     * @return The validated path
+     * @throws IOException If the path is not a readable directory
+     */
+    private Path validateDirectory(String directoryPath) throws IOException {
         Path path = Paths.get(directoryPath);
         if (!Files.exists(path)) {
             logger.warn("Directory does not exist: {}", directoryPath);
@@ -117,54 +371,313 @@ public class FileSystemUtils {
             logger.warn("Directory is not readable: {}", directoryPath);
             throw new IOException("Directory is not readable: " + directoryPath);
         }
+        return path;
+    }
+    
+    /**
+     * Create a walker that loads file metadata for each entry on the walk pool.
+     * 
+     * @param path The directory to walk
+     * @param recursive Whether to walk recursively
+     * @param resumeAfter The position to resume after, or null to start from the beginning
+     * @param filter The filter applied during the walk
+     * @param fields The metadata fields to collect for each entry
+     * @param followLinks Whether to descend into directories reached through symbolic links
+     * @param resumeFollowed Whether the walk that issued the cursor descended into the link at its position
+     * @return The walker
+     * @throws IOException If the directory cannot be read
+     */
+    private DirectoryWalker<FileMetadata> newMetadataWalker(Path path, boolean recursive, List<String> resumeAfter,
+                                                            WalkFilter filter, Set<MetadataField> fields,
+                                                            boolean followLinks, boolean resumeFollowed)
+            throws IOException {
+        return new DirectoryWalker<>(path, recursive, resumeAfter, filter,
+                (entry, stat) -> toFileMetadata(entry, stat, fields), walkPool,
+                MetadataField.anyNeedsAccessMode(fields), listingCache, followLinks, resumeFollowed);
+    }
+    
+    /**
+     * Collect metadata for walk entries until the page is full or the walk is exhausted.
+     * 
+     * @param walker The walker to consume
+     * @param files The list to add metadata to
+     * @param limit The maximum number of entries in the page
+     * @throws IOException If the root directory cannot be read
+     */
+    private void collectPage(DirectoryWalker<FileMetadata> walker, List<FileMetadata> files, int limit)
+            throws IOException {
+        while (files.size() < limit && walker.hasNext()) {
+            files.add(walker.next().getValue());
+        }
+    }
+    
+    /**
+     * Find the files under a directory that rank highest by size or last modified time.
+     * The walk is recursive and keeps only the current winners in a bounded min-heap, so memory
+     * is proportional to the limit rather than to the tree; metadata is built for the winners only.
+     * Filters and budgets of the options apply as for a listing, while paging options are ignored.
+     * 
+     * @param directoryPath The path to the directory
+     * @param limit The number of files to return
+     * @param sortKey The attribute to rank by
+     * @param options The filter, budget and field options
+     * @return The winners ranked from highest to lowest, truncated if a budget stopped the walk
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If a filter pattern is invalid
+     */
+    public FileListingPage topFiles(String directoryPath, int limit, FileSortKey sortKey, ListingOptions options)
+            throws IOException {
+        logger.debug("Finding top {} files by {} in directory: {}", limit, sortKey, directoryPath);
         
-        List<FileMetadata> files = new ArrayList<>();
+        Path path = validateDirectory(directoryPath);
+        WalkFilter filter = WalkFilter.of(options);
+        PriorityQueue<RankedFile> heap = new PriorityQueue<>(limit + 1, RankedFile.ORDER);
+        boolean truncated;
+        try (DirectoryWalker<Void> walker = new DirectoryWalker<>(path, true, null, filter,
+                (entry, stat) -> null, walkPool, false, listingCache, options.isFollowLinks())) {
+            walker.setLimits(options.getMaxEntries(), options.getTimeoutMs());
+            while (walker.hasNext()) {
+                DirectoryWalker.Entry<Void> entry = walker.next();
+                long key = sortKey.keyOf(entry.getAttributes());
+                if (heap.size() < limit) {
+                    heap.add(new RankedFile(key, entry.getPath(), entry.getAttributes()));
+                } else if (RankedFile.outranks(key, entry.getPath(), heap.peek())) {
+                    heap.poll();
+                    heap.add(new RankedFile(key, entry.getPath(), entry.getAttributes()));
+                }
+            }
+            truncated = walker.isTruncated();
+        }
         
-        try (Stream<Path> stream = recursive ? Files.walk(path) : Files.list(path)) {
-            files = stream
-                .map(p -> {
-                    try {
-                        return getFileMetadata(p.toString());
-                    } catch (IOException e) {
-                        logger.warn("Failed to get metadata for file: {}", p, e);
-                        return null;
-                    }
-                })
-                .filter(metadata -> metadata != null)
-                .collect(Collectors.toList());
+        List<RankedFile> winners = new ArrayList<>(heap);
+        winners.sort(RankedFile.ORDER.reversed());
+        Set<MetadataField> fields = options.getFields();
+        boolean readAccessMode = MetadataField.anyNeedsAccessMode(fields);
+        List<FileMetadata> files = new ArrayList<>(winners.size());
+        for (RankedFile winner : winners) {
+            FileStat stat = winner.stat;
+            if (readAccessMode) {
+                try {
+                    stat = FileStat.read(winner.path, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    logger.debug("File changed while ranking, keeping its ranked attributes: {}", winner.path);
+                }
+            }
+            files.add(toFileMetadata(winner.path, stat, fields));
         }
         
-        logger.debug("Listed {} files in directory: {}", files.size(), directoryPath);
-        return files;
+        logger.debug("Found {} top files in directory: {}, truncated: {}", files.size(), directoryPath, truncated);
+        return new FileListingPage(files, null, truncated);
     }
     
     /**
-     * Read the content of a text file.
+     * Compute the disk usage of a directory tree, rolled up per subdirectory down to the given depth.
+     * Entries are listed and stat'ed on the walk pool, and sizes are folded into primitive counters
+     * on a stack holding only the reported ancestors of the current entry, so no per-entry objects
+     * are kept. Symbolic links are counted but not followed.
+     * <p>
+     * The allocated size is the apparent size rounded up to the block size of the directory's file
+     * store, since the number of allocated blocks is not exposed; sparse and compressed files are
+     * therefore overestimated.
      * 
-     * @param filePath The path to the file
-     * @return The file content as a string
+     * @param directoryPath The path to the directory
+     * @param depth The deepest level of subdirectories that get their own rollup, 0 for the directory only
+     * @param options The exclude patterns and budgets of the walk; other filters are ignored
+     * @return The rollup tree, truncated if a budget stopped the walk
      * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If an exclude pattern is invalid
      */
-    public String readTextFile(String filePath) throws IOException {
-        logger.debug("Reading text file: {}", filePath);
+    public DiskUsageReport diskUsage(String directoryPath, int depth, ListingOptions options) throws IOException {
+        logger.debug("Computing disk usage of directory: {}, depth: {}", directoryPath, depth);
         
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            logger.warn("File does not exist: {}", filePath);
-            throw new IOException("File does not exist: " + filePath);
+        Path path = validateDirectory(directoryPath);
+        long blockSize = Math.max(1, Files.getFileStore(path).getBlockSize());
+        // Only exclusions apply, since every directory has to be seen to roll up its entries
+        WalkFilter filter = new WalkFilter(Integer.MAX_VALUE, List.of(), options.getExclude(), null);
+        
+        // The rollup at position i of the stack is the ancestor at depth i of the current entry
+        Deque<DiskUsage> ancestors = new ArrayDeque<>();
+        DiskUsage root = new DiskUsage(path.toString());
+        ancestors.push(root);
+        boolean truncated;
+        try (DirectoryWalker<Void> walker = new DirectoryWalker<>(path, true, null, filter,
+                (entry, stat) -> null, walkPool, false, listingCache)) {
+            walker.setLimits(options.getMaxEntries(), options.getTimeoutMs());
+            while (walker.hasNext()) {
+                DirectoryWalker.Entry<Void> entry = walker.next();
+                FileStat attrs = entry.getAttributes();
+                int entryDepth = entry.getDepth();
+                while (ancestors.size() > entryDepth && entryDepth > 0) {
+                    DiskUsage completed = ancestors.pop();
+                    ancestors.peek().addChild(completed);
+                }
+                if (attrs.isDirectory() && entryDepth > 0 && entryDepth <= depth) {
+                    ancestors.push(new DiskUsage(entry.getPath().toString()));
+                }
+                long allocated = attrs.isSymbolicLink() ? 0 : (attrs.size() + blockSize - 1) / blockSize * blockSize;
+                ancestors.peek().addEntry(attrs.size(), allocated, attrs.isDirectory());
+            }
+            truncated = walker.isTruncated();
+        }
+        while (ancestors.size() > 1) {
+            DiskUsage completed = ancestors.pop();
+            ancestors.peek().addChild(completed);
         }
         
-        if (!Files.isRegularFile(path)) {
-            logger.warn("Not a regular file: {}", filePath);
-            throw new IOException("Not a regular file: " + filePath);
+        logger.debug("Disk usage of {}: {} bytes in {} files, truncated: {}",
+                directoryPath, root.getApparentSize(), root.getFileCount(), truncated);
+        return new DiskUsageReport(root, blockSize, truncated);
+    }
+    
+    /**
+     * Find the lines of the files under a directory that match a search, with the lines around them.
+     * The walk is recursive and files are searched on the walk pool, a bounded window of files ahead of the
+     * walk, while their matches are collected in walk order, so the result is the same at any parallelism.
+     * Binary files and files that cannot be read are skipped. Filters and budgets of the options apply as for
+     * a listing, while paging options are ignored.
+     * 
+     * @param directoryPath The path to the directory
+     * @param searcher The literal or regular expression to find
+     * @param context The number of lines to return before and after each matching line
+     * @param maxResults The number of matching lines to return
+     * @param options The filter and budget options
+     * @return The matching lines, truncated if there were more than the maximum, a budget stopped the walk or
+     *         files were still being searched at the deadline
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If a filter pattern is invalid
+     */
+    public SearchResult searchContent(String directoryPath, ContentSearcher searcher, int context, int maxResults,
+            ListingOptions options) throws IOException {
+        logger.debug("Searching content of files in directory: {}, max results: {}", directoryPath, maxResults);
+        
+        Path path = validateDirectory(directoryPath);
+        WalkFilter filter = WalkFilter.of(options);
+        // One more than the maximum tells whether the result is complete
+        int wanted = maxResults + 1;
+        int window = walkPool == null ? 0 : walkPool.getParallelism() * 2;
+        Deque<Future<List<SearchMatch>>> pending = new ArrayDeque<>();
+        List<SearchMatch> matches = new ArrayList<>();
+        int filesSearched = 0;
+        boolean truncated = false;
+        try (DirectoryWalker<Void> walker = new DirectoryWalker<>(path, true, null, filter,
+                (entry, stat) -> null, walkPool, false, listingCache, options.isFollowLinks())) {
+            walker.setLimits(options.getMaxEntries(), options.getTimeoutMs());
+            // Waiting for searches stops at the deadline of the walk, so one slow file cannot hold the call
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeoutMs());
+            while (matches.size() < wanted && !truncated && walker.hasNext()) {
+                DirectoryWalker.Entry<Void> entry = walker.next();
+                if (!entry.getAttributes().isRegularFile()) {
+                    continue;
+                }
+                Path file = entry.getPath();
+                filesSearched++;
+                if (walkPool == null) {
+                    matches.addAll(searchFile(searcher, file, context, wanted - matches.size()));
+                    continue;
+                }
+                pending.add(walkPool.submit(() -> searchFile(searcher, file, context, wanted)));
+                if (pending.size() >= window) {
+                    truncated = !awaitInto(pending.poll(), matches, deadline);
+                }
+            }
+            while (matches.size() < wanted && !truncated && !pending.isEmpty()) {
+                truncated = !awaitInto(pending.poll(), matches, deadline);
+            }
+            truncated |= walker.isTruncated();
+        } finally {
+            for (Future<List<SearchMatch>> task : pending) {
+                task.cancel(true);
+            }
+        }
+        if (matches.size() > maxResults) {
+            matches.subList(maxResults, matches.size()).clear();
+            truncated = true;
         }
         
-        if (!Files.isReadable(path)) {
-            logger.warn("File is not readable: {}", filePath);
-            throw new IOException("File is not readable: " + filePath);
+        logger.debug("Found {} matches in {} files in directory: {}, truncated: {}",
+                matches.size(), filesSearched, directoryPath, truncated);
+        return new SearchResult(matches, filesSearched, truncated);
+    }
+    
+    private static List<SearchMatch> searchFile(ContentSearcher searcher, Path file, int context, int maxMatches) {
+        try {
+            return searcher.search(file, context, maxMatches);
+        } catch (IOException e) {
+            logger.debug("Skipping file that cannot be searched: {}: {}", file, e.getMessage());
+            return List.of();
+        } catch (RuntimeException | StackOverflowError e) {
+            // A pathological regular expression must not fail the whole search
+            logger.warn("Skipping file whose search failed: {}: {}", file, e.toString());
+            return List.of();
         }
+    }
+    
+    /**
+     * Wait for the search of one file, no longer than the deadline, and add its matches.
+     * 
+     * @param task The search task
+     * @param matches The list to add the matches to
+     * @param deadline The {@link System#nanoTime()} at which the call stops waiting
+     * @return True if the matches were added, false if the deadline passed first
+     * @throws IOException If the wait was interrupted
+     */
+    private static boolean awaitInto(Future<List<SearchMatch>> task, List<SearchMatch> matches, long deadline)
+            throws IOException {
+        try {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            matches.addAll(task.get(Math.max(0, remaining), TimeUnit.MILLISECONDS));
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Content search was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search of a file failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Read the content of a file, as text if it is valid UTF-8 without NUL bytes and as base64-encoded
+     * bytes otherwise.
+     * The file is checked with one stat call and opened once for sniffing and reading, and large files are
+     * read from a memory mapping.
+     * Content longer than the maximum response size is truncated, and the result tells where to continue.
+     * 
+     * @param filePath The path to the file
+     * @param range The range of bytes to read, or null for the whole file
+     * @return The content
+     * @throws IOException If an I/O error occurs
+     */
+    public FileContent readFile(String filePath, ByteRange range) throws IOException {
+        logger.debug("Reading {} of file: {}", range == null ? "all" : range, filePath);
+        return contentReader.read(Paths.get(filePath), range);
+    }
+    
+    /**
+     * Read a range of lines of a text file, truncated if it is longer than the maximum response size.
+     * 
+     * @param filePath The path to the file
+     * @param lines The range of lines to read
+     * @return The lines, each with its terminating newline
+     * @throws IOException If an I/O error occurs or the file is not a text file
+     */
+    public FileContent readFile(String filePath, LineRange lines) throws IOException {
+        logger.debug("Reading lines {} of file: {}", lines, filePath);
+        return contentReader.read(Paths.get(filePath), lines);
+    }
+    
+    /**
+     * Read the content of a text file.
+     * 
+     * @param filePath The path to the file
+     * @return The file content as a string
+     * @throws IOException If an I/O error occurs
+     */
+    public String readTextFile(String filePath) throws IOException {
+        logger.debug("Reading text file: {}", filePath);
         
-        String content = Files.readString(path, StandardCharsets.UTF_8);
+        String content = contentReader.readText(Paths.get(filePath), (ByteRange) null);
         logger.debug("File read successfully: {}", filePath);
         return content;
     }
@@ -179,28 +692,80 @@ public class FileSystemUtils {
     public String readBinaryFile(String filePath) throws IOException {
         logger.debug("Reading binary file: {}", filePath);
         
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            logger.warn("File does not exist: {}", filePath);
-            throw new IOException("File does not exist: " + filePath);
-        }
-        
-        if (!Files.isRegularFile(path)) {
-            logger.warn("Not a regular file: {}", filePath);
-            throw new IOException("Not a regular file: " + filePath);
-        }
-        
-        if (!Files.isReadable(path)) {
-            logger.warn("File is not readable: {}", filePath);
-            throw new IOException("File is not readable: " + filePath);
-        }
-        
-        byte[] bytes = Files.readAllBytes(path);
-        String base64 = Base64.getEncoder().encodeToString(bytes);
+        String base64 = contentReader.readBinary(Paths.get(filePath), null);
         logger.debug("File read and encoded successfully: {}", filePath);
         return base64;
     }
     
+    /**
+     * Read a range of a text file.
+     * Bytes of a character split by the range boundaries are decoded as replacement characters.
+     * 
+     * @param filePath The path to the file
+     * @param range The range of bytes to read
+     * @return The content of the range as a string
+     * @throws IOException If an I/O error occurs
+     */
+    public String readTextFile(String filePath, ByteRange range) throws IOException {
+        logger.debug("Reading range {} of text file: {}", range, filePath);
+        return contentReader.readText(Paths.get(filePath), range);
+    }
+    
+    /**
+     * Read a range of lines of a text file.
+     * The byte offset of every line comes from a line index built in one scan of the file and cached
+     * while the file is unchanged, so later reads of the same file only read the requested lines.
+     * 
+     * @param filePath The path to the file
+     * @param lines The range of lines to read
+     * @return The lines, each with its terminating newline
+     * @throws IOException If an I/O error occurs
+     */
+    public String readTextFile(String filePath, LineRange lines) throws IOException {
+        logger.debug("Reading lines {} of text file: {}", lines, filePath);
+        return contentReader.readText(Paths.get(filePath), lines);
+    }
+    
+    /**
+     * Read a range of a binary file and encode it as base64.
+     * 
+     * @param filePath The path to the file
+     * @param range The range of bytes to read
+     * @return The content of the range as a base64-encoded string
+     * @throws IOException If an I/O error occurs
+     */
+    public String readBinaryFile(String filePath, ByteRange range) throws IOException {
+        logger.debug("Reading range {} of binary file: {}", range, filePath);
+        return contentReader.readBinary(Paths.get(filePath), range);
+    }
+    
+    /**
+     * Read the last lines of a text file by scanning backward from its end.
+     * 
+     * @param filePath The path to the file
+     * @param lines The number of lines to read
+     * @return The lines, and a token to follow the file from its current end
+     * @throws IOException If an I/O error occurs or the file is not a text file
+     */
+    public FileTail tailFile(String filePath, int lines) throws IOException {
+        logger.debug("Tailing {} lines of file: {}", lines, filePath);
+        return contentReader.tail(Paths.get(filePath), lines);
+    }
+    
+    /**
+     * Read the text appended to a file since a tail token, starting again from the beginning of the file
+     * if it was rotated or truncated.
+     * 
+     * @param filePath The path to the file
+     * @param token The token returned by the previous call
+     * @return The appended text, and the token for the next call
+     * @throws IOException If an I/O error occurs
+     */
+    public FileTail followFile(String filePath, String token) throws IOException {
+        logger.debug("Following file: {}", filePath);
+        return contentReader.follow(Paths.get(filePath), token);
+    }
+    
     /**
      * Determine if a file is a text file based on its content.
      * This is a simple heuristic and may not be accurate for all files.
@@ -212,41 +777,9 @@ public class FileSystemUtils {
     public boolean isTextFile(String filePath) throws IOException {
         logger.debug("Checking if file is a text file: {}", filePath);
         
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            logger.warn("File does not exist: {}", filePath);
-            throw new IOException("File does not exist: " + filePath);
-        }
-        
-        if (!Files.isRegularFile(path)) {
-            logger.warn("Not a regular file: {}", filePath);
-            throw new IOException("Not a regular file: " + filePath);
-        }
-        
-        if (!Files.isReadable(path)) {
-            logger.warn("File is not readable: {}", filePath);
-            throw new IOException("File is not readable: " + filePath);
-        }
-        
-        // Read the first 8KB of the file to determine if it's text
-        byte[] bytes = new byte[8192];
-        int bytesRead = Files.newInputStream(path).read(bytes);
-        
-        if (bytesRead <= 0) {
-            // Empty file, consider it text
-            return true;
-        }
-        
-        // Check for null bytes, which are uncommon in text files
-        for (int i = 0; i < bytesRead; i++) {
-            if (bytes[i] == 0) {
-                logger.debug("File contains null bytes, likely binary: {}", filePath);
-                return false;
-            }
-        }
-        
-        logger.debug("File appears to be a text file: {}", filePath);
-        return true;
+        boolean text = contentReader.isText(Paths.get(filePath));
+        logger.debug("File appears to be a {} file: {}", text ? "text" : "binary", filePath);
+        return text;
     }
     
     /**
@@ -272,4 +805,56 @@ public class FileSystemUtils {
         logger.debug("Extracted path from URI: {} -> {}", uri, path);
         return path;
     }
+    
+    /**
+     * Extract the query parameters from a URI.
+     * 
+     * @param uri The URI
+     * @return The decoded query parameters, empty if the URI has none
+     */
+    public Map<String, String> extractQueryParameters(String uri) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        int queryStart = uri == null ? -1 : uri.indexOf('?');
+        if (queryStart < 0) {
+            return parameters;
+        }
+        
+        for (String pair : uri.substring(queryStart + 1).split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        
+        logger.debug("Extracted query parameters from URI: {} -> {}", uri, parameters);
+        return parameters;
+    }
+    
+    /**
+     * A file competing for a place in a top files result.
+     */
+    private static final class RankedFile {
+        /**
+         * Orders files from lowest to highest rank; equal keys rank the smaller path higher.
+         */
+        static final Comparator<RankedFile> ORDER = Comparator.<RankedFile>comparingLong(f -> f.key)
+                .thenComparing(f -> f.path, Comparator.reverseOrder());
+        
+        private final long key;
+        private final Path path;
+        private final FileStat stat;
+        
+        RankedFile(long key, Path path, FileStat stat) {
+            this.key = key;
+            this.path = path;
+            this.stat = stat;
+        }
+        
+        static boolean outranks(long key, Path path, RankedFile other) {
+            return key > other.key || (key == other.key && path.compareTo(other.path) < 0);
+        }
+    }
 }
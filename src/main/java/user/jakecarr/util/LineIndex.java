@@ -0,0 +1,214 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.LineRange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A sparse index of the lines of a file, built in a single scan of the file that looks for newlines eight
+ * bytes at a time.
+ * <p>
+ * The index keeps the byte offset of every {@link #STRIDE}th line only, so it stays small enough to cache for
+ * multi-gigabyte logs; the offset of any other line is found by scanning forward from the nearest preceding
+ * checkpoint, at most one stride of lines.
+ * A line ends after its {@code \n}; a final newline does not start another line, so a file ending in
+ * a newline has as many lines as newlines, and an empty file has none.
+ */
+public final class LineIndex {
+    /**
+     * The number of lines between two indexed offsets.
+     */
+    public static final int STRIDE = 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final long[] checkpoints;
+    private final long lineCount;
+    private final long size;
+
+    private LineIndex(long[] checkpoints, long lineCount, long size) {
+        this.checkpoints = checkpoints;
+        this.lineCount = lineCount;
+        this.size = size;
+    }
+
+    /**
+     * Build the index of a file by scanning it from the start.
+     * Only bytes up to the given size are scanned, so the index matches the size it was validated against
+     * even if the file grows meanwhile.
+     *
+     * @param channel The open file
+     * @param size The number of bytes to index
+     * @return The index
+     * @throws IOException If the file cannot be read
+     */
+    public static LineIndex build(FileChannel channel, long size) throws IOException {
+        Builder builder = new Builder(size);
+        long scanned = scan(channel, 0, size, ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE), builder);
+        return builder.build(Math.min(scanned, size));
+    }
+
+    /**
+     * Get the number of lines.
+     *
+     * @return The line count
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the number of bytes the index covers.
+     *
+     * @return The size of the file when it was indexed
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the offset of the first byte of a range of lines.
+     *
+     * @param channel The open file the index was built from
+     * @param range The range of lines
+     * @return The offset, the size of the file if the range starts after the last line
+     * @throws IOException If the file cannot be read
+     */
+    public long getStart(FileChannel channel, LineRange range) throws IOException {
+        return offsetOfLine(channel, range.getStartLine());
+    }
+
+    /**
+     * Get the offset after the last byte of a range of lines, including its final newline.
+     *
+     * @param channel The open file the index was built from
+     * @param range The range of lines
+     * @return The exclusive end offset, at most the size of the file
+     * @throws IOException If the file cannot be read
+     */
+    public long getEnd(FileChannel channel, LineRange range) throws IOException {
+        return range.getEndLine() < 0 ? size : offsetOfLine(channel, range.getEndLine() + 1);
+    }
+
+    /**
+     * Get the number of longs held by the index, used to weigh it in a cache.
+     *
+     * @return The weight
+     */
+    long weight() {
+        return checkpoints.length + 1L;
+    }
+
+    private long offsetOfLine(FileChannel channel, long line) throws IOException {
+        if (line > lineCount) {
+            return size;
+        }
+        long checkpoint = checkpoints[(int) ((line - 1) / STRIDE)];
+        long[] remaining = { (line - 1) % STRIDE };
+        if (remaining[0] == 0) {
+            return checkpoint;
+        }
+        long[] offset = { size };
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SCAN_BUFFER_SIZE, size - checkpoint + Long.BYTES));
+        scan(channel, checkpoint, size, buffer, next -> {
+            if (--remaining[0] > 0) {
+                return true;
+            }
+            offset[0] = next;
+            return false;
+        });
+        return offset[0];
+    }
+
+    /**
+     * Scan part of a file for newlines, reporting the offset after each one that is not the last byte.
+     *
+     * @param channel The open file
+     * @param position The offset to start at
+     * @param size The offset to stop at
+     * @param buffer The buffer to read into
+     * @param visitor The visitor of line starts, which stops the scan by returning false
+     * @return The offset the scan reached
+     * @throws IOException If the file cannot be read
+     */
+    private static long scan(FileChannel channel, long position, long size, ByteBuffer buffer, LineVisitor visitor)
+            throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (position < size) {
+            buffer.clear();
+            if (size - position < buffer.capacity()) {
+                buffer.limit((int) (size - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            int i = 0;
+            for (; i + Long.BYTES <= read; i += Long.BYTES) {
+                // Find the newlines among eight bytes at once, lowest address first
+                long newlines = TextClassifier.matches(buffer.getLong(i), TextClassifier.NEWLINES);
+                while (newlines != 0) {
+                    long next = position + i + (Long.numberOfTrailingZeros(newlines) >>> 3) + 1;
+                    if (next < size && !visitor.visit(next)) {
+                        return next;
+                    }
+                    newlines &= newlines - 1;
+                }
+            }
+            for (; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    long next = position + i + 1;
+                    if (next < size && !visitor.visit(next)) {
+                        return next;
+                    }
+                }
+            }
+            position += read;
+        }
+        return position;
+    }
+
+    /**
+     * Receives the offset at which each line after the first starts.
+     */
+    private interface LineVisitor {
+        boolean visit(long lineStart) throws IOException;
+    }
+
+    /**
+     * Counts lines and keeps the offset of every {@link #STRIDE}th line.
+     */
+    private static final class Builder implements LineVisitor {
+        private long[] checkpoints;
+        private int count;
+        private long lines;
+
+        Builder(long size) {
+            checkpoints = new long[size == 0 ? 0 : 16];
+            if (size > 0) {
+                checkpoints[count++] = 0;
+                lines = 1;
+            }
+        }
+
+        @Override
+        public boolean visit(long lineStart) {
+            if (lines++ % STRIDE == 0) {
+                if (count == checkpoints.length) {
+                    checkpoints = Arrays.copyOf(checkpoints, count * 2);
+                }
+                checkpoints[count++] = lineStart;
+            }
+            return true;
+        }
+
+        LineIndex build(long size) {
+            return new LineIndex(count == checkpoints.length ? checkpoints : Arrays.copyOf(checkpoints, count),
+                    lines, size);
+        }
+    }
+}
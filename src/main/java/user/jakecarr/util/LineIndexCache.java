@@ -0,0 +1,123 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of the line indexes of text files.
+ * <p>
+ * An index is served only while the file has the same file key, size and modification time as when it
+ * was built, so a file that is replaced, truncated or appended to is indexed again. The cache is weighted
+ * by the number of line offsets held, one per {@link LineIndex#STRIDE} lines, and evicts the least recently
+ * used files first.
+ */
+public class LineIndexCache {
+    private static final Logger logger = LogManager.getLogger(LineIndexCache.class);
+
+    private final long maxLines;
+    private final LinkedHashMap<Path, CachedIndex> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxLines The maximum number of line offsets held across all cached files
+     */
+    public LineIndexCache(long maxLines) {
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Get the cached line index of a file if it is still valid.
+     *
+     * @param path The path to the file
+     * @param stat The current attributes of the file
+     * @return The index, or null if it is not cached or no longer valid
+     */
+    public synchronized LineIndex get(Path path, FileStat stat) {
+        CachedIndex cached = files.get(path);
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        if (!cached.matches(stat)) {
+            files.remove(path);
+            weight -= cached.index.weight();
+            misses++;
+            return null;
+        }
+        hits++;
+        return cached.index;
+    }
+
+    /**
+     * Store the line index of a file.
+     *
+     * @param path The path to the file
+     * @param stat The attributes of the file the index was built from
+     * @param index The index
+     */
+    public synchronized void put(Path path, FileStat stat, LineIndex index) {
+        if (index.weight() > maxLines) {
+            return;
+        }
+        CachedIndex previous = files.put(path, new CachedIndex(stat, index));
+        weight += index.weight() - (previous == null ? 0 : previous.index.weight());
+        Iterator<Map.Entry<Path, CachedIndex>> iterator = files.entrySet().iterator();
+        while (weight > maxLines && iterator.hasNext()) {
+            Map.Entry<Path, CachedIndex> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().index.weight();
+            logger.trace("Evicted line index: {}", eldest.getKey());
+        }
+    }
+
+    /**
+     * Get the number of lookups served from the cache.
+     *
+     * @return The hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to scan the file.
+     *
+     * @return The miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * A line index and the attributes of the file it was built from.
+     */
+    private static final class CachedIndex {
+        private final Object fileKey;
+        private final long size;
+        private final FileTime modifiedTime;
+        private final LineIndex index;
+
+        CachedIndex(FileStat stat, LineIndex index) {
+            this.fileKey = stat.fileKey();
+            this.size = stat.size();
+            this.modifiedTime = stat.lastModifiedTime();
+            this.index = index;
+        }
+
+        boolean matches(FileStat stat) {
+            return size == stat.size() && Objects.equals(fileKey, stat.fileKey())
+                    && Objects.equals(modifiedTime, stat.lastModifiedTime());
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of directory listings, holding the sorted children of a directory and their attributes.
+ * <p>
+ * A cached listing is served only while the directory's modification time is unchanged, which catches
+ * children being added, removed or renamed. Changes to the children themselves do not touch the
+ * directory, so every cached directory is also registered with a {@link DirectoryWatcher} and its
+ * listing is dropped on any event. Directories are registered before they are read, and a listing is
+ * only stored if no event arrived for its directory since then, so a change racing with a walk cannot
+ * leave a stale listing behind.
+ * <p>
+ * The cache is weighted by the number of cached children and by the number of watched directories,
+ * and evicts the least recently used directories first. Directories that are not cached are looked
+ * up in the {@link MetadataIndexer}, if there is one, before they have to be read.
+ */
+public class ListingCache implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ListingCache.class);
+
+    private final long maxEntries;
+    private final int maxDirectories;
+    private final DirectoryWatcher watcher;
+    private final MetadataIndexer indexer;
+    private final LinkedHashMap<Path, CachedDirectory> directories = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long stamp;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxEntries The maximum number of children held across all cached listings
+     * @param maxDirectories The maximum number of directories watched for changes
+     * @throws IOException If the watch service cannot be created
+     */
+    public ListingCache(long maxEntries, int maxDirectories) throws IOException {
+        this(maxEntries, maxDirectories, null);
+    }
+
+    /**
+     * Create a cache backed by a metadata index.
+     *
+     * @param maxEntries The maximum number of children held across all cached listings, 0 to only
+     *                   serve listings from the index
+     * @param maxDirectories The maximum number of directories watched for changes
+     * @param indexer The index consulted for directories that are not cached, or null for none
+     * @throws IOException If the watch service cannot be created
+     */
+    public ListingCache(long maxEntries, int maxDirectories, MetadataIndexer indexer) throws IOException {
+        this.maxEntries = maxEntries;
+        this.maxDirectories = maxDirectories;
+        this.watcher = maxEntries > 0 && maxDirectories > 0 ? new DirectoryWatcher(this::invalidate) : null;
+        this.indexer = indexer;
+    }
+
+    /**
+     * Get the cached listing of a directory if it is still valid.
+     *
+     * @param directory The directory
+     * @param needsAccessMode Whether the attributes must carry the permission mode
+     * @return The listing, or null if it is not cached or no longer valid
+     */
+    public Snapshot get(Path directory, boolean needsAccessMode) {
+        Snapshot snapshot;
+        synchronized (this) {
+            CachedDirectory cached = directories.get(directory);
+            snapshot = cached == null ? null : cached.snapshot;
+        }
+        if (snapshot == null || (needsAccessMode && !snapshot.hasAccessMode)) {
+            return getIndexed(directory, needsAccessMode);
+        }
+
+        FileTime modifiedTime;
+        try {
+            modifiedTime = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            modifiedTime = null;
+        }
+        synchronized (this) {
+            if (!snapshot.modifiedTime.equals(modifiedTime)) {
+                CachedDirectory cached = directories.get(directory);
+                if (cached != null && cached.snapshot == snapshot) {
+                    drop(cached);
+                }
+                misses++;
+                return null;
+            }
+            hits++;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Get the listing of a directory from the metadata index.
+     *
+     * @param directory The directory
+     * @param needsAccessMode Whether the attributes must carry the permission mode
+     * @return The listing, or null if the index cannot serve it
+     */
+    private Snapshot getIndexed(Path directory, boolean needsAccessMode) {
+        Snapshot snapshot = indexer == null ? null : indexer.getListing(directory, needsAccessMode);
+        synchronized (this) {
+            if (snapshot == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Start loading the listing of a directory, watching it from now on, or again if its watch was
+     * dropped because the directory was deleted or recreated.
+     *
+     * @param directory The directory
+     * @return The stamp to pass to {@link #put}, or -1 if the directory cannot be cached
+     */
+    public long beginLoad(Path directory) {
+        if (watcher == null) {
+            return -1;
+        }
+        long loadStamp;
+        synchronized (this) {
+            loadStamp = stamp;
+            if (!directories.containsKey(directory)) {
+                // Track the directory before watching it so that no event can be missed
+                directories.put(directory, new CachedDirectory());
+                evict(directory);
+            } else if (watcher.isWatched(directory)) {
+                return loadStamp;
+            }
+            // A tracked directory that was deleted or recreated lost its watch and is watched again
+        }
+        if (!watcher.watch(directory)) {
+            synchronized (this) {
+                directories.remove(directory);
+            }
+            return -1;
+        }
+        return loadStamp;
+    }
+
+    /**
+     * Store a fully loaded listing, unless its directory changed since the load began.
+     *
+     * @param directory The directory
+     * @param loadStamp The stamp returned by {@link #beginLoad}
+     * @param snapshot The listing
+     */
+    public synchronized void put(Path directory, long loadStamp, Snapshot snapshot) {
+        CachedDirectory cached = directories.get(directory);
+        if (cached == null || cached.changedAt > loadStamp || snapshot.weight() > maxEntries) {
+            return;
+        }
+        weight += snapshot.weight() - (cached.snapshot == null ? 0 : cached.snapshot.weight());
+        cached.snapshot = snapshot;
+        evict(directory);
+    }
+
+    /**
+     * Drop the cached listing of a directory because it changed.
+     *
+     * @param directory The directory
+     */
+    public synchronized void invalidate(Path directory) {
+        CachedDirectory cached = directories.get(directory);
+        if (cached != null) {
+            cached.changedAt = ++stamp;
+            if (cached.snapshot != null) {
+                weight -= cached.snapshot.weight();
+                cached.snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Get the number of lookups served from the cache.
+     *
+     * @return The hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to read the directory.
+     *
+     * @return The miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Stop watching all directories and drop all listings.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        directories.clear();
+        weight = 0;
+    }
+
+    /**
+     * Evict the least recently used directories until the cache is within its bounds.
+     *
+     * @param keep The directory that was just used and is never evicted
+     */
+    private void evict(Path keep) {
+        Iterator<Map.Entry<Path, CachedDirectory>> iterator = directories.entrySet().iterator();
+        while ((weight > maxEntries || directories.size() > maxDirectories) && iterator.hasNext()) {
+            Map.Entry<Path, CachedDirectory> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            if (eldest.getValue().snapshot != null) {
+                weight -= eldest.getValue().snapshot.weight();
+            }
+            watcher.unwatch(eldest.getKey());
+            logger.trace("Evicted directory listing: {}", eldest.getKey());
+        }
+    }
+
+    /**
+     * Remove a directory that no longer matches its listing.
+     *
+     * @param cached The cached directory
+     */
+    private void drop(CachedDirectory cached) {
+        weight -= cached.snapshot.weight();
+        cached.snapshot = null;
+    }
+
+    /**
+     * A watched directory and its listing, if one is cached.
+     */
+    private static final class CachedDirectory {
+        private Snapshot snapshot;
+        private long changedAt;
+    }
+
+    /**
+     * The sorted children of a directory and their attributes, as read at one point in time.
+     */
+    public static final class Snapshot {
+        private final List<Path> children;
+        private final FileStat[] attributes;
+        private final FileTime modifiedTime;
+        private final boolean hasAccessMode;
+
+        /**
+         * Create a listing snapshot.
+         *
+         * @param children The children of the directory, sorted by name
+         * @param attributes The attributes of each child, null for children that could not be read
+         * @param modifiedTime The modification time of the directory, read before the directory was listed
+         * @param hasAccessMode Whether the attributes carry the permission mode
+         */
+        public Snapshot(List<Path> children, FileStat[] attributes, FileTime modifiedTime, boolean hasAccessMode) {
+            this.children = children;
+            this.attributes = attributes;
+            this.modifiedTime = modifiedTime;
+            this.hasAccessMode = hasAccessMode;
+        }
+
+        /**
+         * Get the children of the directory, sorted by name.
+         *
+         * @return The children
+         */
+        public List<Path> getChildren() {
+            return children;
+        }
+
+        /**
+         * Get the attributes of the child at an index.
+         *
+         * @param index The index of the child
+         * @return The attributes, or null if the child could not be read
+         */
+        public FileStat getAttributes(int index) {
+            return attributes[index];
+        }
+
+        private long weight() {
+            return children.size() + 1L;
+        }
+    }
+}
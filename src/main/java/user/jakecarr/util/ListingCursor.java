@@ -0,0 +1,145 @@
+package user.jakecarr.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used by paginated directory listings.
+ * A cursor records the position of the last visited entry as its path relative to the
+ * listing root, so a walk can resume right after it without replaying earlier pages, and
+ * whether the walk descended into that entry when it is a followed symbolic link.
+ */
+public final class ListingCursor {
+    private static final String VERSION = "v1";
+    private static final char SEPARATOR = '\n';
+    private static final char FOLLOWED = '+';
+
+    private ListingCursor() {
+    }
+
+    /**
+     * Encode the position of an entry as a cursor.
+     *
+     * @param root The listing root
+     * @param position The last visited path, either the root itself or a descendant of it
+     * @return The opaque cursor
+     */
+    public static String encode(Path root, Path position) {
+        return encode(root, position, false);
+    }
+
+    /**
+     * Encode the position of an entry as a cursor, with whether the walk descended into it.
+     *
+     * @param root The listing root
+     * @param position The last visited path, either the root itself or a descendant of it
+     * @param followed Whether the position is a symbolic link the walk descended into
+     * @return The opaque cursor
+     */
+    public static String encode(Path root, Path position, boolean followed) {
+        StringBuilder relative = new StringBuilder();
+        for (Path name : root.relativize(position)) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            if (relative.length() > 0) {
+                relative.append('/');
+            }
+            relative.append(name);
+        }
+        // The fingerprint is hex, so the flag after it cannot be mistaken for part of it
+        String payload = VERSION + SEPARATOR + fingerprint(root) + (followed ? String.valueOf(FOLLOWED) : "")
+                + SEPARATOR + relative;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into the name components of the last visited entry.
+     *
+     * @param root The listing root the cursor must belong to
+     * @param cursor The opaque cursor
+     * @return The path components relative to the root; empty if the root itself was the last entry
+     * @throws IllegalArgumentException If the cursor is malformed or was issued for another root
+     */
+    public static List<String> decode(Path root, String cursor) {
+        String payload = payload(cursor);
+        int first = payload.indexOf(SEPARATOR);
+        int second = payload.indexOf(SEPARATOR, first + 1);
+        String fingerprint = payload.substring(first + 1, second);
+        if (!fingerprint(root).equals(stripFollowed(fingerprint))) {
+            throw new IllegalArgumentException("Cursor does not belong to directory: " + root);
+        }
+
+        List<String> components = new ArrayList<>();
+        String relative = payload.substring(second + 1);
+        if (!relative.isEmpty()) {
+            for (String name : relative.split("/")) {
+                if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+                }
+                components.add(name);
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Check if a cursor was issued at a symbolic link the walk descended into.
+     *
+     * @param cursor The opaque cursor
+     * @return True if the walk followed the link at the cursor position, false otherwise
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public static boolean isFollowed(String cursor) {
+        String payload = payload(cursor);
+        int second = payload.indexOf(SEPARATOR, payload.indexOf(SEPARATOR) + 1);
+        return payload.charAt(second - 1) == FOLLOWED;
+    }
+
+    /**
+     * Decode the payload of a cursor and check its header.
+     *
+     * @param cursor The opaque cursor
+     * @return The payload, holding at least the version and fingerprint lines
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    private static String payload(String cursor) {
+        String payload;
+        try {
+            payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        int first = payload.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : payload.indexOf(SEPARATOR, first + 1);
+        if (second < 0 || !VERSION.equals(payload.substring(0, first))) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return payload;
+    }
+
+    /**
+     * Remove the followed flag from a fingerprint line.
+     *
+     * @param fingerprint The fingerprint line of a cursor
+     * @return The fingerprint without the flag
+     */
+    private static String stripFollowed(String fingerprint) {
+        return !fingerprint.isEmpty() && fingerprint.charAt(fingerprint.length() - 1) == FOLLOWED
+                ? fingerprint.substring(0, fingerprint.length() - 1) : fingerprint;
+    }
+
+    /**
+     * Compute a short fingerprint of the listing root so cursors cannot be replayed against other directories.
+     *
+     * @param root The listing root
+     * @return The fingerprint
+     */
+    private static String fingerprint(Path root) {
+        return Integer.toHexString(root.toAbsolutePath().normalize().toString().hashCode());
+    }
+}
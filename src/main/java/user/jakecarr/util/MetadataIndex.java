@@ -0,0 +1,392 @@
+package user.jakecarr.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only, memory-mapped snapshot of the directory tree below one root.
+ * <p>
+ * The file holds, in big-endian order:
+ * <ul>
+ *   <li>a header with the magic number, the record counts, the length of the root path and the time the
+ *       tree was read;</li>
+ *   <li>one fixed-size record per directory, sorted by the directory's path relative to the root, holding
+ *       the directory's modification time and the range of its entries;</li>
+ *   <li>one fixed-size record per directory entry, grouped by directory and sorted by name like a
+ *       {@link DirectoryWalker} visits them, holding the attributes read without following links;</li>
+ *   <li>the UTF-8 bytes of the root path, the relative directory paths and the entry names.</li>
+ * </ul>
+ * Lookups binary search the mapped records and only decode the strings they compare, so opening an
+ * index costs one mapping regardless of its size.
+ */
+final class MetadataIndex {
+    private static final long MAGIC = 0x4d43504944580001L;
+    private static final int HEADER_SIZE = 32;
+    private static final int DIRECTORY_RECORD_SIZE = 24;
+    private static final int ENTRY_RECORD_SIZE = 56;
+
+    private static final int FLAG_DIRECTORY = 1;
+    private static final int FLAG_REGULAR_FILE = 2;
+    private static final int FLAG_SYMBOLIC_LINK = 4;
+    private static final int FLAG_OTHER = 8;
+    private static final int FLAG_UNREADABLE = 16;
+    private static final int FLAG_ACCESS_MODE = 1;
+
+    private final ByteBuffer buffer;
+    private final Path root;
+    private final int directoryCount;
+    private final int entriesOffset;
+    private final int stringsOffset;
+    private final boolean hasAccessMode;
+    private final FileTime readTime;
+
+    private MetadataIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+            throw new IOException("Not a metadata index");
+        }
+        this.buffer = buffer;
+        this.directoryCount = buffer.getInt(8);
+        int entryCount = buffer.getInt(12);
+        int rootLength = buffer.getInt(16);
+        this.hasAccessMode = (buffer.getInt(20) & FLAG_ACCESS_MODE) != 0;
+        this.readTime = FileTime.from(buffer.getLong(24), TimeUnit.NANOSECONDS);
+        long strings = HEADER_SIZE + (long) directoryCount * DIRECTORY_RECORD_SIZE
+                + (long) entryCount * ENTRY_RECORD_SIZE;
+        if (directoryCount < 0 || entryCount < 0 || rootLength < 0 || strings + rootLength > buffer.capacity()) {
+            throw new IOException("Metadata index is truncated");
+        }
+        this.entriesOffset = HEADER_SIZE + directoryCount * DIRECTORY_RECORD_SIZE;
+        this.stringsOffset = (int) strings;
+        this.root = Paths.get(readString(0, rootLength));
+    }
+
+    /**
+     * Map an index file.
+     *
+     * @param file The index file
+     * @return The index
+     * @throws IOException If the file cannot be mapped or is not a valid index
+     */
+    static MetadataIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Metadata index is too large: " + file);
+            }
+            return new MetadataIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write an index file, replacing any previous one atomically.
+     *
+     * @param file The index file
+     * @param root The root directory the paths are relative to
+     * @param readTime The time the tree started being read
+     * @param directories The directories below the root, in any order
+     * @throws IOException If the file cannot be written or the tree is too large for one index
+     */
+    static void write(Path file, Path root, FileTime readTime, List<Directory> directories) throws IOException {
+        List<Directory> sorted = new ArrayList<>(directories);
+        sorted.sort(Comparator.comparing(directory -> directory.relativePath));
+
+        byte[] rootBytes = root.toString().getBytes(StandardCharsets.UTF_8);
+        long entryCount = 0;
+        long stringsLength = rootBytes.length;
+        boolean accessMode = true;
+        for (Directory directory : sorted) {
+            entryCount += directory.names.length;
+            stringsLength += utf8Length(directory.relativePath);
+            for (int i = 0; i < directory.names.length; i++) {
+                stringsLength += utf8Length(directory.names[i]);
+                accessMode &= directory.attributes[i] == null || directory.attributes[i].hasMode();
+            }
+        }
+        if (HEADER_SIZE + (long) sorted.size() * DIRECTORY_RECORD_SIZE + entryCount * ENTRY_RECORD_SIZE
+                + stringsLength > Integer.MAX_VALUE) {
+            throw new IOException("Too many entries below " + root + " for one metadata index");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(sorted.size());
+            out.writeInt((int) entryCount);
+            out.writeInt(rootBytes.length);
+            out.writeInt(accessMode ? FLAG_ACCESS_MODE : 0);
+            out.writeLong(toNanos(readTime));
+
+            int stringOffset = rootBytes.length;
+            int firstEntry = 0;
+            for (Directory directory : sorted) {
+                int length = utf8Length(directory.relativePath);
+                out.writeInt(stringOffset);
+                out.writeInt(length);
+                out.writeLong(toNanos(directory.modifiedTime));
+                out.writeInt(firstEntry);
+                out.writeInt(directory.names.length);
+                stringOffset += length;
+                firstEntry += directory.names.length;
+            }
+            // The entry names follow the root and the directory paths in the string table
+            for (Directory directory : sorted) {
+                for (int i = 0; i < directory.names.length; i++) {
+                    int length = utf8Length(directory.names[i]);
+                    writeEntry(out, stringOffset, length, directory.attributes[i]);
+                    stringOffset += length;
+                }
+            }
+
+            out.write(rootBytes);
+            for (Directory directory : sorted) {
+                out.write(directory.relativePath.getBytes(StandardCharsets.UTF_8));
+            }
+            for (Directory directory : sorted) {
+                for (String name : directory.names) {
+                    out.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the root directory the indexed paths are relative to.
+     *
+     * @return The root
+     */
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the time the indexed tree started being read.
+     *
+     * @return The read time
+     */
+    FileTime getReadTime() {
+        return readTime;
+    }
+
+    /**
+     * Check if the indexed attributes carry the permission mode.
+     *
+     * @return True if access checks can be answered from the index, false otherwise
+     */
+    boolean hasAccessMode() {
+        return hasAccessMode;
+    }
+
+    /**
+     * Find the record of a directory.
+     *
+     * @param relativePath The path of the directory relative to the root, empty for the root itself
+     * @return The record number, or -1 if the directory is not indexed
+     */
+    int findDirectory(String relativePath) {
+        int low = 0;
+        int high = directoryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = HEADER_SIZE + middle * DIRECTORY_RECORD_SIZE;
+            int comparison = readString(buffer.getInt(record), buffer.getInt(record + 4)).compareTo(relativePath);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the modification time a directory had when it was indexed.
+     *
+     * @param directory The record number of the directory
+     * @return The modification time
+     */
+    FileTime getModifiedTime(int directory) {
+        return FileTime.from(buffer.getLong(HEADER_SIZE + directory * DIRECTORY_RECORD_SIZE + 8), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Find the attributes of one entry of a directory.
+     *
+     * @param directory The record number of the directory
+     * @param name The name of the entry
+     * @return The attributes, or null if the entry is not indexed or could not be read
+     */
+    FileStat findEntry(int directory, String name) {
+        int record = HEADER_SIZE + directory * DIRECTORY_RECORD_SIZE;
+        int low = buffer.getInt(record + 16);
+        int high = low + buffer.getInt(record + 20) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = readName(middle).compareTo(name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return readAttributes(middle);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read all entries of a directory.
+     *
+     * @param directory The record number of the directory
+     * @return The directory with its entries
+     */
+    Directory readDirectory(int directory) {
+        int record = HEADER_SIZE + directory * DIRECTORY_RECORD_SIZE;
+        int first = buffer.getInt(record + 16);
+        int count = buffer.getInt(record + 20);
+        String[] names = new String[count];
+        FileStat[] attributes = new FileStat[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = readName(first + i);
+            attributes[i] = readAttributes(first + i);
+        }
+        return new Directory(readString(buffer.getInt(record), buffer.getInt(record + 4)),
+                getModifiedTime(directory), names, attributes);
+    }
+
+    private String readName(int entry) {
+        int record = entriesOffset + entry * ENTRY_RECORD_SIZE;
+        return readString(buffer.getInt(record), buffer.getInt(record + 4));
+    }
+
+    private FileStat readAttributes(int entry) {
+        int record = entriesOffset + entry * ENTRY_RECORD_SIZE;
+        int flags = buffer.get(record + 52);
+        if ((flags & FLAG_UNREADABLE) != 0) {
+            return null;
+        }
+        return FileStat.restore(buffer.getLong(record + 8),
+                FileTime.from(buffer.getLong(record + 16), TimeUnit.NANOSECONDS),
+                FileTime.from(buffer.getLong(record + 24), TimeUnit.NANOSECONDS),
+                FileTime.from(buffer.getLong(record + 32), TimeUnit.NANOSECONDS),
+                (flags & FLAG_DIRECTORY) != 0, (flags & FLAG_REGULAR_FILE) != 0,
+                (flags & FLAG_SYMBOLIC_LINK) != 0, (flags & FLAG_OTHER) != 0,
+                buffer.getInt(record + 40), Integer.toUnsignedLong(buffer.getInt(record + 44)),
+                Integer.toUnsignedLong(buffer.getInt(record + 48)));
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeEntry(DataOutputStream out, int nameOffset, int nameLength, FileStat stat)
+            throws IOException {
+        out.writeInt(nameOffset);
+        out.writeInt(nameLength);
+        if (stat == null) {
+            out.write(new byte[ENTRY_RECORD_SIZE - 8 - 4]);
+            out.writeByte(FLAG_UNREADABLE);
+            out.write(new byte[3]);
+            return;
+        }
+        out.writeLong(stat.size());
+        out.writeLong(toNanos(stat.lastModifiedTime()));
+        out.writeLong(toNanos(stat.lastAccessTime()));
+        out.writeLong(toNanos(stat.creationTime()));
+        out.writeInt(stat.mode());
+        out.writeInt((int) stat.uid());
+        out.writeInt((int) stat.gid());
+        out.writeByte((stat.isDirectory() ? FLAG_DIRECTORY : 0) | (stat.isRegularFile() ? FLAG_REGULAR_FILE : 0)
+                | (stat.isSymbolicLink() ? FLAG_SYMBOLIC_LINK : 0) | (stat.isOther() ? FLAG_OTHER : 0));
+        out.write(new byte[3]);
+    }
+
+    private static long toNanos(FileTime time) {
+        return time == null ? 0 : time.to(TimeUnit.NANOSECONDS);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * One directory of the tree with its entries, as written to or read from an index.
+     */
+    static final class Directory {
+        private final String relativePath;
+        private final FileTime modifiedTime;
+        private final String[] names;
+        private final FileStat[] attributes;
+
+        /**
+         * Create a directory.
+         *
+         * @param relativePath The path of the directory relative to the root, empty for the root itself
+         * @param modifiedTime The modification time of the directory, read before it was listed
+         * @param names The names of the entries, sorted
+         * @param attributes The attributes of each entry read without following links, null for unreadable ones
+         */
+        Directory(String relativePath, FileTime modifiedTime, String[] names, FileStat[] attributes) {
+            this.relativePath = relativePath;
+            this.modifiedTime = modifiedTime;
+            this.names = names;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Get the path of the directory relative to the root.
+         *
+         * @return The relative path, empty for the root itself
+         */
+        String getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * Get the modification time of the directory.
+         *
+         * @return The modification time
+         */
+        FileTime getModifiedTime() {
+            return modifiedTime;
+        }
+
+        /**
+         * Get the names of the entries.
+         *
+         * @return The names, sorted
+         */
+        String[] getNames() {
+            return names;
+        }
+
+        /**
+         * Get the attributes of the entries.
+         *
+         * @return The attributes, in the order of the names
+         */
+        FileStat[] getAttributes() {
+            return attributes;
+        }
+    }
+}
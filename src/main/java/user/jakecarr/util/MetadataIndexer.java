@@ -0,0 +1,365 @@
+package user.jakecarr.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps a persistent {@link MetadataIndex} for each configured root and serves fresh directories from it.
+ * <p>
+ * On startup each root is walked in the background. Directories whose modification time matches the
+ * previous index take their entries over from it without being listed, so only directories whose
+ * children were added, removed or renamed since the last run are listed again. Their entries keep the
+ * attributes recorded in the previous index, like git's index keeps the stat data of clean files, so a
+ * file rewritten in place while the server was down shows its old attributes until its directory
+ * changes. As with any comparison of timestamps, a directory or file modified within
+ * {@link #TIMESTAMP_GRANULARITY_MS} of the previous read may carry the same timestamp before and after
+ * a change, so such directories are always listed again and such entries always stat'ed again.
+ * Subdirectories are stat'ed again too, since changes below them update their modification time.
+ * <p>
+ * Every indexed directory is watched from before it is read. A directory is fresh, and answered from
+ * the index, while it is still watched and its modification time matches the index; the first event
+ * stops the watch, and the directory is read from the file system until the next refresh.
+ */
+public class MetadataIndexer implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(MetadataIndexer.class);
+
+    /**
+     * The coarsest directory timestamp resolution that is trusted, in milliseconds.
+     */
+    static final long TIMESTAMP_GRANULARITY_MS = 2000;
+
+    private final List<Path> roots;
+    private final Path indexDirectory;
+    private final DirectoryWatcher watcher;
+    private volatile List<MetadataIndex> indexes = List.of();
+
+    /**
+     * Create an indexer.
+     *
+     * @param roots The directories to index; empty to disable indexing
+     * @param indexDirectory The directory holding the index files
+     */
+    public MetadataIndexer(List<Path> roots, Path indexDirectory) {
+        List<Path> normalized = new ArrayList<>();
+        for (Path root : roots) {
+            normalized.add(root.toAbsolutePath().normalize());
+        }
+        this.roots = Collections.unmodifiableList(normalized);
+        this.indexDirectory = indexDirectory;
+        this.watcher = normalized.isEmpty() ? null : createWatcher();
+    }
+
+    /**
+     * Create the watcher that retires a directory from the index on its first change.
+     *
+     * @return The watcher, or null if directories cannot be watched
+     */
+    private DirectoryWatcher createWatcher() {
+        try {
+            return new DirectoryWatcher(directory -> watcher.unwatch(directory));
+        } catch (IOException e) {
+            logger.warn("Metadata index disabled: cannot watch directories", e);
+            return null;
+        }
+    }
+
+    /**
+     * Check if any root is indexed.
+     *
+     * @return True if roots are configured and can be watched, false otherwise
+     */
+    public boolean isEnabled() {
+        return watcher != null;
+    }
+
+    /**
+     * Refresh the indexes in the background, called by Spring after dependency injection.
+     */
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        Thread thread = new Thread(this::refresh, "metadata-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Bring the index of every root up to date and start serving it.
+     * A root that cannot be indexed is logged and left unindexed.
+     */
+    public void refresh() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (Path root : roots) {
+            try {
+                refresh(root);
+            } catch (IOException e) {
+                logger.warn("Failed to index {}", root, e);
+            }
+        }
+    }
+
+    /**
+     * Get the listing of a fresh indexed directory.
+     *
+     * @param directory The directory
+     * @param needsAccessMode Whether the attributes must carry the permission mode
+     * @return The listing, with children resolved against the given directory, or null if the directory
+     *         is not indexed or not fresh
+     */
+    public ListingCache.Snapshot getListing(Path directory, boolean needsAccessMode) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        MetadataIndex index = findIndex(absolute, needsAccessMode);
+        int record = index == null ? -1 : findFresh(index, absolute);
+        if (record < 0) {
+            return null;
+        }
+        MetadataIndex.Directory indexed = index.readDirectory(record);
+        List<Path> children = new ArrayList<>(indexed.getNames().length);
+        for (String name : indexed.getNames()) {
+            children.add(directory.resolve(name));
+        }
+        return new ListingCache.Snapshot(Collections.unmodifiableList(children), indexed.getAttributes(),
+                indexed.getModifiedTime(), index.hasAccessMode());
+    }
+
+    /**
+     * Stop watching the indexed directories.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Walk one root, reusing the unchanged directories of its previous index, and publish the result.
+     *
+     * @param root The root
+     * @throws IOException If the index cannot be written
+     */
+    private void refresh(Path root) throws IOException {
+        long start = System.nanoTime();
+        FileTime readTime = FileTime.from(Instant.now());
+        Files.createDirectories(indexDirectory);
+        Path file = indexDirectory.resolve(UUID.nameUUIDFromBytes(root.toString().getBytes(StandardCharsets.UTF_8))
+                + ".idx");
+        MetadataIndex previous = openPrevious(file, root);
+
+        List<MetadataIndex.Directory> directories = new ArrayList<>();
+        int reused = 0;
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Path directory = pending.pop();
+            // Watch before reading, so that a change racing with the read keeps the directory from being served
+            watcher.watch(directory);
+            MetadataIndex.Directory indexed;
+            try {
+                FileTime modifiedTime = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS);
+                String relativePath = root.relativize(directory).toString();
+                int record = previous == null ? -1 : previous.findDirectory(relativePath);
+                long racyFrom = previous == null ? 0 : previous.getReadTime().toMillis() - TIMESTAMP_GRANULARITY_MS;
+                if (record >= 0 && previous.getModifiedTime(record).equals(modifiedTime)
+                        && modifiedTime.toMillis() < racyFrom) {
+                    indexed = reuseEntries(directory, previous.readDirectory(record), racyFrom);
+                    reused++;
+                } else {
+                    indexed = readDirectory(directory, relativePath, modifiedTime);
+                }
+            } catch (IOException e) {
+                logger.debug("Skipping unreadable directory while indexing: {}", directory, e);
+                watcher.unwatch(directory);
+                continue;
+            }
+            directories.add(indexed);
+            for (int i = 0; i < indexed.getNames().length; i++) {
+                FileStat attributes = indexed.getAttributes()[i];
+                if (attributes != null && attributes.isDirectory()) {
+                    pending.push(directory.resolve(indexed.getNames()[i]));
+                }
+            }
+        }
+
+        MetadataIndex.write(file, root, readTime, directories);
+        publish(MetadataIndex.open(file));
+        logger.info("Indexed {} directories below {} in {} ms, {} unchanged since the previous index",
+                directories.size(), root, (System.nanoTime() - start) / 1_000_000, reused);
+    }
+
+    /**
+     * Open the index a previous run left for a root.
+     *
+     * @param file The index file
+     * @param root The root
+     * @return The index, or null if there is none or it cannot be used
+     */
+    private static MetadataIndex openPrevious(Path file, Path root) {
+        try {
+            MetadataIndex previous = MetadataIndex.open(file);
+            return previous.getRoot().equals(root) ? previous : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable metadata index: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * List a directory and read the attributes of its entries without following links.
+     *
+     * @param directory The directory
+     * @param relativePath The path of the directory relative to its root
+     * @param modifiedTime The modification time of the directory, read before listing it
+     * @return The directory with its entries
+     * @throws IOException If the directory cannot be listed
+     */
+    private static MetadataIndex.Directory readDirectory(Path directory, String relativePath, FileTime modifiedTime)
+            throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                names.add(child.getFileName().toString());
+            }
+        }
+        String[] sorted = names.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return statEntries(directory, relativePath, modifiedTime, sorted);
+    }
+
+    /**
+     * Take the entries of an unchanged directory over from the previous index, reading the attributes of
+     * subdirectories, and of entries modified too close to the previous read to be trusted, again.
+     *
+     * @param directory The directory
+     * @param recorded The directory as recorded in the previous index
+     * @param racyFrom The time in milliseconds from which a recorded modification time is not trusted
+     * @return The directory with its entries
+     */
+    private static MetadataIndex.Directory reuseEntries(Path directory, MetadataIndex.Directory recorded,
+                                                        long racyFrom) {
+        String[] names = recorded.getNames();
+        FileStat[] attributes = recorded.getAttributes();
+        for (int i = 0; i < names.length; i++) {
+            FileStat previous = attributes[i];
+            if (previous == null || previous.isDirectory() || previous.lastModifiedTime().toMillis() >= racyFrom) {
+                attributes[i] = stat(directory.resolve(names[i]));
+            }
+        }
+        return new MetadataIndex.Directory(recorded.getRelativePath(), recorded.getModifiedTime(), names, attributes);
+    }
+
+    /**
+     * Read the attributes of the entries of a directory without following links.
+     *
+     * @param directory The directory
+     * @param relativePath The path of the directory relative to its root
+     * @param modifiedTime The modification time of the directory, read before listing it
+     * @param sorted The names of the entries, sorted
+     * @return The directory with its entries
+     */
+    private static MetadataIndex.Directory statEntries(Path directory, String relativePath, FileTime modifiedTime,
+                                                       String[] sorted) {
+        FileStat[] attributes = new FileStat[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            attributes[i] = stat(directory.resolve(sorted[i]));
+        }
+        return new MetadataIndex.Directory(relativePath, modifiedTime, sorted, attributes);
+    }
+
+    /**
+     * Read the attributes of an entry without following links.
+     *
+     * @param entry The entry
+     * @return The attributes, or null if they cannot be read
+     */
+    private static FileStat stat(Path entry) {
+        try {
+            return FileStat.read(entry, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            logger.debug("Cannot read attributes while indexing: {}", entry);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the index of a root.
+     *
+     * @param index The new index
+     */
+    private synchronized void publish(MetadataIndex index) {
+        List<MetadataIndex> updated = new ArrayList<>();
+        for (MetadataIndex existing : indexes) {
+            if (!existing.getRoot().equals(index.getRoot())) {
+                updated.add(existing);
+            }
+        }
+        updated.add(index);
+        indexes = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Find the index covering a directory.
+     *
+     * @param directory The absolute, normalized directory
+     * @param needsAccessMode Whether the index must carry the permission mode
+     * @return The index, or null if no usable index covers the directory
+     */
+    private MetadataIndex findIndex(Path directory, boolean needsAccessMode) {
+        for (MetadataIndex index : indexes) {
+            if (directory.startsWith(index.getRoot()) && (!needsAccessMode || index.hasAccessMode())) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the record of a directory if it has not changed since it was indexed.
+     *
+     * @param index The index covering the directory
+     * @param directory The absolute, normalized directory
+     * @return The record number, or -1 if the directory is not indexed or not fresh
+     */
+    private int findFresh(MetadataIndex index, Path directory) {
+        if (!watcher.isWatched(directory)) {
+            return -1;
+        }
+        int record = index.findDirectory(index.getRoot().relativize(directory).toString());
+        if (record < 0) {
+            return -1;
+        }
+        try {
+            FileTime modifiedTime = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS);
+            return index.getModifiedTime(record).equals(modifiedTime) ? record : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
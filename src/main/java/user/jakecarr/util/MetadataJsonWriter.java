@@ -0,0 +1,271 @@
+package user.jakecarr.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import user.jakecarr.model.FileListing;
+import user.jakecarr.model.FileListingPage;
+import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.MetadataField;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Serializes file metadata restricted to a set of requested fields.
+ * Projected output is streamed field by field, so fields that were not requested are never
+ * serialized; requests for every field use the object mapper and keep the full representation.
+ * Columnar {@link FileListing} pages are always streamed straight from their columns, without
+ * building a metadata object per entry, in the same property order as the object mapper. They can
+ * also be written with compact paths, where each directory prefix is sent once in a
+ * {@code directories} array and every entry refers to it by index instead of repeating its path.
+ */
+public final class MetadataJsonWriter {
+
+    private MetadataJsonWriter() {
+    }
+
+    /**
+     * Serialize file metadata to pretty-printed JSON.
+     *
+     * @param objectMapper The object mapper providing the JSON configuration
+     * @param metadata The file metadata
+     * @param fields The fields to write
+     * @return The JSON string
+     * @throws IOException If an error occurs during serialization
+     */
+    public static String write(ObjectMapper objectMapper, FileMetadata metadata, Set<MetadataField> fields)
+            throws IOException {
+        if (fields.containsAll(MetadataField.ALL)) {
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(metadata);
+        }
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = createGenerator(objectMapper, writer)) {
+            writeMetadata(generator, metadata, fields);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Serialize a page of file metadata to pretty-printed JSON.
+     *
+     * @param objectMapper The object mapper providing the JSON configuration
+     * @param page The page of file metadata
+     * @param fields The fields to write for each file
+     * @return The JSON string
+     * @throws IOException If an error occurs during serialization
+     */
+    public static String write(ObjectMapper objectMapper, FileListingPage page, Set<MetadataField> fields)
+            throws IOException {
+        return write(objectMapper, page, fields, false);
+    }
+
+    /**
+     * Serialize a page of file metadata to pretty-printed JSON, optionally with compact paths.
+     * Compact paths replace the {@code path} of each entry by a {@code dir} index into a leading
+     * {@code directories} array of prefixes, to which the entry's {@code name} is appended; the name
+     * is then written even if it was not requested. Pages that are not columnar ignore the option.
+     *
+     * @param objectMapper The object mapper providing the JSON configuration
+     * @param page The page of file metadata
+     * @param fields The fields to write for each file
+     * @param compactPaths Whether to send each directory prefix once
+     * @return The JSON string
+     * @throws IOException If an error occurs during serialization
+     */
+    public static String write(ObjectMapper objectMapper, FileListingPage page, Set<MetadataField> fields,
+                               boolean compactPaths) throws IOException {
+        boolean columnar = page.getFiles() instanceof FileListing;
+        if (fields.containsAll(MetadataField.ALL) && !columnar) {
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(page);
+        }
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = createGenerator(objectMapper, writer)) {
+            generator.writeStartObject();
+            int[] directories = null;
+            if (columnar && compactPaths && fields.contains(MetadataField.PATH)) {
+                directories = writeDirectories(generator, (FileListing) page.getFiles());
+            }
+            generator.writeArrayFieldStart("files");
+            if (columnar) {
+                FileListing listing = (FileListing) page.getFiles();
+                for (int i = 0; i < listing.size(); i++) {
+                    writeEntry(generator, listing, i, fields, directories);
+                }
+            } else {
+                for (FileMetadata metadata : page.getFiles()) {
+                    writeMetadata(generator, metadata, fields);
+                }
+            }
+            generator.writeEndArray();
+            if (page.getNextCursor() != null) {
+                generator.writeStringField("nextCursor", page.getNextCursor());
+            }
+            generator.writeBooleanField("truncated", page.isTruncated());
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private static JsonGenerator createGenerator(ObjectMapper objectMapper, StringWriter writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.setCodec(objectMapper);
+        return generator.useDefaultPrettyPrinter();
+    }
+
+    private static void writeMetadata(JsonGenerator generator, FileMetadata metadata, Set<MetadataField> fields)
+            throws IOException {
+        generator.writeStartObject();
+        for (MetadataField field : fields) {
+            generator.writeFieldName(field.getPropertyName());
+            switch (field) {
+                case NAME:
+                    generator.writeString(metadata.getName());
+                    break;
+                case PATH:
+                    generator.writeString(metadata.getPath());
+                    break;
+                case SIZE:
+                    generator.writeNumber(metadata.getSize());
+                    break;
+                case LAST_MODIFIED:
+                    // Written through the mapper so the configured date format applies
+                    generator.writeObject(metadata.getLastModified());
+                    break;
+                case CREATION_TIME:
+                    generator.writeObject(metadata.getCreationTime());
+                    break;
+                case DIRECTORY:
+                    generator.writeBoolean(metadata.isDirectory());
+                    break;
+                case REGULAR_FILE:
+                    generator.writeBoolean(metadata.isRegularFile());
+                    break;
+                case SYMBOLIC_LINK:
+                    generator.writeBoolean(metadata.isSymbolicLink());
+                    break;
+                case HIDDEN:
+                    generator.writeBoolean(metadata.isHidden());
+                    break;
+                case READABLE:
+                    generator.writeBoolean(metadata.isReadable());
+                    break;
+                case WRITABLE:
+                    generator.writeBoolean(metadata.isWritable());
+                    break;
+                case EXECUTABLE:
+                    generator.writeBoolean(metadata.isExecutable());
+                    break;
+                case FORMATTED_LAST_MODIFIED:
+                    generator.writeString(metadata.getFormattedLastModified());
+                    break;
+                case FORMATTED_CREATION_TIME:
+                    generator.writeString(metadata.getFormattedCreationTime());
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled metadata field: " + field);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the directory prefixes used by a listing, each once, in order of first use.
+     *
+     * @param generator The generator
+     * @param listing The listing
+     * @return The position of each prefix node in the written array, -1 for nodes no entry uses
+     * @throws IOException If an error occurs during serialization
+     */
+    private static int[] writeDirectories(JsonGenerator generator, FileListing listing) throws IOException {
+        int[] directories = new int[listing.getPrefixCount()];
+        Arrays.fill(directories, -1);
+        int written = 0;
+        generator.writeArrayFieldStart("directories");
+        for (int i = 0; i < listing.size(); i++) {
+            int node = listing.getPrefixNode(i);
+            if (node >= 0 && directories[node] < 0) {
+                directories[node] = written++;
+                generator.writeString(listing.getPrefix(node));
+            }
+        }
+        generator.writeEndArray();
+        return directories;
+    }
+
+    private static void writeEntry(JsonGenerator generator, FileListing listing, int index, Set<MetadataField> fields,
+                                   int[] directories) throws IOException {
+        generator.writeStartObject();
+        for (MetadataField field : fields) {
+            int node = listing.getPrefixNode(index);
+            if (field == MetadataField.PATH && directories != null && node >= 0) {
+                generator.writeNumberField("dir", directories[node]);
+                if (!fields.contains(MetadataField.NAME)) {
+                    generator.writeFieldName(MetadataField.NAME.getPropertyName());
+                    writeName(generator, listing, index);
+                }
+                continue;
+            }
+            generator.writeFieldName(field.getPropertyName());
+            switch (field) {
+                case NAME:
+                    writeName(generator, listing, index);
+                    break;
+                case PATH:
+                    generator.writeString(listing.getPath(index));
+                    break;
+                case SIZE:
+                    generator.writeNumber(listing.getSize(index));
+                    break;
+                case LAST_MODIFIED:
+                    generator.writeObject(listing.getLastModified(index));
+                    break;
+                case CREATION_TIME:
+                    generator.writeObject(listing.getCreationTime(index));
+                    break;
+                case DIRECTORY:
+                    generator.writeBoolean(listing.isDirectory(index));
+                    break;
+                case REGULAR_FILE:
+                    generator.writeBoolean(listing.isRegularFile(index));
+                    break;
+                case SYMBOLIC_LINK:
+                    generator.writeBoolean(listing.isSymbolicLink(index));
+                    break;
+                case HIDDEN:
+                    generator.writeBoolean(listing.isHidden(index));
+                    break;
+                case READABLE:
+                    generator.writeBoolean(listing.isReadable(index));
+                    break;
+                case WRITABLE:
+                    generator.writeBoolean(listing.isWritable(index));
+                    break;
+                case EXECUTABLE:
+                    generator.writeBoolean(listing.isExecutable(index));
+                    break;
+                case FORMATTED_LAST_MODIFIED:
+                    generator.writeString(format(listing.getLastModified(index)));
+                    break;
+                case FORMATTED_CREATION_TIME:
+                    generator.writeString(format(listing.getCreationTime(index)));
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled metadata field: " + field);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeName(JsonGenerator generator, FileListing listing, int index) throws IOException {
+        int start = listing.getNameStart(index);
+        generator.writeString(listing.getNameBuffer(), start, listing.getNameEnd(index) - start);
+    }
+
+    private static String format(Instant time) {
+        return time == null ? null : DateTimeFormatter.ISO_INSTANT.format(time);
+    }
+}
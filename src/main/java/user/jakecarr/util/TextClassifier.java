@@ -0,0 +1,206 @@
+package user.jakecarr.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classifies bytes as text in a single pass, eight bytes at a time: it finds NUL bytes, validates UTF-8
+ * and counts newlines together.
+ * <p>
+ * Each step loads a {@code long} and tests all eight bytes at once with carry-free arithmetic. A word
+ * without a high bit set is plain ASCII and needs no further work; only words holding a multi-byte
+ * character drop to validating that character byte by byte, after which the scan resumes a word at a time.
+ */
+public final class TextClassifier {
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Eight newline bytes, for {@link #matches(long, long)}.
+     */
+    static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+
+    private final long length;
+    private final long lineCount;
+    private final boolean nul;
+    private final boolean ascii;
+    private final boolean validUtf8;
+
+    private TextClassifier(long length, long lineCount, boolean nul, boolean ascii, boolean validUtf8) {
+        this.length = length;
+        this.lineCount = lineCount;
+        this.nul = nul;
+        this.ascii = ascii;
+        this.validUtf8 = validUtf8;
+    }
+
+    /**
+     * Classify the bytes between the position and the limit of a buffer, leaving the buffer unchanged.
+     * The bytes may end inside a multi-byte character, as a prefix of a file does, without making
+     * them invalid UTF-8.
+     *
+     * @param bytes The bytes
+     * @return The classification
+     */
+    public static TextClassifier classify(ByteBuffer bytes) {
+        ByteBuffer words = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = words.limit();
+        int i = words.position();
+        long lines = 0;
+        boolean nul = false;
+        boolean ascii = true;
+        boolean valid = true;
+        while (i < limit) {
+            if (limit - i >= Long.BYTES) {
+                long word = words.getLong(i);
+                long high = word & HIGH_BITS;
+                // Only the bytes before the first non-ASCII byte are counted here
+                long counted = high == 0 ? -1L : (Long.lowestOneBit(high) >>> 7) - 1;
+                lines += Long.bitCount(matches(word, NEWLINES) & counted);
+                nul |= (matches(word, 0) & counted) != 0;
+                if (high == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+                i += Long.numberOfTrailingZeros(high) >>> 3;
+            }
+            int lead = words.get(i) & 0xFF;
+            if (lead < 0x80) {
+                if (lead == '\n') {
+                    lines++;
+                } else if (lead == 0) {
+                    nul = true;
+                }
+                i++;
+                continue;
+            }
+            ascii = false;
+            int sequence = sequenceLength(words, i, limit);
+            if (sequence < 0) {
+                valid = false;
+                i++;
+            } else if (sequence == 0) {
+                // The bytes end inside a character
+                break;
+            } else {
+                i += sequence;
+            }
+        }
+        return new TextClassifier(bytes.remaining(), lines, nul, ascii, valid);
+    }
+
+    /**
+     * Mark the bytes of a word equal to the bytes of a pattern.
+     * The high bit of each matching byte is set and every other bit is clear, so the matches can be
+     * counted with {@link Long#bitCount(long)} or located with {@link Long#numberOfTrailingZeros(long)}.
+     *
+     * @param word Eight bytes
+     * @param pattern The byte to look for, repeated eight times
+     * @return The mask of matching bytes
+     */
+    static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        // Adding 0x7F to the low seven bits carries into the high bit unless they are all zero
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /**
+     * Validate the UTF-8 character starting with a non-ASCII lead byte.
+     * Overlong encodings, surrogates and code points above U+10FFFF are invalid.
+     *
+     * @param bytes The bytes
+     * @param i The index of the lead byte
+     * @param limit The index after the last byte
+     * @return The length of the character, 0 if the bytes end inside it, or -1 if it is invalid
+     */
+    private static int sequenceLength(ByteBuffer bytes, int i, int limit) {
+        int lead = bytes.get(i) & 0xFF;
+        int length;
+        int min = 0x80;
+        int max = 0xBF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            if (lead == 0xE0) {
+                min = 0xA0;
+            } else if (lead == 0xED) {
+                max = 0x9F;
+            }
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            if (lead == 0xF0) {
+                min = 0x90;
+            } else if (lead == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+        for (int j = 1; j < length; j++) {
+            if (i + j >= limit) {
+                return 0;
+            }
+            int next = bytes.get(i + j) & 0xFF;
+            if (next < (j == 1 ? min : 0x80) || next > (j == 1 ? max : 0xBF)) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Get the number of bytes classified.
+     *
+     * @return The length in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get the number of newline bytes.
+     *
+     * @return The newline count
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Check if the bytes hold a NUL byte, which is uncommon in text files.
+     *
+     * @return True if a NUL byte was found
+     */
+    public boolean hasNul() {
+        return nul;
+    }
+
+    /**
+     * Check if every byte is ASCII.
+     *
+     * @return True if no byte has its high bit set
+     */
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    /**
+     * Check if the bytes are valid UTF-8, allowing them to end inside a character.
+     *
+     * @return True if the bytes are valid UTF-8
+     */
+    public boolean isValidUtf8() {
+        return validUtf8;
+    }
+
+    /**
+     * Check if the bytes look like text, meaning they hold no NUL byte.
+     * UTF-8 validity is not part of this check; callers that need it also ask {@link #isValidUtf8()}.
+     *
+     * @return True if the bytes are likely text
+     */
+    public boolean isText() {
+        return !nul;
+    }
+}
@@ -0,0 +1,157 @@
+package user.jakecarr.util;
+
+import user.jakecarr.model.EntryType;
+import user.jakecarr.model.ListingOptions;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter pushed down into directory walks.
+ * Exclusions are decided from names alone, so excluded entries are never stat'ed and excluded
+ * directories are never descended into. Inclusion and type restrictions only decide which of the
+ * visited entries are returned; the walk still descends through directories that are not returned.
+ */
+public final class WalkFilter {
+    /**
+     * A filter that accepts every entry at any depth.
+     */
+    public static final WalkFilter NONE = new WalkFilter(Integer.MAX_VALUE, List.of(), List.of(), null);
+
+    private final int maxDepth;
+    private final List<Glob> include;
+    private final List<Glob> exclude;
+    private final EntryType type;
+
+    /**
+     * Create a filter.
+     *
+     * @param maxDepth The deepest level that is visited, where the children of the root are at depth 1
+     * @param include The glob patterns an entry must match to be returned, empty to return everything
+     * @param exclude The glob patterns of entries that are pruned from the walk
+     * @param type The entry type to return, or null to return all types
+     * @throws IllegalArgumentException If a pattern is not a valid glob
+     */
+    public WalkFilter(int maxDepth, List<String> include, List<String> exclude, EntryType type) {
+        this.maxDepth = maxDepth;
+        this.include = compile(include);
+        this.exclude = compile(exclude);
+        this.type = type;
+    }
+
+    /**
+     * Create a filter from listing options.
+     *
+     * @param options The listing options
+     * @return The filter
+     * @throws IllegalArgumentException If a pattern is not a valid glob
+     */
+    public static WalkFilter of(ListingOptions options) {
+        if (options.getMaxDepth() == Integer.MAX_VALUE && options.getInclude().isEmpty()
+                && options.getExclude().isEmpty() && options.getType() == null) {
+            return NONE;
+        }
+        return new WalkFilter(options.getMaxDepth(), options.getInclude(), options.getExclude(), options.getType());
+    }
+
+    /**
+     * Check if an entry is pruned from the walk. Only the path is inspected.
+     *
+     * @param root The root of the walk
+     * @param path The entry
+     * @return True if the entry and everything below it is skipped, false otherwise
+     */
+    public boolean isExcluded(Path root, Path path) {
+        return !exclude.isEmpty() && matchesAny(exclude, root, path);
+    }
+
+    /**
+     * Check if the filter prunes any entries.
+     *
+     * @return True if there are exclude patterns, false otherwise
+     */
+    public boolean hasExclusions() {
+        return !exclude.isEmpty();
+    }
+
+    /**
+     * Check if a visited entry is returned by the walk.
+     *
+     * @param root The root of the walk
+     * @param path The entry
+     * @param stat The attributes of the entry, read without following symbolic links
+     * @return True if the entry is returned, false otherwise
+     */
+    public boolean accepts(Path root, Path path, FileStat stat) {
+        if (type != null && !hasType(stat)) {
+            return false;
+        }
+        return include.isEmpty() || matchesAny(include, root, path);
+    }
+
+    /**
+     * Check if the walk descends below an entry at the given depth.
+     *
+     * @param depth The depth of the entry
+     * @return True if its children are within the maximum depth, false otherwise
+     */
+    public boolean canDescend(int depth) {
+        return depth < maxDepth;
+    }
+
+    private boolean hasType(FileStat stat) {
+        switch (type) {
+            case FILE:
+                return stat.isRegularFile();
+            case DIRECTORY:
+                return stat.isDirectory();
+            case SYMLINK:
+                return stat.isSymbolicLink();
+            default:
+                return false;
+        }
+    }
+
+    private static boolean matchesAny(List<Glob> globs, Path root, Path path) {
+        Path name = path.getFileName();
+        Path relative = null;
+        for (Glob glob : globs) {
+            if (glob.matchesRelativePath) {
+                if (relative == null) {
+                    relative = root.relativize(path);
+                }
+                if (glob.matcher.matches(relative)) {
+                    return true;
+                }
+            } else if (name != null && glob.matcher.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Glob> compile(List<String> patterns) {
+        List<Glob> globs = new ArrayList<>();
+        for (String pattern : patterns) {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            globs.add(new Glob(matcher, pattern.indexOf('/') >= 0));
+        }
+        return globs;
+    }
+
+    /**
+     * A compiled glob pattern.
+     */
+    private static final class Glob {
+        private final PathMatcher matcher;
+        private final boolean matchesRelativePath;
+
+        Glob(PathMatcher matcher, boolean matchesRelativePath) {
+            this.matcher = matcher;
+            this.matchesRelativePath = matchesRelativePath;
+        }
+    }
+}
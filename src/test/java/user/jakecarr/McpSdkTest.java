@@ -5,8 +5,11 @@ import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.io.TempDir;
 
 import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -31,6 +34,21 @@ public class McpSdkTest {
         });
     }
     
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testResourceSessionForwardsEverySessionMethod() throws ClassNotFoundException {
+        // The resource session wraps the SDK session, so a public method it does not override would act on
+        // the unused state of its superclass
+        Class<?> resourceSession = Class.forName("user.jakecarr.service.ResourceTransportProvider$ResourceSession");
+        for (Method method : McpServerSession.class.getMethods()) {
+            if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            assertDoesNotThrow(() -> resourceSession.getDeclaredMethod(method.getName(), method.getParameterTypes()),
+                    "ResourceSession should override " + method);
+        }
+    }
+
     @Test
     @Timeout(5) // 5 seconds timeout
     public void testResourceHandling() throws IOException {
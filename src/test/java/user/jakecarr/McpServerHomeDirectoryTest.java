@@ -1,6 +1,5 @@
 package user.jakecarr;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.client.McpSyncClient;
@@ -12,6 +11,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.condition.EnabledIf;
+import user.jakecarr.model.FileListingPage;
 import user.jakecarr.model.FileMetadata;
 import user.jakecarr.util.FileSystemUtils;
 
@@ -171,10 +171,8 @@ public class McpServerHomeDirectoryTest {
                     System.out.println(textContent.text());
                     
                     // Parse the JSON response
-                    List<FileMetadata> files = objectMapper.readValue(
-                        textContent.text(), 
-                        new TypeReference<List<FileMetadata>>() {}
-                    );
+                    FileListingPage page = objectMapper.readValue(textContent.text(), FileListingPage.class);
+                    List<FileMetadata> files = page.getFiles();
                     
                     // Verify that files were found
                     assertFalse(files.isEmpty(), "Home directory should not be empty when using MCP client");
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
+import user.jakecarr.util.FileContentReader;
 import user.jakecarr.util.FileSystemUtils;
 
 import java.io.IOException;
@@ -204,6 +205,55 @@ public class FileContentResourceTest {
         testMimeTypeForFile(cFile, "text/x-c");
     }
 
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testHandleRequestWithRange() {
+        String uri = "file://content/" + textFile.toString() + "?range=-8";
+        McpSchema.ReadResourceRequest request = Mockito.mock(McpSchema.ReadResourceRequest.class);
+        when(request.uri()).thenReturn(uri);
+
+        McpSchema.ReadResourceResult result = resource.handleRequest(request);
+
+        String fileContent = ((McpSchema.TextResourceContents) result.contents().get(0)).text();
+        assertEquals("content.", fileContent, "Only the last bytes should be read");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testHandleRequestWithLines() throws IOException {
+        Path linesFile = tempDir.resolve("lines-test.txt");
+        Files.writeString(linesFile, "first\nsecond\nthird\n");
+        String uri = "file://content/" + linesFile.toString() + "?lines=2-3";
+        McpSchema.ReadResourceRequest request = Mockito.mock(McpSchema.ReadResourceRequest.class);
+        when(request.uri()).thenReturn(uri);
+
+        McpSchema.ReadResourceResult result = resource.handleRequest(request);
+
+        String fileContent = ((McpSchema.TextResourceContents) result.contents().get(0)).text();
+        assertEquals("second\nthird\n", fileContent, "Only the requested lines should be read");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testHandleRequestTruncatesLargeContent() throws IOException {
+        Path largeFile = tempDir.resolve("large-test.txt");
+        Files.writeString(largeFile, "x".repeat(5000));
+        FileContentResource limited = new FileContentResource(new FileSystemUtils(1, 0, 0, null,
+                new FileContentReader(0, 2048, null)));
+        McpSchema.ReadResourceRequest request = Mockito.mock(McpSchema.ReadResourceRequest.class);
+        when(request.uri()).thenReturn("file://content/" + largeFile.toString());
+
+        McpSchema.ReadResourceResult result = limited.handleRequest(request);
+
+        assertEquals(2, result.contents().size(), "Truncated content should carry a continuation entry");
+        assertEquals(2048, ((McpSchema.TextResourceContents) result.contents().get(0)).text().length(),
+                "Content should be cut at the maximum response size");
+        String continuation = ((McpSchema.TextResourceContents) result.contents().get(1)).text();
+        assertTrue(continuation.contains("\"truncated\":true"), "Continuation should flag truncation");
+        assertTrue(continuation.contains("\"nextOffset\":2048"), "Continuation should give the next offset");
+        assertTrue(continuation.contains("\"size\":5000"), "Continuation should give the file size");
+    }
+
     /**
      * Helper method to test MIME type detection for a file.
      * 
@@ -1,5 +1,6 @@
 package user.jakecarr.resources;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.modelcontextprotocol.spec.McpError;
@@ -16,6 +17,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -80,6 +82,22 @@ public class FileMetadataResourceTest {
         assertTrue(Files.isReadable(testFile), "Should be readable");
     }
 
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testHandleRequestWithFields() throws IOException {
+        String uri = "file://metadata/" + testFile.toString() + "?fields=name,size";
+        McpSchema.ReadResourceRequest request = Mockito.mock(McpSchema.ReadResourceRequest.class);
+        when(request.uri()).thenReturn(uri);
+
+        McpSchema.ReadResourceResult result = resource.handleRequest(request);
+        String json = ((McpSchema.TextResourceContents) result.contents().get(0)).text();
+        Map<String, Object> fields = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+
+        assertEquals(List.of("name", "size"), List.copyOf(fields.keySet()), "Only the requested fields should be returned");
+        assertEquals("metadata-test.txt", fields.get("name"), "Name should match");
+        assertEquals(25, ((Number) fields.get("size")).intValue(), "Size should match");
+    }
+
     @Test
     @Timeout(5) // 5 seconds timeout
     public void testHandleRequestForDirectory() throws IOException {
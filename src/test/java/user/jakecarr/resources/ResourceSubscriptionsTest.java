@@ -0,0 +1,161 @@
+package user.jakecarr.resources;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import io.modelcontextprotocol.spec.McpServerTransport;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import user.jakecarr.FileSystemServer;
+import user.jakecarr.service.ResourceTransportProvider;
+import user.jakecarr.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ResourceSubscriptions.
+ */
+public class ResourceSubscriptionsTest {
+    private static final long DEBOUNCE_MS = 100;
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemUtils fileSystemUtils;
+    private ResourceSubscriptions subscriptions;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fileSystemUtils = new FileSystemUtils(1);
+        subscriptions = new ResourceSubscriptions(fileSystemUtils, DEBOUNCE_MS);
+        file = Files.writeString(tempDir.resolve("watched.txt"), "initial");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        subscriptions.close();
+        fileSystemUtils.cleanup();
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testBurstOfWritesIsReportedOnce() throws IOException, InterruptedException {
+        String uri = FileContentResource.URI_PREFIX + file;
+        List<String> updates = new CopyOnWriteArrayList<>();
+        subscriptions.subscribe(uri, updates::add);
+
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(file, "write number " + i);
+        }
+        while (updates.isEmpty()) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(ResourceSubscriptions.MAX_DELAY_INTERVALS * DEBOUNCE_MS);
+        assertEquals(List.of(uri), updates, "A burst of writes should be coalesced into one update");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testUnchangedFileIsNotReported() throws IOException, InterruptedException {
+        List<String> updates = new CopyOnWriteArrayList<>();
+        subscriptions.subscribe(FileMetadataResource.URI_PREFIX + file, updates::add);
+        String listingUri = DirectoryListingResource.URI_PREFIX + tempDir;
+        subscriptions.subscribe(listingUri, updates::add);
+
+        // The sibling shares the watched directory but is not the subscribed file
+        Files.writeString(tempDir.resolve("sibling.txt"), "sibling");
+        while (updates.isEmpty()) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(ResourceSubscriptions.MAX_DELAY_INTERVALS * DEBOUNCE_MS);
+        assertEquals(List.of(listingUri), updates, "Only the directory listing should be reported");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testSessionSubscribesAndIsNotified() throws IOException, InterruptedException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        FileSystemServer server = new FileSystemServer(new FileContentResource(fileSystemUtils),
+                new FileMetadataResource(fileSystemUtils, objectMapper),
+                new DirectoryListingResource(fileSystemUtils, objectMapper));
+        RecordingTransport transport = new RecordingTransport(objectMapper);
+        McpServerSession.Factory[] factory = new McpServerSession.Factory[1];
+        ResourceTransportProvider provider = new ResourceTransportProvider(new McpServerTransportProvider() {
+            @Override
+            public void setSessionFactory(McpServerSession.Factory sessionFactory) {
+                factory[0] = sessionFactory;
+            }
+
+            @Override
+            public Mono<Void> notifyClients(String method, Map<String, Object> params) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<Void> closeGracefully() {
+                return Mono.empty();
+            }
+        }, server, subscriptions);
+        provider.setSessionFactory(sessionTransport -> new McpServerSession("session", sessionTransport,
+                request -> Mono.empty(), Mono::empty, Map.of(), Map.of()));
+        McpServerSession session = factory[0].create(transport);
+
+        String uri = FileContentResource.URI_PREFIX + file;
+        session.handle(new McpSchema.JSONRPCRequest(McpSchema.JSONRPC_VERSION, McpSchema.METHOD_RESOURCES_READ, 1,
+                Map.of("uri", uri))).block();
+        McpSchema.JSONRPCResponse read = (McpSchema.JSONRPCResponse) transport.messages.get(0);
+        assertNull(read.error(), "Template resources should be readable by URI");
+        session.handle(new McpSchema.JSONRPCRequest(McpSchema.JSONRPC_VERSION, McpSchema.METHOD_RESOURCES_SUBSCRIBE,
+                2, Map.of("uri", uri))).block();
+        assertNull(((McpSchema.JSONRPCResponse) transport.messages.get(1)).error(), "Subscribing should succeed");
+
+        Files.writeString(file, "changed");
+        while (transport.messages.size() < 3) {
+            Thread.sleep(20);
+        }
+        McpSchema.JSONRPCNotification notification = (McpSchema.JSONRPCNotification) transport.messages.get(2);
+        assertEquals("notifications/resources/updated", notification.method());
+        assertEquals(uri, notification.params().get("uri"));
+    }
+
+    /**
+     * Transport recording the messages sent to the client.
+     */
+    private static final class RecordingTransport implements McpServerTransport {
+        private final List<McpSchema.JSONRPCMessage> messages = new CopyOnWriteArrayList<>();
+        private final ObjectMapper objectMapper;
+
+        private RecordingTransport(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Mono<Void> sendMessage(McpSchema.JSONRPCMessage message) {
+            return Mono.fromRunnable(() -> messages.add(message));
+        }
+
+        @Override
+        public <T> T unmarshalFrom(Object data, TypeReference<T> typeRef) {
+            return objectMapper.convertValue(data, typeRef);
+        }
+
+        @Override
+        public Mono<Void> closeGracefully() {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package user.jakecarr.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Measures the heap used to base64-encode a large binary file, comparing reading the whole file before
+ * encoding it with the chunked encoding of {@link FileContentReader}. Both return the whole encoding as a
+ * string, as tool and resource responses need it, so the peak includes that string either way.
+ * <p>
+ * This is not a unit test and is not run by the build. Run it after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> user.jakecarr.util.Base64EncodingBenchmark [sizeMb]};
+ * a heap of at least four times the file size, such as {@code -Xmx1g} for the default 100 MB, lets the
+ * unchunked variant complete.
+ */
+public final class Base64EncodingBenchmark {
+
+    private Base64EncodingBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The file size in megabytes, 100 by default
+     * @throws IOException If the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Path file = Files.createTempFile("base64-benchmark", ".bin");
+        try {
+            byte[] bytes = new byte[sizeMb * 1024 * 1024];
+            new Random(42).nextBytes(bytes);
+            Files.write(file, bytes);
+            bytes = null;
+
+            FileContentReader reader = new FileContentReader();
+            for (int round = 0; round < 3; round++) {
+                measure("readAllBytes + encodeToString", () -> Base64.getEncoder().encodeToString(Files.readAllBytes(file)).length());
+                measure("FileContentReader.readBinary", () -> reader.readBinary(file, null).length());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void measure(String name, Encoding encoding) throws IOException {
+        System.gc();
+        long baseline = heapUsed();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        long started = System.nanoTime();
+        long result = encoding.run();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%-32s peak heap above baseline %5d MB, %5d ms (result %d)%n",
+                name, (peak - baseline) / (1024 * 1024), elapsedMs, result);
+    }
+
+    private static long heapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * One way of encoding the file.
+     */
+    private interface Encoding {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,97 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.ChangeSet;
+import user.jakecarr.model.ChangeType;
+import user.jakecarr.model.FileChange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ChangeJournal.
+ */
+public class ChangeJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ChangeJournal journal;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        journal = new ChangeJournal(2, 1000, 1000);
+        for (int i = 0; i < 3; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + i));
+            for (int j = 0; j < 3; j++) {
+                Files.writeString(dir.resolve("file" + j + ".txt"), "content");
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testChangesSinceToken() throws IOException, InterruptedException {
+        ChangeSet first = journal.getChanges(tempDir, null);
+        assertTrue(first.getChanges().isEmpty(), "Starting to track should not report changes");
+        assertFalse(first.isReset());
+
+        Files.writeString(tempDir.resolve("dir0").resolve("file1.txt"), "rewritten in place");
+        Files.delete(tempDir.resolve("dir1").resolve("file2.txt"));
+        Path added = Files.createDirectories(tempDir.resolve("dir2").resolve("added"));
+        Files.writeString(added.resolve("new.txt"), "new");
+        // Added and deleted again between two calls, so it never shows up
+        Path shortLived = Files.writeString(tempDir.resolve("transient.txt"), "transient");
+        Files.delete(shortLived);
+
+        Map<String, ChangeType> expected = new HashMap<>();
+        expected.put(tempDir.resolve("dir0").resolve("file1.txt").toString(), ChangeType.MODIFIED);
+        expected.put(tempDir.resolve("dir1").resolve("file2.txt").toString(), ChangeType.DELETED);
+        expected.put(added.toString(), ChangeType.ADDED);
+        expected.put(added.resolve("new.txt").toString(), ChangeType.ADDED);
+
+        // Watch events arrive asynchronously, so poll until the journal has seen all of them
+        Map<String, ChangeType> changes = new HashMap<>();
+        String token = first.getToken();
+        while (!changes.equals(expected)) {
+            Thread.sleep(20);
+            ChangeSet next = journal.getChanges(tempDir, token);
+            assertFalse(next.isReset(), "A current token should not be reset");
+            for (FileChange change : next.getChanges()) {
+                changes.put(change.getPath(), change.getType());
+            }
+            token = next.getToken();
+        }
+
+        assertTrue(journal.getChanges(tempDir, token).getChanges().isEmpty(), "Changes should be reported once");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testUnknownTokenIsReset() throws IOException {
+        String token = journal.getChanges(tempDir.resolve("dir0"), null).getToken();
+        // Tracking more directories than the limit drops the least recently used one
+        journal.getChanges(tempDir.resolve("dir1"), null);
+        journal.getChanges(tempDir.resolve("dir2"), null);
+
+        ChangeSet changes = journal.getChanges(tempDir.resolve("dir0"), token);
+        assertTrue(changes.isReset(), "A token of a dropped directory should be reset");
+        assertFalse(journal.getChanges(tempDir.resolve("dir0"), changes.getToken()).isReset(),
+                "The token returned with the reset should be valid");
+        assertThrows(IllegalArgumentException.class, () -> journal.getChanges(tempDir, "not a token"));
+    }
+}
@@ -0,0 +1,116 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.FileContent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ContentCache.
+ */
+public class ContentCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testRepeatedReadIsServedFromCache() throws IOException {
+        ContentCache cache = new ContentCache(1024 * 1024);
+        FileContentReader reader = new FileContentReader(0, 0, null, cache);
+        Path file = tempDir.resolve("config.txt");
+        Files.writeString(file, "key=value\n");
+
+        FileContent first = reader.read(file, (ByteRange) null);
+        FileContent second = reader.read(file, (ByteRange) null);
+
+        assertEquals("key=value\n", second.getContent(), "Cached content should match the file");
+        assertEquals(first.getSize(), second.getSize(), "Cached size should match the file");
+        assertFalse(second.isBinary(), "Cached content should stay text");
+        assertEquals(1, cache.getMissCount(), "First read should miss");
+        assertEquals(1, cache.getHitCount(), "Second read should hit");
+        assertEquals("key=value\n", reader.readText(file, (ByteRange) null), "Text read should be served from the cache");
+        assertEquals(2, cache.getHitCount(), "Text read should hit");
+
+        reader.read(file, ByteRange.of(0, 3));
+        assertEquals(2, cache.getHitCount(), "Range reads should bypass the cache");
+        assertEquals(1, cache.getMissCount(), "Range reads should bypass the cache");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testChangedFileIsReadAgain() throws IOException {
+        ContentCache cache = new ContentCache(1024 * 1024);
+        FileContentReader reader = new FileContentReader(0, 0, null, cache);
+        Path file = tempDir.resolve("changing.txt");
+        Files.writeString(file, "before");
+        reader.read(file, (ByteRange) null);
+
+        Files.writeString(file, "after");
+        assertEquals("after", reader.read(file, (ByteRange) null).getContent(), "A resized file should be read again");
+
+        Files.writeString(file, "again");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+        assertEquals("again", reader.read(file, (ByteRange) null).getContent(), "A modified file should be read again");
+        assertEquals(0, cache.getHitCount(), "Changed files should not hit");
+        assertEquals(0, cache.getEvictionCount(), "Invalidation is not eviction");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testEvictsLeastRecentlyUsedWithinByteBudget() throws IOException {
+        ContentCache cache = new ContentCache(250);
+        assertFalse(new ContentCache(0).accepts(0), "A cache without a budget should accept nothing");
+        assertTrue(cache.accepts(250), "Content up to the budget should be accepted");
+        assertFalse(cache.accepts(251), "Content over the budget should not be accepted");
+        FileContentReader reader = new FileContentReader(0, 0, null, cache);
+        Path[] files = new Path[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = tempDir.resolve("file" + i + ".txt");
+            Files.writeString(files[i], String.valueOf(i).repeat(100));
+        }
+
+        reader.read(files[0], (ByteRange) null);
+        reader.read(files[1], (ByteRange) null);
+        reader.read(files[0], (ByteRange) null);
+        reader.read(files[2], (ByteRange) null);
+
+        assertEquals(1, cache.getEvictionCount(), "One file should be evicted");
+        assertEquals(200, cache.getWeight(), "Cache should hold two files");
+        long hits = cache.getHitCount();
+        reader.read(files[0], (ByteRange) null);
+        assertEquals(hits + 1, cache.getHitCount(), "Recently used file should stay cached");
+        reader.read(files[1], (ByteRange) null);
+        assertEquals(hits + 1, cache.getHitCount(), "Least recently used file should be evicted");
+
+        Path large = tempDir.resolve("large.txt");
+        Files.writeString(large, "x".repeat(300));
+        reader.read(large, (ByteRange) null);
+        assertEquals(200, cache.getWeight(), "A file larger than the budget should not be cached");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testBinaryContentIsWeightedByEncodedLength() throws IOException {
+        ContentCache cache = new ContentCache(1024);
+        FileContentReader reader = new FileContentReader(0, 0, null, cache);
+        Path file = tempDir.resolve("data.bin");
+        byte[] bytes = new byte[300];
+        Files.write(file, bytes);
+
+        String encoded = reader.readBinary(file, null);
+        assertEquals(Base64.getEncoder().encodeToString(bytes), encoded, "Binary content should be base64");
+        assertEquals(400, cache.getWeight(), "Binary content should weigh its encoded length");
+        assertEquals(encoded, reader.readBinary(file, null), "Binary read should be served from the cache");
+        assertEquals(1, cache.getHitCount(), "Binary read should hit");
+    }
+}
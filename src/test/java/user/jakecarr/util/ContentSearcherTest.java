@@ -0,0 +1,134 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.SearchMatch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ContentSearcher.
+ */
+public class ContentSearcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testFindsLiteralWithContext() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("test.txt"),
+                "one\r\ntwo needle\r\nthree\nfour needle needle\nfive\n");
+
+        List<SearchMatch> matches = ContentSearcher.literal("needle", false).search(file, 1, 10);
+        assertEquals(2, matches.size(), "Each matching line should be returned once");
+        SearchMatch first = matches.get(0);
+        assertEquals(file.toString(), first.getPath(), "The match should name its file");
+        assertEquals(2, first.getLineNumber(), "Line numbers should start at 1");
+        assertEquals("two needle", first.getLine(), "The carriage return should be stripped");
+        assertEquals(List.of("one"), first.getBefore(), "One line of context should precede the match");
+        assertEquals(List.of("three"), first.getAfter(), "One line of context should follow the match");
+        assertEquals(4, matches.get(1).getLineNumber(), "Lines should be counted between matches");
+        assertEquals(List.of("five"), matches.get(1).getAfter(), "Context should stop at the end of the file");
+
+        assertEquals(1, ContentSearcher.literal("needle", false).search(file, 0, 1).size(),
+                "The search should stop at the maximum number of matches");
+        assertTrue(ContentSearcher.literal("NEEDLE", false).search(file, 0, 10).isEmpty(),
+                "Literals should match case-sensitively");
+        assertEquals(2, ContentSearcher.literal("NEEDLE", true).search(file, 0, 10).size(),
+                "Literals should match ignoring case when asked");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testMergesOverlappingContext() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("test.txt"),
+                "one\ntwo\nneedle 3\nfour\nneedle 5\nneedle 6\nseven\neight\nnine\nneedle 10\neleven\n");
+
+        for (ContentSearcher searcher : new ContentSearcher[] {
+                ContentSearcher.literal("needle", false), ContentSearcher.regex("needle", false) }) {
+            List<SearchMatch> matches = searcher.search(file, 2, 10);
+            assertEquals(List.of(3L, 5L, 6L, 10L), matches.stream().map(SearchMatch::getLineNumber).toList(),
+                    "Every matching line should be returned");
+            // Like grep, each line is returned once, as a match or as the context of one
+            assertEquals(List.of("one", "two"), matches.get(0).getBefore(), "First match has full context");
+            assertEquals(List.of("four"), matches.get(0).getAfter(), "Context should stop at the next match");
+            assertEquals(List.of(), matches.get(1).getBefore(), "Returned lines should not be repeated");
+            assertEquals(List.of(), matches.get(1).getAfter(), "An adjacent match should not be context");
+            assertEquals(List.of(), matches.get(2).getBefore(), "An adjacent match should have no context before");
+            assertEquals(List.of("seven", "eight"), matches.get(2).getAfter(), "Context should follow the match");
+            assertEquals(List.of("nine"), matches.get(3).getBefore(), "Context should start after returned lines");
+            assertEquals(List.of("eleven"), matches.get(3).getAfter(), "Context should stop at the end of the file");
+        }
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testFindsRegex() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("test.txt"), "int a = 1;\r\nlong b = 22;\ncafé 333\n");
+
+        List<SearchMatch> matches = ContentSearcher.regex("=\\s*\\d{2};$", false).search(file, 0, 10);
+        assertEquals(1, matches.size(), "Only the line matching the expression should be returned");
+        assertEquals(2, matches.get(0).getLineNumber(), "The line number of the match should be returned");
+
+        assertEquals(1, ContentSearcher.regex("CAFÉ", true).search(file, 0, 10).size(),
+                "Expressions should match ignoring case when asked");
+        assertEquals(1, ContentSearcher.regex("1;$", false).search(file, 0, 10).size(),
+                "The carriage return should not be matched");
+        assertThrows(IllegalArgumentException.class, () -> ContentSearcher.regex("(", false),
+                "An invalid expression should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> ContentSearcher.literal("", false),
+                "An empty literal should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> ContentSearcher.literal("a\nb", false),
+                "A literal spanning lines should be rejected");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testSkipsBinaryFilesAndCutsLongLines() throws IOException {
+        Path binary = Files.write(tempDir.resolve("binary.bin"), new byte[] { 'n', 'e', 'e', 'd', 'l', 'e', 0, '\n' });
+        assertTrue(ContentSearcher.literal("needle", false).search(binary, 0, 10).isEmpty(),
+                "Binary files should be skipped");
+
+        String line = "é".repeat(ContentSearcher.MAX_LINE_LENGTH) + " needle";
+        Path file = Files.writeString(tempDir.resolve("long.txt"), line);
+        String found = ContentSearcher.literal("needle", false).search(file, 0, 10).get(0).getLine();
+        assertEquals("é".repeat(ContentSearcher.MAX_LINE_LENGTH / 2), found,
+                "Long lines should be cut at a character boundary");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testMappedLiteralSearchMatchesLineByLineSearch() throws IOException {
+        Random random = new Random(42);
+        String[] words = { "alpha", "beta", "gamma", "delta", "ab", "aab", "中文", "é", "\n", "\n" };
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2 * ContentSearcher.MAP_THRESHOLD) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        Path file = Files.writeString(tempDir.resolve("large.txt"), text);
+        assertTrue(Files.size(file) >= ContentSearcher.MAP_THRESHOLD, "The file should be large enough to be mapped");
+
+        for (String literal : new String[] { "aab", "ab a", "中文 é", "delta" }) {
+            List<Long> expected = new ArrayList<>();
+            String[] lines = text.toString().split("\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].contains(literal)) {
+                    expected.add(i + 1L);
+                }
+            }
+            List<Long> actual = new ArrayList<>();
+            ContentSearcher.literal(literal, false).search(file, 1, Integer.MAX_VALUE)
+                    .forEach(m -> actual.add(m.getLineNumber()));
+            assertEquals(expected, actual, "Line numbers of matches of " + literal);
+        }
+    }
+}
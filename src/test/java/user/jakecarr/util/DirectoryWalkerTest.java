@@ -0,0 +1,296 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.EntryType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DirectoryWalker.
+ */
+public class DirectoryWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        pool = new ForkJoinPool(4);
+
+        // Create a tree that is both wide and deep
+        for (int i = 0; i < 12; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + i).resolve("nested"));
+            for (int j = 0; j < 40; j++) {
+                Files.writeString(dir.resolve("file" + j + ".txt"), "content");
+                Files.writeString(dir.getParent().resolve("sibling" + j + ".txt"), "content");
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testParallelWalkMatchesSequentialOrder() throws IOException {
+        List<Path> sequential = walk(null, null, Integer.MAX_VALUE);
+        List<Path> parallel = walk(pool, null, Integer.MAX_VALUE);
+
+        assertEquals(1 + 12 * (2 + 80), sequential.size(), "Walk should visit every entry once");
+        assertEquals(sequential, parallel, "Parallel walk should produce the sequential order");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testParallelWalkResumesAfterPosition() throws IOException {
+        List<Path> all = walk(null, null, Integer.MAX_VALUE);
+
+        // Resume from the middle of a nested directory
+        Path position = all.get(500);
+        List<String> resumeAfter = new ArrayList<>();
+        tempDir.relativize(position).forEach(name -> resumeAfter.add(name.toString()));
+
+        List<Path> rest = walk(pool, resumeAfter, Integer.MAX_VALUE);
+        assertEquals(all.subList(501, all.size()), rest, "Resumed walk should continue after the position");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testClosingPartialWalk() throws IOException {
+        List<Path> partial = walk(pool, null, 10);
+        assertEquals(10, partial.size(), "Partial walk should stop at the limit");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testFilterPrunesExcludedSubtrees() throws IOException {
+        Path modules = Files.createDirectories(tempDir.resolve("dir3").resolve("node_modules").resolve("pkg"));
+        Files.writeString(modules.resolve("index.js"), "module");
+
+        WalkFilter filter = new WalkFilter(2, List.of("*.txt"), List.of("node_modules", "dir1*"), EntryType.FILE);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryWalker<Path> walker = new DirectoryWalker<>(tempDir, true, null, filter,
+                (path, attrs) -> path, pool)) {
+            while (walker.hasNext()) {
+                paths.add(walker.next().getValue());
+            }
+        }
+
+        // Only the depth-2 sibling files of the directories that are not excluded remain
+        assertEquals(9 * 40, paths.size(), "Filtered walk should return the matching files only");
+        for (Path path : paths) {
+            Path relative = tempDir.relativize(path);
+            assertEquals(2, relative.getNameCount(), "Entries should not be deeper than the maximum depth");
+            assertTrue(path.getFileName().toString().endsWith(".txt"), "Entries should match the include pattern");
+            assertFalse(relative.getName(0).toString().startsWith("dir1"), "Excluded directories should be pruned");
+        }
+    }
+
+    @Test
+    @Timeout(30) // 30 seconds timeout
+    public void testDeadlineTruncatesAndResumes() throws IOException {
+        List<Path> all = walk(null, null, Integer.MAX_VALUE);
+
+        // A slow loader makes every walk run into its deadline
+        DirectoryWalker.EntryLoader<Path> slowLoader = (path, attrs) -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return path;
+        };
+
+        List<Path> paths = new ArrayList<>();
+        List<String> resumeAfter = null;
+        int truncatedWalks = 0;
+        while (true) {
+            try (DirectoryWalker<Path> walker = new DirectoryWalker<>(tempDir, true, resumeAfter,
+                    WalkFilter.NONE, slowLoader, pool)) {
+                walker.setLimits(Long.MAX_VALUE, 20);
+                while (walker.hasNext()) {
+                    paths.add(walker.next().getValue());
+                }
+                if (!walker.isTruncated()) {
+                    break;
+                }
+                truncatedWalks++;
+                resumeAfter = new ArrayList<>();
+                for (Path name : tempDir.relativize(walker.getPosition())) {
+                    resumeAfter.add(name.toString());
+                }
+            }
+        }
+
+        assertTrue(truncatedWalks > 0, "The deadline should stop the walk");
+        assertEquals(all, paths, "Resumed walks should add up to the full walk");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testFollowLinksStopsAtLoops() throws IOException {
+        Files.createSymbolicLink(tempDir.resolve("alias"), tempDir.resolve("dir1"));
+        Files.createSymbolicLink(tempDir.resolve("dir0").resolve("nested").resolve("loop"), tempDir);
+
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryWalker<Path> walker = new DirectoryWalker<>(tempDir, true, null, WalkFilter.NONE,
+                (path, attrs) -> path, pool, true, null, true)) {
+            while (walker.hasNext()) {
+                paths.add(walker.next().getValue());
+            }
+        }
+
+        // The alias is walked once, and the loop back to the root is listed but not entered
+        Path alias = tempDir.resolve("alias");
+        assertEquals(walk(null, null, Integer.MAX_VALUE).size() + 81, paths.size(),
+                "Walk should add the linked directory once");
+        assertTrue(paths.contains(alias.resolve("nested").resolve("file0.txt")), "Linked directory should be walked");
+        assertTrue(paths.contains(tempDir.resolve("dir0").resolve("nested").resolve("loop")), "Loop should be listed");
+        assertFalse(paths.contains(tempDir.resolve("dir0").resolve("nested").resolve("loop").resolve("alias")),
+                "Loop should not be entered");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testFollowLinksWalksDiamondChainLinearly() throws IOException {
+        // Every level links twice to the next, so each level is reached twice as often as the one before
+        Path root = createLinkChain("chain", "a", "b");
+
+        List<Path> all = walkLinks(root, null, false, Integer.MAX_VALUE);
+
+        // Each level is entered through its first link only
+        assertEquals(2 + 12 * 3 + 1, all.size(), "Each linked directory should be walked once");
+        Path level = root.resolve("start");
+        for (int i = 0; i < 12; i++) {
+            assertTrue(all.contains(level.resolve("b")), "Second link should be listed");
+            assertFalse(all.contains(level.resolve("b").resolve("file.txt")), "Second link should not be entered");
+            level = level.resolve("a");
+        }
+
+        // A page resumed at a link knows whether it was followed, so pages add up to the single walk
+        for (int pageSize : new int[] {1, 4, 7}) {
+            assertEquals(all, walkLinkPages(root, pageSize), "Pages should match a single walk");
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testFollowLinksPagesWideDiamondChainLinearly() throws IOException {
+        // The links are apart, so a page may stop between them; the resumed walk re-reads the first link
+        Path root = createLinkChain("wide", "a", "z");
+
+        List<Path> all = walkLinks(root, null, false, Integer.MAX_VALUE);
+        assertEquals(2 + 12 * 3 + 1, all.size(), "Each linked directory should be walked once");
+
+        for (int pageSize : new int[] {1, 4, 7}) {
+            assertEquals(all, walkLinkPages(root, pageSize), "Pages should match a single walk");
+        }
+    }
+
+    /**
+     * Helper method to create a chain of directories outside the walk where every level links twice to the next.
+     *
+     * @param name The name of the walk root
+     * @param first The name of the first link in each level
+     * @param second The name of the second link in each level
+     * @return The walk root, holding a link to the first level
+     */
+    private Path createLinkChain(String name, String first, String second) throws IOException {
+        Path outside = Files.createDirectories(tempDir.resolve(name + "-outside"));
+        for (int i = 0; i <= 12; i++) {
+            Path level = Files.createDirectories(outside.resolve("d" + i));
+            Files.writeString(level.resolve("file.txt"), "content");
+            if (i > 0) {
+                Files.createSymbolicLink(outside.resolve("d" + (i - 1)).resolve(first), level);
+                Files.createSymbolicLink(outside.resolve("d" + (i - 1)).resolve(second), level);
+            }
+        }
+        Path root = Files.createDirectories(tempDir.resolve(name));
+        Files.createSymbolicLink(root.resolve("start"), outside.resolve("d0"));
+        return root;
+    }
+
+    /**
+     * Helper method to walk a directory following symbolic links page by page, like a client following cursors.
+     *
+     * @param root The directory to walk
+     * @param pageSize The maximum number of entries in each page
+     * @return The visited paths of all pages
+     */
+    private List<Path> walkLinkPages(Path root, int pageSize) throws IOException {
+        List<Path> paged = new ArrayList<>();
+        List<String> resumeAfter = null;
+        boolean resumeFollowed = false;
+        while (true) {
+            try (DirectoryWalker<Path> walker = new DirectoryWalker<>(root, true, resumeAfter, WalkFilter.NONE,
+                    (path, attrs) -> path, pool, true, null, true, resumeFollowed)) {
+                for (int i = 0; i < pageSize && walker.hasNext(); i++) {
+                    paged.add(walker.next().getValue());
+                }
+                if (!walker.hasNext()) {
+                    return paged;
+                }
+                resumeAfter = new ArrayList<>();
+                for (Path name : root.relativize(walker.getPosition())) {
+                    resumeAfter.add(name.toString());
+                }
+                resumeFollowed = walker.isPositionFollowed();
+            }
+        }
+    }
+
+    /**
+     * Helper method to walk a directory following symbolic links.
+     *
+     * @param root The directory to walk
+     * @param resumeAfter The position to resume after, or null
+     * @param resumeFollowed Whether the walk that stopped at the position descended into it
+     * @param limit The maximum number of entries to collect
+     * @return The visited paths
+     */
+    private List<Path> walkLinks(Path root, List<String> resumeAfter, boolean resumeFollowed, int limit)
+            throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryWalker<Path> walker = new DirectoryWalker<>(root, true, resumeAfter, WalkFilter.NONE,
+                (path, attrs) -> path, pool, true, null, true, resumeFollowed)) {
+            while (paths.size() < limit && walker.hasNext()) {
+                paths.add(walker.next().getValue());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Helper method to walk the temporary directory.
+     *
+     * @param walkPool The pool to walk with, or null to walk sequentially
+     * @param resumeAfter The position to resume after, or null
+     * @param limit The maximum number of entries to collect
+     * @return The visited paths
+     */
+    private List<Path> walk(ForkJoinPool walkPool, List<String> resumeAfter, int limit) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryWalker<Path> walker = new DirectoryWalker<>(tempDir, true, resumeAfter,
+                WalkFilter.NONE, (path, attrs) -> path, walkPool)) {
+            while (paths.size() < limit && walker.hasNext()) {
+                paths.add(walker.next().getValue());
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,296 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.FileContent;
+import user.jakecarr.model.FileTail;
+import user.jakecarr.model.LineRange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FileContentReader.
+ */
+public class FileContentReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileContentReader heapReader;
+    private FileContentReader mappingReader;
+    private Path textFile;
+    private Path binaryFile;
+    private String text;
+    private byte[] binary;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        heapReader = new FileContentReader(0, null);
+        mappingReader = new FileContentReader(1, null);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append("line ").append(i).append(" é中\n");
+        }
+        text = builder.toString();
+        textFile = tempDir.resolve("large.txt");
+        Files.writeString(textFile, text);
+
+        binary = new byte[100001];
+        new Random(42).nextBytes(binary);
+        binary[0] = 0;
+        binaryFile = tempDir.resolve("large.bin");
+        Files.write(binaryFile, binary);
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testLineRangesAcrossIndexCheckpoints() throws IOException {
+        FileContentReader cachingReader = new FileContentReader(0, new LineIndexCache(1000));
+        String[] lines = text.split("(?<=\n)");
+        int stride = LineIndex.STRIDE;
+        int[][] ranges = {
+            { 1, 1 }, { stride - 1, stride + 2 }, { stride + 1, stride + 1 }, { 3 * stride, 5 * stride + 7 },
+            { 19999, 20000 }, { 20000, 20005 },
+        };
+        for (int[] range : ranges) {
+            String expected = String.join("", Arrays.copyOfRange(lines, range[0] - 1, Math.min(range[1], lines.length)));
+            for (int round = 0; round < 2; round++) {
+                assertEquals(expected, cachingReader.readText(textFile, LineRange.of(range[0], range[1])),
+                        "Lines " + range[0] + "-" + range[1] + " in round " + round);
+            }
+        }
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testMappedDecodingMatchesHeapDecoding() throws IOException {
+        byte[] truncatedCharacters = new byte[100_000];
+        for (int i = 0; i < truncatedCharacters.length; i++) {
+            truncatedCharacters[i] = (byte) (i % 3 == 0 ? 'x' : i % 3 == 1 ? 0xE4 : 0xB8);
+        }
+        byte[][] contents = {
+            "plain ascii\n".repeat(100).getBytes(StandardCharsets.UTF_8),
+            "multi-byte é中😀\n".repeat(100).getBytes(StandardCharsets.UTF_8),
+            { 'a', (byte) 0xC3, 'b', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'c', (byte) 0xE4, (byte) 0xB8 },
+            // Characters and malformed sequences that straddle the boundaries of decoding chunks
+            "é中😀\u00ff".repeat(20000).concat("a\uFFFD").getBytes(StandardCharsets.UTF_8),
+            truncatedCharacters,
+        };
+        for (int i = 0; i < contents.length; i++) {
+            Path file = Files.write(tempDir.resolve("decode" + i + ".txt"), contents[i]);
+            assertEquals(heapReader.readText(file, (ByteRange) null), mappingReader.readText(file, (ByteRange) null),
+                    "Mapped decoding of content " + i);
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testMappedReadsMatchHeapReads() throws IOException {
+        assertEquals(text, mappingReader.readText(textFile, (ByteRange) null), "Mapped text should decode fully");
+        assertEquals(heapReader.readText(textFile, ByteRange.of(1000, 5000)),
+                mappingReader.readText(textFile, ByteRange.of(1000, 5000)), "Mapped text range");
+        assertEquals(heapReader.readText(textFile, LineRange.of(100, 200)),
+                mappingReader.readText(textFile, LineRange.of(100, 200)), "Mapped line range");
+
+        assertEquals(Base64.getEncoder().encodeToString(binary), mappingReader.readBinary(binaryFile, null),
+                "Mapped binary should encode fully");
+        assertEquals(heapReader.readBinary(binaryFile, ByteRange.parse("-4097")),
+                mappingReader.readBinary(binaryFile, ByteRange.parse("-4097")), "Mapped binary range");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testReadClassifiesWholeRange() throws IOException {
+        byte[] latin1 = ("plain ascii\n".repeat(1000) + "caf\u00e9\n").getBytes(StandardCharsets.ISO_8859_1);
+        Path latin1File = Files.write(tempDir.resolve("latin1.txt"), latin1);
+        for (FileContentReader reader : new FileContentReader[] { heapReader, mappingReader }) {
+            FileContent invalid = reader.read(latin1File, (ByteRange) null);
+            assertTrue(invalid.isBinary(), "Invalid UTF-8 past the first 8 KB should be read as binary");
+            assertArrayEquals(latin1, Base64.getDecoder().decode(invalid.getContent()), "Invalid UTF-8 bytes");
+
+            FileContent ascii = reader.read(latin1File, ByteRange.of(0, 12000));
+            assertFalse(ascii.isBinary(), "An ASCII range should be read as text");
+            assertEquals("plain ascii\n".repeat(1000), ascii.getContent(), "ASCII range");
+
+            // The range starts on the second byte of the 'é' of "line 0 é中"
+            FileContent cut = reader.read(textFile, ByteRange.of(8, 10));
+            assertFalse(cut.isBinary(), "A range cutting a character should still be read as text");
+            assertEquals("\uFFFD中\nline ", cut.getContent(), "Cut character should be replaced");
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testBinaryEncodingAcrossChunks() throws IOException {
+        for (FileContentReader reader : new FileContentReader[] { heapReader, mappingReader }) {
+            assertEquals(Base64.getEncoder().encodeToString(binary), reader.readBinary(binaryFile, null),
+                    "Chunked encoding should match encoding the whole file");
+            assertEquals(Base64.getEncoder().encodeToString(Arrays.copyOfRange(binary, 49151, 98305)),
+                    reader.readBinary(binaryFile, ByteRange.of(49151, 49154)), "Range spanning chunk boundaries");
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testReadTruncatesLargeResponses() throws IOException {
+        for (long mapThreshold : new long[] { 0, 1 }) {
+            FileContentReader reader = new FileContentReader(mapThreshold, 1024, null);
+            byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+
+            StringBuilder joined = new StringBuilder();
+            long offset = 0;
+            FileContent content;
+            do {
+                content = reader.read(textFile, ByteRange.of(offset, -1));
+                assertEquals(encoded.length, content.getSize(), "Size of the file");
+                assertTrue(content.getLength() <= 1024, "Content should be within the limit");
+                assertFalse(content.getContent().contains("\uFFFD"), "No character should be split");
+                joined.append(content.getContent());
+                offset = content.getNextOffset();
+            } while (content.isTruncated());
+            assertEquals(text, joined.toString(), "Continued reads should join to the whole file");
+
+            FileContent binaryContent = reader.read(binaryFile, (ByteRange) null);
+            assertTrue(binaryContent.isTruncated(), "Binary content should be truncated");
+            assertEquals(1023, binaryContent.getLength(), "Binary content should end at a multiple of 3 bytes");
+            assertArrayEquals(Arrays.copyOf(binary, 1023), Base64.getDecoder().decode(binaryContent.getContent()),
+                    "Truncated binary content");
+
+            FileContent lines = reader.read(textFile, LineRange.of(1, 1000));
+            assertTrue(lines.isTruncated(), "Long line range should be truncated");
+            assertTrue(text.startsWith(lines.getContent()), "Line range should start at the first line");
+
+            FileContent small = reader.read(textFile, ByteRange.of(0, 100));
+            assertFalse(small.isTruncated(), "Small range should not be truncated");
+            assertEquals(100, small.getNextOffset(), "Next offset of a complete read");
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testReadContinuesFromSniffedHead() throws IOException {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        for (int length : new int[] { 0, 1, 8191, 8192, 8193, 20000 }) {
+            FileContent content = heapReader.read(textFile, ByteRange.of(0, length));
+            assertEquals(new String(Arrays.copyOf(encoded, length), StandardCharsets.UTF_8), content.getContent(),
+                    "Range of " + length + " bytes from the start");
+        }
+
+        Path shortText = tempDir.resolve("short.txt");
+        Files.writeString(shortText, "short");
+        assertEquals("short", heapReader.read(shortText, (ByteRange) null).getContent(), "File shorter than the head");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testReadRejectsMissingAndNonRegularFiles() {
+        IOException missing = assertThrows(IOException.class,
+                () -> heapReader.read(tempDir.resolve("missing.txt"), (ByteRange) null));
+        assertTrue(missing.getMessage().contains("File does not exist"), "Missing file");
+
+        IOException directory = assertThrows(IOException.class, () -> heapReader.read(tempDir, (ByteRange) null));
+        assertTrue(directory.getMessage().contains("Cannot read content of a directory"), "Directory");
+        assertThrows(IOException.class, () -> heapReader.read(tempDir, LineRange.of(1, 2)), "Directory lines");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testTailReadsLastLines() throws IOException {
+        FileTail tail = heapReader.tail(textFile, 3);
+        assertEquals("line 19997 é中\nline 19998 é中\nline 19999 é中\n", tail.getContent(), "Last three lines");
+        assertEquals(Files.size(textFile), tail.getSize(), "Size of the file");
+        assertFalse(tail.isTruncated(), "Short tail should not be truncated");
+
+        Path noFinalNewline = tempDir.resolve("partial.log");
+        Files.writeString(noFinalNewline, "one\ntwo\nthree");
+        assertEquals("two\nthree", heapReader.tail(noFinalNewline, 2).getContent(), "Unterminated last line");
+        assertEquals("one\ntwo\nthree", heapReader.tail(noFinalNewline, 10).getContent(), "Fewer lines than asked");
+        assertEquals("", heapReader.tail(noFinalNewline, 0).getContent(), "No lines");
+
+        FileTail limited = new FileContentReader(0, 1024, null).tail(textFile, 1000);
+        assertTrue(limited.isTruncated(), "Long tail should be truncated");
+        assertTrue(limited.getContent().length() > 0 && text.endsWith(limited.getContent()), "Truncated tail");
+        assertFalse(limited.getContent().contains("\uFFFD"), "No character should be split");
+
+        assertThrows(IOException.class, () -> heapReader.tail(binaryFile, 1), "Binary files cannot be tailed");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testFollowReturnsAppendedText() throws IOException {
+        Path log = tempDir.resolve("service.log");
+        Files.writeString(log, "started\n");
+        FileTail tail = heapReader.tail(log, 10);
+        assertEquals("started\n", tail.getContent(), "Initial tail");
+
+        FileTail unchanged = heapReader.follow(log, tail.getToken());
+        assertEquals("", unchanged.getContent(), "Nothing appended");
+
+        byte[] appended = "request é\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(log, Arrays.copyOf(appended, 9), StandardOpenOption.APPEND);
+        FileTail partial = heapReader.follow(log, unchanged.getToken());
+        assertEquals("request ", partial.getContent(), "A character being written should be held back");
+
+        Files.write(log, Arrays.copyOfRange(appended, 9, appended.length), StandardOpenOption.APPEND);
+        FileTail rest = heapReader.follow(log, partial.getToken());
+        assertEquals("é\n", rest.getContent(), "Rest of the appended line");
+        assertFalse(rest.isRotated(), "Appending is not rotation");
+
+        Files.move(log, tempDir.resolve("service.log.1"));
+        Files.writeString(log, "rotated\n");
+        FileTail rotated = heapReader.follow(log, rest.getToken());
+        assertTrue(rotated.isRotated(), "A new file should be detected by its file key");
+        assertEquals("rotated\n", rotated.getContent(), "Rotated file should be read from the start");
+
+        Files.writeString(log, "");
+        FileTail truncated = heapReader.follow(log, rotated.getToken());
+        assertTrue(truncated.isRotated(), "A truncated file should be read from the start");
+
+        assertThrows(IllegalArgumentException.class, () -> heapReader.follow(log, "not a token"), "Malformed token");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testFollowWithoutResponseSizeLimit() throws IOException {
+        FileContentReader unlimited = new FileContentReader(0, 0, null);
+        Path log = tempDir.resolve("unlimited.log");
+        Files.writeString(log, "first\nsecond\n");
+        FileTail tail = unlimited.tail(log, 1);
+        assertEquals("second\n", tail.getContent(), "Last line without a response size limit");
+
+        Files.writeString(log, "third\n", StandardOpenOption.APPEND);
+        FileTail followed = unlimited.follow(log, tail.getToken());
+        assertEquals("third\n", followed.getContent(), "Appended text without a response size limit");
+        assertFalse(followed.isTruncated(), "An unlimited follow should not be truncated");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testReadSniffsMappedContent() throws IOException {
+        FileContent textContent = mappingReader.read(textFile, (ByteRange) null);
+        assertFalse(textContent.isBinary(), "Text file should be read as text");
+        assertEquals(text, textContent.getContent(), "Text content should match");
+
+        FileContent binaryContent = mappingReader.read(binaryFile, ByteRange.of(50000, 10));
+        assertTrue(binaryContent.isBinary(), "A range of a binary file should be sniffed from the file start");
+        assertEquals(10, Base64.getDecoder().decode(binaryContent.getContent()).length, "Range length");
+
+        Path shortText = tempDir.resolve("short.txt");
+        Files.write(shortText, "café".getBytes(StandardCharsets.UTF_8));
+        assertEquals("café", mappingReader.read(shortText, (ByteRange) null).getContent(), "Short mapped text");
+        assertEquals("", mappingReader.read(shortText, ByteRange.of(10, 5)).getContent(), "Empty range");
+    }
+}
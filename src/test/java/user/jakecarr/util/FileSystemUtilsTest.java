@@ -4,12 +4,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.ByteRange;
+import user.jakecarr.model.DiskUsage;
+import user.jakecarr.model.DiskUsageReport;
+import user.jakecarr.model.EntryType;
+import user.jakecarr.model.FileListingPage;
 import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.FileSortKey;
+import user.jakecarr.model.LineRange;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.model.SearchMatch;
+import user.jakecarr.model.SearchResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 
@@ -76,6 +88,45 @@ public class FileSystemUtilsTest {
         assertTrue(metadata.isWritable(), "Should be writable");
     }
 
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testGetFileMetadataMatchesAccessChecks() throws IOException {
+        // Create files with different permission modes where the file system supports them
+        Path plain = Files.writeString(tempDir.resolve("plain.txt"), "plain");
+        Path script = Files.writeString(tempDir.resolve("script.sh"), "#!/bin/sh");
+        Path hidden = Files.writeString(tempDir.resolve(".hidden"), "hidden");
+        if (Files.getFileStore(tempDir).supportsFileAttributeView("posix")) {
+            Files.setPosixFilePermissions(plain, PosixFilePermissions.fromString("r--------"));
+            Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+        }
+
+        // Verify the derived flags agree with the per-file access checks
+        for (Path path : List.of(plain, script, hidden, tempDir)) {
+            FileMetadata metadata = fileSystemUtils.getFileMetadata(path.toString());
+            assertEquals(Files.isReadable(path), metadata.isReadable(), "Readable flag should match for " + path);
+            assertEquals(Files.isWritable(path), metadata.isWritable(), "Writable flag should match for " + path);
+            assertEquals(Files.isExecutable(path), metadata.isExecutable(), "Executable flag should match for " + path);
+            assertEquals(Files.isHidden(path), metadata.isHidden(), "Hidden flag should match for " + path);
+        }
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testGetFileMetadataForSymbolicLink() throws IOException {
+        Path target = Files.writeString(tempDir.resolve("target.txt"), "target content");
+        Path link = tempDir.resolve("link.txt");
+        try {
+            Files.createSymbolicLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            return; // Symbolic links are not available on this platform
+        }
+
+        FileMetadata metadata = fileSystemUtils.getFileMetadata(link.toString());
+        assertTrue(metadata.isSymbolicLink(), "Should be a symbolic link");
+        assertTrue(metadata.isRegularFile(), "Should describe the link target");
+        assertEquals(Files.size(target), metadata.getSize(), "Size should be the size of the target");
+    }
+
     @Test
     @Timeout(5) // 5 seconds timeout
     public void testGetFileMetadataForNonExistentFile() {
@@ -131,6 +182,325 @@ public class FileSystemUtilsTest {
         assertTrue(foundSubfile, "Subfile should be included in recursive listing");
     }
 
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testListFilesPaginated() throws IOException {
+        // Create a small tree
+        Files.writeString(tempDir.resolve("b.txt"), "b");
+        Files.writeString(tempDir.resolve("a.txt"), "a");
+        Path subDir = Files.createDirectory(tempDir.resolve("c-dir"));
+        Files.writeString(subDir.resolve("d.txt"), "d");
+        Files.writeString(subDir.resolve("e.txt"), "e");
+        Files.writeString(tempDir.resolve("f.txt"), "f");
+
+        // Walk the tree two entries at a time
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        options.setPageSize(2);
+
+        List<String> paths = new ArrayList<>();
+        int pages = 0;
+        do {
+            FileListingPage page = fileSystemUtils.listFiles(tempDir.toString(), options);
+            assertTrue(page.getFiles().size() <= 2, "Page should not exceed the page size");
+            page.getFiles().forEach(metadata -> paths.add(metadata.getPath()));
+            options.setCursor(page.getNextCursor());
+            pages++;
+        } while (options.getCursor() != null);
+
+        // Verify the pages form a stable depth-first, name-sorted listing
+        List<String> expected = List.of(
+                tempDir.toString(),
+                tempDir.resolve("a.txt").toString(),
+                tempDir.resolve("b.txt").toString(),
+                subDir.toString(),
+                subDir.resolve("d.txt").toString(),
+                subDir.resolve("e.txt").toString(),
+                tempDir.resolve("f.txt").toString());
+        assertEquals(expected, paths, "Paged listing should match the full listing order");
+        assertEquals(4, pages, "Seven entries in pages of two should take four pages");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testListFilesCursorSurvivesRemovedEntry() throws IOException {
+        Files.writeString(tempDir.resolve("a.txt"), "a");
+        Files.writeString(tempDir.resolve("b.txt"), "b");
+        Files.writeString(tempDir.resolve("c.txt"), "c");
+
+        ListingOptions options = new ListingOptions();
+        options.setPageSize(1);
+        FileListingPage first = fileSystemUtils.listFiles(tempDir.toString(), options);
+        assertEquals("a.txt", first.getFiles().get(0).getName(), "First page should hold the first name");
+
+        // Remove the entry the cursor points at and resume
+        Files.delete(tempDir.resolve("a.txt"));
+        options.setCursor(first.getNextCursor());
+        FileListingPage second = fileSystemUtils.listFiles(tempDir.toString(), options);
+        assertEquals("b.txt", second.getFiles().get(0).getName(), "Walk should resume after the removed entry");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testListFilesPagesFollowedLinksOnce() throws IOException {
+        Path shared = Files.createDirectories(tempDir.resolve("shared"));
+        Files.writeString(shared.resolve("a.txt"), "a");
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Files.createSymbolicLink(root.resolve("first"), shared);
+        Files.createSymbolicLink(root.resolve("second"), shared);
+
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        options.setFollowLinks(true);
+        options.setPageSize(1);
+        List<String> paths = new ArrayList<>();
+        do {
+            FileListingPage page = fileSystemUtils.listFiles(root.toString(), options);
+            page.getFiles().forEach(metadata -> paths.add(metadata.getPath()));
+            options.setCursor(page.getNextCursor());
+        } while (options.getCursor() != null);
+
+        // The second link is listed on a later page than the first was followed, and is still not entered
+        List<String> expected = List.of(
+                root.toString(),
+                root.resolve("first").toString(),
+                root.resolve("first").resolve("a.txt").toString(),
+                root.resolve("second").toString());
+        assertEquals(expected, paths, "Paged listing should enter the shared directory once");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testListFilesRejectsForeignCursor() throws IOException {
+        Path otherDir = Files.createDirectory(tempDir.resolve("other"));
+        Files.writeString(otherDir.resolve("a.txt"), "a");
+        Files.writeString(otherDir.resolve("b.txt"), "b");
+
+        ListingOptions options = new ListingOptions();
+        options.setPageSize(1);
+        String cursor = fileSystemUtils.listFiles(otherDir.toString(), options).getNextCursor();
+        assertNotNull(cursor, "A partial page should return a cursor");
+
+        options.setCursor(cursor);
+        assertThrows(IllegalArgumentException.class, () -> fileSystemUtils.listFiles(tempDir.toString(), options));
+
+        options.setCursor("not a cursor");
+        assertThrows(IllegalArgumentException.class, () -> fileSystemUtils.listFiles(otherDir.toString(), options));
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testListFilesWithFilters() throws IOException {
+        Path src = Files.createDirectories(tempDir.resolve("src").resolve("main"));
+        Path modules = Files.createDirectories(tempDir.resolve("node_modules").resolve("lib"));
+        Files.writeString(src.resolve("App.java"), "class App {}");
+        Files.writeString(src.resolve("notes.md"), "notes");
+        Files.writeString(modules.resolve("Vendored.java"), "class Vendored {}");
+        Files.writeString(tempDir.resolve("Top.java"), "class Top {}");
+
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        options.setInclude(List.of("*.java"));
+        options.setExclude(List.of("node_modules"));
+        options.setType(EntryType.FILE);
+
+        List<String> names = new ArrayList<>();
+        fileSystemUtils.listFiles(tempDir.toString(), options).getFiles().forEach(m -> names.add(m.getName()));
+        assertEquals(List.of("Top.java", "App.java"), names, "Only Java files outside node_modules should be listed");
+
+        options.setMaxDepth(1);
+        names.clear();
+        fileSystemUtils.listFiles(tempDir.toString(), options).getFiles().forEach(m -> names.add(m.getName()));
+        assertEquals(List.of("Top.java"), names, "Depth limit should stop the walk at direct children");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testListFilesWithEntryBudget() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + i));
+            for (int j = 0; j < 10; j++) {
+                Files.writeString(dir.resolve("file" + j + (j % 3 == 0 ? ".java" : ".txt")), "content");
+            }
+        }
+
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        options.setInclude(List.of("*.java"));
+        List<FileMetadata> expected = fileSystemUtils.listFiles(tempDir.toString(), options).getFiles();
+
+        // Drain the listing through a budget smaller than the gaps between matching entries
+        options.setMaxEntries(2);
+        List<String> paths = new ArrayList<>();
+        int truncatedPages = 0;
+        int calls = 0;
+        FileListingPage page;
+        do {
+            page = fileSystemUtils.listFiles(tempDir.toString(), options);
+            assertTrue(page.getFiles().size() <= 2, "A page should not hold more entries than were visited");
+            if (page.isTruncated()) {
+                truncatedPages++;
+                assertNotNull(page.getNextCursor(), "A truncated page should carry a resume cursor");
+            }
+            page.getFiles().forEach(m -> paths.add(m.getPath()));
+            options.setCursor(page.getNextCursor());
+            calls++;
+        } while (page.getNextCursor() != null && calls < 1000);
+
+        List<String> expectedPaths = new ArrayList<>();
+        expected.forEach(m -> expectedPaths.add(m.getPath()));
+        assertEquals(expectedPaths, paths, "Budgeted pages should add up to the full listing");
+        assertTrue(truncatedPages > 0, "A small budget should truncate pages");
+        assertFalse(page.isTruncated(), "The last page should not be truncated");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testTopFiles() throws IOException {
+        for (int i = 0; i < 30; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + (i % 4)));
+            Path file = Files.writeString(dir.resolve("file" + i + ".txt"), "x".repeat(i * 10));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000_000_000L - i * 60_000L));
+        }
+
+        ListingOptions options = new ListingOptions();
+        options.setType(EntryType.FILE);
+
+        List<String> names = new ArrayList<>();
+        FileListingPage largest = fileSystemUtils.topFiles(tempDir.toString(), 3, FileSortKey.SIZE, options);
+        largest.getFiles().forEach(m -> names.add(m.getName()));
+        assertEquals(List.of("file29.txt", "file28.txt", "file27.txt"), names, "Largest files should come first");
+        assertFalse(largest.isTruncated(), "An unbounded search should not be truncated");
+
+        names.clear();
+        fileSystemUtils.topFiles(tempDir.toString(), 2, FileSortKey.LAST_MODIFIED, options)
+                .getFiles().forEach(m -> names.add(m.getName()));
+        assertEquals(List.of("file0.txt", "file1.txt"), names, "Newest files should come first");
+
+        names.clear();
+        fileSystemUtils.topFiles(tempDir.toString(), 100, FileSortKey.SIZE, options)
+                .getFiles().forEach(m -> names.add(m.getName()));
+        assertEquals(30, names.size(), "A limit above the number of files should return every file");
+        assertEquals("file0.txt", names.get(29), "The smallest file should come last");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testSearchContent() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + (i % 4)));
+            Files.writeString(dir.resolve("file" + i + ".txt"), "header\nneedle " + i + "\nfooter\n");
+        }
+        Files.write(tempDir.resolve("binary.txt"), new byte[] { 'n', 'e', 'e', 'd', 'l', 'e', 0 });
+        Files.writeString(tempDir.resolve("skipped.log"), "needle\n");
+
+        ListingOptions options = new ListingOptions();
+        options.setInclude(List.of("*.txt"));
+        options.setType(EntryType.FILE);
+
+        SearchResult result = fileSystemUtils.searchContent(tempDir.toString(),
+                ContentSearcher.literal("needle", false), 1, 100, options);
+        assertEquals(40, result.getMatches().size(), "Every text file should match once");
+        assertEquals(41, result.getFilesSearched(), "Only included files should be searched");
+        assertFalse(result.isTruncated(), "A search under the limit should not be truncated");
+        SearchMatch first = result.getMatches().get(0);
+        assertEquals(2, first.getLineNumber(), "Line numbers should start at 1");
+        assertEquals(List.of("header"), first.getBefore(), "Context before the match should be returned");
+        assertEquals(List.of("footer"), first.getAfter(), "Context after the match should be returned");
+
+        List<String> sequential = new ArrayList<>();
+        new FileSystemUtils(1).searchContent(tempDir.toString(), ContentSearcher.literal("needle", false), 0, 100,
+                options).getMatches().forEach(m -> sequential.add(m.getPath()));
+        List<String> parallel = new ArrayList<>();
+        result.getMatches().forEach(m -> parallel.add(m.getPath()));
+        assertEquals(sequential, parallel, "Parallel and sequential searches should return matches in walk order");
+
+        SearchResult limited = fileSystemUtils.searchContent(tempDir.toString(),
+                ContentSearcher.regex("needle [0-9]+", false), 0, 5, options);
+        assertEquals(5, limited.getMatches().size(), "Matches should stop at the limit");
+        assertTrue(limited.isTruncated(), "A search over the limit should be truncated");
+        assertEquals(parallel.subList(0, 5), limited.getMatches().stream().map(SearchMatch::getPath).toList(),
+                "The limited matches should be the first in walk order");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testSearchContentSkipsFilesWhoseSearchFails() throws IOException {
+        Files.writeString(tempDir.resolve("a.txt"), "needle c\n");
+        // Matching an alternation in a loop recurses once per character, which overflows on a long line
+        Files.writeString(tempDir.resolve("b.txt"), "ab".repeat(500_000) + "\n");
+        Files.writeString(tempDir.resolve("c.txt"), "c\n");
+
+        for (FileSystemUtils utils : new FileSystemUtils[] { fileSystemUtils, new FileSystemUtils(1) }) {
+            SearchResult result = utils.searchContent(tempDir.toString(), ContentSearcher.regex("(a|b)*c", false),
+                    0, 100, new ListingOptions());
+            assertEquals(List.of(tempDir.resolve("a.txt").toString(), tempDir.resolve("c.txt").toString()),
+                    result.getMatches().stream().map(SearchMatch::getPath).toList(),
+                    "The file whose search failed should be skipped");
+            assertEquals(3, result.getFilesSearched(), "Every file should be searched");
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testSearchContentStopsWaitingAtDeadline() throws IOException {
+        Files.writeString(tempDir.resolve("fast.txt"), "a".repeat(8) + "b\n");
+        // Each line takes the expression seconds of backtracking
+        Files.writeString(tempDir.resolve("slow.txt"), ("a".repeat(30) + "\n").repeat(3));
+
+        FileSystemUtils parallel = new FileSystemUtils(2);
+        try {
+            ListingOptions options = new ListingOptions();
+            options.setTimeoutMs(200);
+            long start = System.nanoTime();
+            SearchResult result = parallel.searchContent(tempDir.toString(),
+                    ContentSearcher.regex("(.*a){8}b", false), 0, 100, options);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(elapsedMs < 1500, "The search should stop waiting at the deadline, took " + elapsedMs + " ms");
+            assertTrue(result.isTruncated(), "A search stopped at the deadline should be truncated");
+            assertEquals(List.of(tempDir.resolve("fast.txt").toString()),
+                    result.getMatches().stream().map(SearchMatch::getPath).toList(),
+                    "Matches found before the deadline should be returned");
+        } finally {
+            parallel.cleanup();
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testDiskUsage() throws IOException {
+        Path deep = Files.createDirectories(tempDir.resolve("a").resolve("deep"));
+        Files.writeString(tempDir.resolve("a").resolve("one.txt"), "x".repeat(100));
+        Files.writeString(deep.resolve("two.txt"), "x".repeat(200));
+        Files.createDirectories(tempDir.resolve("b"));
+        Files.writeString(tempDir.resolve("b").resolve("three.txt"), "x".repeat(300));
+        Files.writeString(tempDir.resolve("top.txt"), "x".repeat(400));
+
+        DiskUsageReport report = fileSystemUtils.diskUsage(tempDir.toString(), 1, new ListingOptions());
+        DiskUsage root = report.getUsage();
+        assertFalse(report.isTruncated(), "An unbounded walk should not be truncated");
+        assertEquals(4, root.getFileCount(), "Every file should be counted");
+        assertEquals(4, root.getDirectoryCount(), "Every directory including the root should be counted");
+        assertEquals(2, root.getChildren().size(), "Subdirectories down to the depth should have rollups");
+
+        DiskUsage a = root.getChildren().get(0);
+        assertEquals(tempDir.resolve("a").toString(), a.getPath(), "Rollups should be in name order");
+        assertEquals(2, a.getFileCount(), "Deeper files should roll up into the reported ancestor");
+        assertTrue(a.getChildren().isEmpty(), "Directories below the depth should not have rollups");
+        assertEquals(Files.size(tempDir.resolve("a")) + Files.size(deep) + 300, a.getApparentSize(),
+                "Apparent size should add up the entries");
+        assertEquals(0, a.getAllocatedSize() % report.getBlockSize(), "Allocated size should be whole blocks");
+        assertTrue(a.getAllocatedSize() >= a.getApparentSize(), "Allocated size should cover the apparent size");
+
+        long childSizes = 0;
+        for (DiskUsage child : root.getChildren()) {
+            childSizes += child.getApparentSize();
+        }
+        assertEquals(childSizes + Files.size(tempDir) + 400, root.getApparentSize(),
+                "The root should add up its own entries and its subdirectories");
+    }
+
     @Test
     @Timeout(5) // 5 seconds timeout
     public void testListFilesForNonExistentDirectory() {
@@ -228,6 +598,55 @@ public class FileSystemUtilsTest {
         assertArrayEquals(testContent, decodedContent, "Binary content should match");
     }
 
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testReadByteRanges() throws IOException {
+        Path textFile = tempDir.resolve("range-file.txt");
+        Files.writeString(textFile, "0123456789");
+        String path = textFile.toString();
+
+        assertEquals("234", fileSystemUtils.readTextFile(path, ByteRange.of(2, 3)), "Offset and length");
+        assertEquals("789", fileSystemUtils.readTextFile(path, ByteRange.parse("-3")), "Suffix range");
+        assertEquals("89", fileSystemUtils.readTextFile(path, ByteRange.parse("bytes=8-")), "Open range");
+        assertEquals("89", fileSystemUtils.readTextFile(path, ByteRange.of(8, 100)), "Range cut off at the end");
+        assertEquals("", fileSystemUtils.readTextFile(path, ByteRange.of(20, 5)), "Range beyond the end");
+
+        Path binaryFile = tempDir.resolve("range-file.bin");
+        Files.write(binaryFile, new byte[] { 0x00, 0x01, 0x02, 0x03, 0x04 });
+        byte[] decoded = Base64.getDecoder().decode(
+                fileSystemUtils.readBinaryFile(binaryFile.toString(), ByteRange.parse("1-2")));
+        assertArrayEquals(new byte[] { 0x01, 0x02 }, decoded, "Inclusive binary range");
+
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("5-2"), "Reversed range");
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.of(-1, 2), "Negative offset");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testReadLineRanges() throws IOException {
+        LineIndexCache cache = new LineIndexCache(1000);
+        FileSystemUtils utils = new FileSystemUtils(1, 0, 0, null,
+                new FileContentReader(FileContentReader.DEFAULT_MAP_THRESHOLD, cache));
+        Path textFile = tempDir.resolve("lines-file.txt");
+        Files.writeString(textFile, "one\ntwo\nthree\nfour\n");
+        String path = textFile.toString();
+
+        assertEquals("two\nthree\n", utils.readTextFile(path, LineRange.of(2, 3)), "Inner lines");
+        assertEquals("four\n", utils.readTextFile(path, LineRange.parse("4-")), "Open range");
+        assertEquals("one\n", utils.readTextFile(path, LineRange.parse("1")), "Single line");
+        assertEquals("three\nfour\n", utils.readTextFile(path, LineRange.of(3, 10)), "Range cut off at the end");
+        assertEquals("", utils.readTextFile(path, LineRange.of(5, 6)), "Range beyond the last line");
+        assertEquals(1, cache.getMissCount(), "The file should be indexed once");
+        assertEquals(4, cache.getHitCount(), "Later reads should use the cached index");
+
+        Files.writeString(textFile, "alpha\nbeta");
+        assertEquals("beta", utils.readTextFile(path, LineRange.of(2, 2)), "Changed file should be indexed again");
+        assertEquals(2, cache.getMissCount(), "A changed file should miss the cache");
+
+        assertThrows(IllegalArgumentException.class, () -> LineRange.of(0, 2), "Line numbers start at 1");
+        assertThrows(IllegalArgumentException.class, () -> LineRange.parse("5-2"), "Reversed range");
+    }
+
     @Test
     @Timeout(5) // 5 seconds timeout
     public void testIsTextFile() throws IOException {
@@ -0,0 +1,130 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ListingCache.
+ */
+public class ListingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ListingCache cache;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cache = new ListingCache(1000, 100);
+        for (int i = 0; i < 3; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + i));
+            for (int j = 0; j < 5; j++) {
+                Files.writeString(dir.resolve("file" + j + ".txt"), "content");
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testRepeatedWalkIsServedFromCache() throws IOException {
+        List<String> uncached = walk(null);
+        List<String> first = walk(cache);
+        long missesAfterFirst = cache.getMissCount();
+        List<String> second = walk(cache);
+
+        assertEquals(uncached, first, "Cached walk should match an uncached walk");
+        assertEquals(uncached, second, "Repeated walk should match an uncached walk");
+        assertEquals(4, cache.getHitCount(), "Every directory should be served from the cache");
+        assertEquals(missesAfterFirst, cache.getMissCount(), "Repeated walk should not miss");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testAddedEntryInvalidatesListing() throws IOException {
+        walk(cache);
+        Files.writeString(tempDir.resolve("dir1").resolve("added.txt"), "added");
+
+        assertEquals(walk(null), walk(cache), "Cached walk should see the added entry");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testModifiedChildInvalidatesListing() throws IOException, InterruptedException {
+        walk(cache);
+        // Rewriting a file does not touch its directory, so only the watcher can notice it
+        Files.writeString(tempDir.resolve("dir2").resolve("file3.txt"), "much longer content");
+        List<String> expected = walk(null);
+
+        List<String> cached = walk(cache);
+        while (!expected.equals(cached)) {
+            Thread.sleep(20);
+            cached = walk(cache);
+        }
+        assertEquals(expected, cached, "Cached walk should see the modified entry");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testRecreatedDirectoryIsWatchedAgain() throws IOException, InterruptedException {
+        walk(cache);
+        Path dir = tempDir.resolve("dir0");
+        for (int j = 0; j < 5; j++) {
+            Files.delete(dir.resolve("file" + j + ".txt"));
+        }
+        Files.delete(dir);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("file0.txt"), "content");
+        awaitConsistent();
+
+        // Rewriting a file does not touch its directory, so only a renewed watch can notice it
+        Files.writeString(dir.resolve("file0.txt"), "much longer content");
+        awaitConsistent();
+    }
+
+    /**
+     * Helper method to walk through the cache until it agrees with the file system.
+     */
+    private void awaitConsistent() throws IOException, InterruptedException {
+        List<String> expected = walk(null);
+        List<String> cached = walk(cache);
+        while (!expected.equals(cached)) {
+            Thread.sleep(20);
+            cached = walk(cache);
+        }
+        assertEquals(expected, cached, "Cached walk should match an uncached walk");
+    }
+
+    /**
+     * Helper method to walk the temporary directory.
+     *
+     * @param listingCache The cache to walk through, or null to read the file system
+     * @return The visited paths with their sizes
+     */
+    private List<String> walk(ListingCache listingCache) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (DirectoryWalker<String> walker = new DirectoryWalker<>(tempDir, true, null, WalkFilter.NONE,
+                (path, attrs) -> tempDir.relativize(path) + ":" + (attrs.isDirectory() ? "dir" : attrs.size()),
+                null, true, listingCache)) {
+            while (walker.hasNext()) {
+                entries.add(walker.next().getValue());
+            }
+        }
+        return entries;
+    }
+}
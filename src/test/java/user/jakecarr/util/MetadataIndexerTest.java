@@ -0,0 +1,166 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.FileMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MetadataIndexer.
+ */
+public class MetadataIndexerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+    private Path indexDirectory;
+    private MetadataIndexer indexer;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        root = Files.createDirectories(tempDir.resolve("root"));
+        indexDirectory = tempDir.resolve("index");
+        for (int i = 0; i < 3; i++) {
+            Path dir = Files.createDirectories(root.resolve("dir" + i).resolve("nested"));
+            for (int j = 0; j < 4; j++) {
+                Files.writeString(dir.getParent().resolve("file" + j + ".txt"), "content " + j);
+            }
+        }
+        indexer = new MetadataIndexer(List.of(root), indexDirectory);
+        indexer.refresh();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        indexer.close();
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testListingsServedFromIndex() throws IOException {
+        FileSystemUtils indexed = new FileSystemUtils(1, 0, 0, indexer);
+        FileSystemUtils direct = new FileSystemUtils(1);
+        try {
+            assertNotNull(indexer.getListing(root.resolve("dir1"), true), "Unchanged directory should be fresh");
+            assertEquals(describe(direct.listFiles(root.toString(), true)),
+                    describe(indexed.listFiles(root.toString(), true)),
+                    "Indexed listing should match the file system");
+
+            Path file = root.resolve("dir2").resolve("file3.txt");
+            assertNotNull(indexedAttributes(file, true), "File in an unchanged directory should be indexed");
+            FileMetadata metadata = indexed.getFileMetadata(file.toString());
+            assertEquals(Files.size(file), metadata.getSize());
+            assertTrue(metadata.isReadable());
+        } finally {
+            indexed.cleanup();
+            direct.cleanup();
+        }
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testChangedDirectoryIsReadFromFileSystem() throws IOException, InterruptedException {
+        Path dir = root.resolve("dir0");
+        Files.writeString(dir.resolve("file1.txt"), "rewritten in place");
+
+        // The rewrite does not touch the directory, so only the watch can retire its indexed listing
+        while (indexer.getListing(dir, false) != null) {
+            Thread.sleep(20);
+        }
+        assertNull(indexedAttributes(dir.resolve("file1.txt"), false));
+        assertNotNull(indexer.getListing(root.resolve("dir1"), false), "Other directories should stay fresh");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testRefreshReusesUnchangedDirectories() throws IOException {
+        // Only directories and files that were last modified well before the previous refresh are trusted
+        Path unchanged = root.resolve("dir2");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 10 * MetadataIndexer.TIMESTAMP_GRANULARITY_MS);
+        Path trusted = unchanged.resolve("file1.txt");
+        Path nested = unchanged.resolve("nested");
+        Files.setLastModifiedTime(trusted, old);
+        Files.setLastModifiedTime(nested, old);
+        Files.setLastModifiedTime(unchanged, old);
+        indexer.refresh();
+        indexer.close();
+        Files.writeString(root.resolve("dir1").resolve("added.txt"), "added");
+        // Rewriting in place does not touch the directory; a file modified just before the previous refresh is racy
+        Path racy = unchanged.resolve("file0.txt");
+        Files.writeString(racy, "rewritten while the server was down");
+        long trustedSize = Files.size(trusted);
+        Files.writeString(trusted, "rewritten with its old timestamp");
+        Files.setLastModifiedTime(trusted, old);
+        Files.setLastModifiedTime(unchanged, old);
+        Files.writeString(nested.resolve("added.txt"), "added");
+
+        indexer = new MetadataIndexer(List.of(root), indexDirectory);
+        indexer.refresh();
+
+        assertNotNull(indexedAttributes(root.resolve("dir1").resolve("added.txt"), false),
+                "Changed directory should be read again");
+        assertEquals(Files.size(racy), indexedAttributes(racy, false).size(),
+                "Racy entries of an unchanged directory should be stat'ed again");
+        assertEquals(trustedSize, indexedAttributes(trusted, false).size(),
+                "Other entries of an unchanged directory should keep their recorded attributes");
+        assertEquals(Files.getLastModifiedTime(nested), indexedAttributes(nested, false).lastModifiedTime(),
+                "Subdirectories of an unchanged directory should be stat'ed again");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testFileMetadataIsNotServedFromIndex() throws IOException {
+        FileSystemUtils indexed = new FileSystemUtils(1, 0, 0, indexer);
+        try {
+            // A file in a fresh directory can change without an event reaching the index first
+            Path file = root.resolve("dir2").resolve("file3.txt");
+            Files.writeString(file, "rewritten just now");
+            assertEquals(Files.size(file), indexed.getFileMetadata(file.toString()).getSize(),
+                    "Metadata should be read from the file system");
+        } finally {
+            indexed.cleanup();
+        }
+    }
+
+    /**
+     * Helper method to get the indexed attributes of a file in a fresh directory.
+     *
+     * @param file The file
+     * @param needsAccessMode Whether the attributes must carry the permission mode
+     * @return The attributes, or null if the directory is not fresh or does not hold the file
+     */
+    private FileStat indexedAttributes(Path file, boolean needsAccessMode) {
+        ListingCache.Snapshot listing = indexer.getListing(file.getParent(), needsAccessMode);
+        if (listing == null) {
+            return null;
+        }
+        int index = listing.getChildren().indexOf(file);
+        return index < 0 ? null : listing.getAttributes(index);
+    }
+
+    /**
+     * Helper method to describe a listing independently of metadata object identity.
+     *
+     * @param files The listed files
+     * @return One line per file with its path, size and type
+     */
+    private static List<String> describe(List<FileMetadata> files) {
+        List<String> lines = new ArrayList<>();
+        for (FileMetadata file : files) {
+            lines.add(file.getPath() + ":" + file.getSize() + ":" + file.isDirectory() + ":" + file.isReadable());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,114 @@
+package user.jakecarr.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import user.jakecarr.model.FileListing;
+import user.jakecarr.model.FileListingPage;
+import user.jakecarr.model.FileMetadata;
+import user.jakecarr.model.ListingOptions;
+import user.jakecarr.model.MetadataField;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MetadataJsonWriter.
+ */
+public class MetadataJsonWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testProjectionMatchesFullSerialization() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("projection.txt"), "content");
+        FileMetadata metadata = new FileSystemUtils().getFileMetadata(file.toString());
+
+        // Every field but one, so the streamed writer is used
+        Set<MetadataField> fields = EnumSet.allOf(MetadataField.class);
+        fields.remove(MetadataField.CREATION_TIME);
+
+        ObjectNode expected = (ObjectNode) objectMapper.readTree(objectMapper.writeValueAsString(metadata));
+        expected.remove("creationTime");
+        JsonNode projected = objectMapper.readTree(MetadataJsonWriter.write(objectMapper, metadata, fields));
+        assertEquals(expected, projected, "Projected fields should be serialized exactly like the full metadata");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testPageProjection() throws IOException {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setName("a.txt");
+        metadata.setSize(42);
+        FileListingPage page = new FileListingPage(List.of(metadata), "cursor", true);
+
+        JsonNode json = objectMapper.readTree(MetadataJsonWriter.write(objectMapper, page,
+                EnumSet.of(MetadataField.NAME, MetadataField.SIZE)));
+        assertEquals(2, json.get("files").get(0).size(), "Files should only carry the requested fields");
+        assertEquals(42, json.get("files").get(0).get("size").asInt(), "Size should match");
+        assertEquals("cursor", json.get("nextCursor").asText(), "Cursor should be kept");
+        assertTrue(json.get("truncated").asBoolean(), "Truncation flag should be kept");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testColumnarPageMatchesObjectSerialization() throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve("dir"));
+        Files.writeString(dir.resolve("nested.txt"), "nested");
+        Files.writeString(tempDir.resolve(".hidden"), "hidden");
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        FileListingPage page = new FileSystemUtils(1).listFiles(tempDir.toString(), options);
+        assertTrue(page.getFiles() instanceof FileListing, "Listing pages should be columnar");
+
+        // Copying the entries out of the columns gives the object representation
+        FileListingPage objects = new FileListingPage(new ArrayList<>(page.getFiles()), page.getNextCursor(),
+                page.isTruncated());
+        assertEquals(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(objects),
+                MetadataJsonWriter.write(objectMapper, page, MetadataField.ALL),
+                "Columns should serialize exactly like metadata objects");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testCompactPathsRebuildFullPaths() throws IOException {
+        Path nested = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+        Files.writeString(nested.resolve("deep.txt"), "deep");
+        Files.writeString(tempDir.resolve("a").resolve("shallow.txt"), "shallow");
+        ListingOptions options = new ListingOptions();
+        options.setRecursive(true);
+        FileListingPage page = new FileSystemUtils(1).listFiles(tempDir.toString(), options);
+
+        // Only the path is requested, so the name has to come along to rebuild it
+        JsonNode compact = objectMapper.readTree(MetadataJsonWriter.write(objectMapper, page,
+                EnumSet.of(MetadataField.PATH), true));
+        JsonNode directories = compact.get("directories");
+        // The listed root is itself an entry of its parent, so its parent is the first prefix
+        assertEquals(4, directories.size(), "Each directory prefix should be sent once");
+        List<String> rebuilt = new ArrayList<>();
+        for (JsonNode file : compact.get("files")) {
+            assertFalse(file.has("path"), "Entries should refer to their directory instead of a path");
+            rebuilt.add(directories.get(file.get("dir").asInt()).asText() + file.get("name").asText());
+        }
+        List<String> expected = new ArrayList<>();
+        for (FileMetadata file : page.getFiles()) {
+            expected.add(file.getPath());
+        }
+        assertEquals(expected, rebuilt, "Prefix and name should rebuild the full paths");
+    }
+}
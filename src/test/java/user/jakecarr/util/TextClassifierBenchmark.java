@@ -0,0 +1,152 @@
+package user.jakecarr.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the throughput of classifying a large text file, comparing a byte-at-a-time NUL check,
+ * a {@link CharsetDecoder} validation and a byte-at-a-time newline count with the single pass of
+ * {@link TextClassifier}, a byte-at-a-time line offset scan with {@link LineIndex#build}, and decoding
+ * a mapping with a {@link CharsetDecoder} with {@link FileContentReader#decode(ByteBuffer)}, which classifies
+ * it and builds the string from the classification.
+ * <p>
+ * This is not a unit test and is not run by the build. Run it after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> user.jakecarr.util.TextClassifierBenchmark [sizeMb [ascii]]}.
+ * Each variant runs several rounds over the same memory-mapped file so the page cache and the JIT are warm.
+ */
+public final class TextClassifierBenchmark {
+
+    private TextClassifierBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The file size in megabytes, 256 by default, and {@code ascii} to write only ASCII text
+     * @throws IOException If the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        Path file = Files.createTempFile("classifier-benchmark", ".txt");
+        try {
+            writeText(file, sizeMb * 1024L * 1024, args.length > 1 && args[1].equals("ascii"));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                for (int round = 0; round < 5; round++) {
+                    measure("three byte-at-a-time passes", size, () -> classifyBytewise(mapped));
+                    measure("TextClassifier.classify", size, () -> TextClassifier.classify(mapped).getLineCount());
+                    measure("byte-at-a-time line offsets", size, () -> indexBytewise(mapped));
+                    measure("LineIndex.build", size, () -> LineIndex.build(channel, size).getLineCount());
+                    measure("CharsetDecoder decode", size, () -> decodeWithDecoder(mapped).length());
+                    measure("FileContentReader.decode", size,
+                            () -> FileContentReader.decode(mapped.duplicate()).length());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Write source-like text, mostly ASCII with an occasional multi-byte character unless only ASCII is asked for.
+     */
+    private static void writeText(Path file, long size, boolean ascii) throws IOException {
+        Random random = new Random(42);
+        String[] words = { "return", "value", "final", "int", ascii ? "e" : "é", "count", ascii ? "zh" : "中文",
+                "{", "}", ";", "if", "long" };
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long written = 0;
+            StringBuilder line = new StringBuilder();
+            while (written < size) {
+                line.setLength(0);
+                int count = 2 + random.nextInt(12);
+                for (int i = 0; i < count; i++) {
+                    line.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                line.append('\n');
+                writer.write(line.toString());
+                written += line.length();
+            }
+        }
+    }
+
+    private static long classifyBytewise(ByteBuffer mapped) {
+        ByteBuffer bytes = mapped.duplicate();
+        boolean nul = false;
+        for (int i = 0; i < bytes.limit(); i++) {
+            nul |= bytes.get(i) == 0;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(48 * 1024);
+        CoderResult result;
+        do {
+            chars.clear();
+            result = decoder.decode(bytes, chars, true);
+        } while (result.isOverflow());
+        long lines = 0;
+        for (int i = 0; i < bytes.limit(); i++) {
+            lines += bytes.get(i) == '\n' ? 1 : 0;
+        }
+        return nul || result.isError() ? -1 : lines;
+    }
+
+    private static String decodeWithDecoder(ByteBuffer mapped) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = mapped.duplicate();
+        StringBuilder text = new StringBuilder(bytes.remaining());
+        CharBuffer chars = CharBuffer.allocate(64 * 1024);
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, true);
+            text.append(chars.array(), 0, chars.position());
+            chars.clear();
+        } while (result.isOverflow());
+        return text.toString();
+    }
+
+    private static long indexBytewise(ByteBuffer mapped) {
+        long[] starts = new long[1024];
+        int count = 0;
+        for (int i = 0; i < mapped.limit(); i++) {
+            if (mapped.get(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return count;
+    }
+
+    private static void measure(String name, long size, Pass pass) throws IOException {
+        long started = System.nanoTime();
+        long result = pass.run();
+        long elapsedNs = System.nanoTime() - started;
+        System.out.printf("%-32s %6d ms %8.0f MB/s (result %d)%n", name, elapsedNs / 1_000_000,
+                size / (1024.0 * 1024) / (elapsedNs / 1e9), result);
+    }
+
+    /**
+     * One way of scanning the file.
+     */
+    private interface Pass {
+        long run() throws IOException;
+    }
+}
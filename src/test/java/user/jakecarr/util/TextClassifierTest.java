@@ -0,0 +1,116 @@
+package user.jakecarr.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TextClassifier.
+ */
+public class TextClassifierTest {
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testClassifiesText() {
+        TextClassifier ascii = classify("first line\nsecond line\nthird".getBytes(StandardCharsets.UTF_8));
+        assertTrue(ascii.isText(), "ASCII should be text");
+        assertTrue(ascii.isAscii(), "ASCII should be ASCII");
+        assertTrue(ascii.isValidUtf8(), "ASCII should be valid UTF-8");
+        assertEquals(2, ascii.getLineCount(), "Newlines should be counted");
+
+        TextClassifier unicode = classify("café\n中文 text\n😀 emoji\n".getBytes(StandardCharsets.UTF_8));
+        assertFalse(unicode.isAscii(), "Multi-byte characters are not ASCII");
+        assertTrue(unicode.isValidUtf8(), "Multi-byte characters should be valid UTF-8");
+        assertEquals(3, unicode.getLineCount(), "Newlines after multi-byte characters should be counted");
+
+        TextClassifier binary = classify(new byte[] { 'a', 'b', 'c', 'd', 'e', 'f', 0, 'h', '\n' });
+        assertTrue(binary.hasNul(), "NUL inside a word should be found");
+        assertFalse(binary.isText(), "NUL should make the bytes binary");
+        assertEquals(1, binary.getLineCount(), "Newline in the tail should be counted");
+    }
+
+    @Test
+    @Timeout(5) // 5 seconds timeout
+    public void testRejectsInvalidUtf8() {
+        byte[][] invalid = {
+            { (byte) 0xC0, (byte) 0x80 },                           // Overlong NUL
+            { (byte) 0xE0, (byte) 0x80, (byte) 0x80 },              // Overlong three-byte form
+            { (byte) 0xED, (byte) 0xA0, (byte) 0x80 },              // Surrogate
+            { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, // Above U+10FFFF
+            { (byte) 0x80 },                                        // Lone continuation byte
+            { (byte) 0xC3, 'a' },                                   // Missing continuation byte
+        };
+        for (byte[] sequence : invalid) {
+            byte[] bytes = new byte[20];
+            Arrays.fill(bytes, (byte) 'x');
+            System.arraycopy(sequence, 0, bytes, 5, sequence.length);
+            TextClassifier classifier = classify(bytes);
+            assertFalse(classifier.isValidUtf8(), "Invalid sequence at byte 5 of " + sequence.length);
+            assertTrue(classifier.isText(), "Invalid UTF-8 should still be text");
+        }
+
+        byte[] cut = "abcdefg中".getBytes(StandardCharsets.UTF_8);
+        assertTrue(classify(Arrays.copyOf(cut, cut.length - 1)).isValidUtf8(),
+                "Bytes ending inside a character should be valid");
+    }
+
+    @Test
+    @Timeout(10) // 10 seconds timeout
+    public void testMatchesByteAtATimeClassification() {
+        Random random = new Random(42);
+        String[] pieces = { "a", "line\n", "é", "中", "😀", "\t", "  ", "\n" };
+        for (int round = 0; round < 500; round++) {
+            byte[] bytes;
+            if (round % 3 == 0) {
+                bytes = new byte[random.nextInt(100) + 1];
+                random.nextBytes(bytes);
+                // End on ASCII, so a character cut at the end does not count as valid
+                bytes[bytes.length - 1] = 'z';
+            } else {
+                StringBuilder text = new StringBuilder();
+                int count = random.nextInt(60);
+                for (int i = 0; i < count; i++) {
+                    text.append(pieces[random.nextInt(pieces.length)]);
+                }
+                bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            int offset = random.nextInt(4);
+            byte[] padded = new byte[bytes.length + offset];
+            System.arraycopy(bytes, 0, padded, offset, bytes.length);
+            TextClassifier classifier = TextClassifier.classify(ByteBuffer.wrap(padded, offset, bytes.length));
+
+            long lines = 0;
+            boolean nul = false;
+            boolean ascii = true;
+            for (byte b : bytes) {
+                lines += b == '\n' ? 1 : 0;
+                nul |= b == 0;
+                ascii &= b >= 0;
+            }
+            assertEquals(lines, classifier.getLineCount(), "Line count of round " + round);
+            assertEquals(nul, classifier.hasNul(), "NUL detection of round " + round);
+            assertEquals(ascii, classifier.isAscii(), "ASCII detection of round " + round);
+            assertEquals(isValidUtf8(bytes), classifier.isValidUtf8(), "UTF-8 validation of round " + round);
+        }
+    }
+
+    private static TextClassifier classify(byte[] bytes) {
+        return TextClassifier.classify(ByteBuffer.wrap(bytes));
+    }
+
+    private static boolean isValidUtf8(byte[] bytes) {
+        try {
+            StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}